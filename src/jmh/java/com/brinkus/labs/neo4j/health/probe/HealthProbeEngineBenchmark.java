@@ -0,0 +1,95 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.metrics.DatabaseMetrics;
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark of the single-flight probes: every request asks for a new probe, and the number of probe executions per
+ * second is reported as the secondary {@code probes} metric. It stays bounded by the probe latency however many threads
+ * are used, e.g. {@code -Djmh.args="-t 1000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(64)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HealthProbeEngineBenchmark {
+
+    private static final long PROBE_LATENCY = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final AtomicLong executions = new AtomicLong();
+
+    private HealthProbeEngine engine;
+
+    /**
+     * The probe executions claimed by a benchmark thread. Every execution is claimed by exactly one thread, so their sum
+     * is the number of probe executions.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Executions {
+
+        public long probes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            probes = 0L;
+        }
+
+    }
+
+    @Setup
+    public void setup() {
+        DatabaseManagementService dbms = mock(DatabaseManagementService.class);
+        when(dbms.database("neo4j")).thenReturn(mock(GraphDatabaseService.class));
+        HealthProbe probe = new HealthProbe() {
+            @Override
+            public Health check(GraphDatabaseService service, long timeout, DatabaseMetrics metrics) {
+                executions.incrementAndGet();
+                LockSupport.parkNanos(PROBE_LATENCY);
+                return new Health.Builder().up().build();
+            }
+        };
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder().withProbeInterval(0L).build(), probe);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public HealthSnapshot refresh(Executions counters) {
+        HealthSnapshot snapshot = engine.snapshot("neo4j", 0L, 1000L);
+        if (executions.get() > 0L) {
+            counters.probes += executions.getAndSet(0L);
+        }
+        return snapshot;
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.brinkus.labs.neo4j.health.type;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HealthBenchmark {
+
+    private ObjectMapper mapper;
+
+    private Health health;
+
+    private Health failed;
+
+    @Setup
+    public void setup() {
+        mapper = new ObjectMapper();
+        health = new Health.Builder().up()
+                .withDetail("description", "Neo4j health check was successful.")
+                .build();
+        failed = new Health.Builder().outOfService()
+                .withDetail("description", "Neo4j health check failed!")
+                .withException(new NullPointerException("null"))
+                .build();
+    }
+
+    @Benchmark
+    public Health build() {
+        return new Health.Builder().up()
+                .withDetail("description", "Neo4j health check was successful.")
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serializeHealth() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(health);
+    }
+
+    @Benchmark
+    public byte[] serializeFailedHealth() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(failed);
+    }
+
+    @Benchmark
+    public byte[] writeHealth() throws JsonProcessingException {
+        return HealthJsonWriter.toBytes(health);
+    }
+
+    @Benchmark
+    public byte[] writeFailedHealth() throws JsonProcessingException {
+        return HealthJsonWriter.toBytes(failed);
+    }
+
+    @Benchmark
+    public void streamHealth() throws IOException {
+        HealthJsonWriter.write(health, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public byte[] serializeStatus() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(HealthStatus.UP);
+    }
+
+}
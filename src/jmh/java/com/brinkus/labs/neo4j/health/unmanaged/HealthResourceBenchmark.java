@@ -0,0 +1,90 @@
+package com.brinkus.labs.neo4j.health.unmanaged;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Response;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * End-to-end benchmark of the health endpoint, served from the snapshot and with a new probe on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HealthResourceBenchmark {
+
+    @Param({"mock", "embedded"})
+    public String database;
+
+    private Neo4j neo4j;
+
+    private HealthResource resource;
+
+    @Setup
+    public void setup() {
+        DatabaseManagementService dbms;
+        if (database.equals("embedded")) {
+            neo4j = Neo4jBuilders.newInProcessBuilder()
+                    .withDisabledServer()
+                    .withFixture("CREATE (:Benchmark {name: 'health'})")
+                    .build();
+            dbms = neo4j.databaseManagementService();
+        } else {
+            GraphDatabaseService service = mock(GraphDatabaseService.class);
+            when(service.isAvailable(anyLong())).thenReturn(true);
+            when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+            dbms = mock(DatabaseManagementService.class);
+            when(dbms.database(anyString())).thenReturn(service);
+        }
+        resource = new HealthResource(dbms);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (neo4j != null) {
+            neo4j.close();
+        }
+    }
+
+    @Benchmark
+    public Response snapshot() throws Exception {
+        return resource.health("neo4j");
+    }
+
+    @Benchmark
+    public Response probe() throws Exception {
+        return resource.health("neo4j", 0L, null, null);
+    }
+
+    @Benchmark
+    public Response notModified() throws Exception {
+        return resource.health("neo4j", null, null, "*");
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.brinkus.labs.neo4j.health.agent;
+
+import com.brinkus.labs.neo4j.health.probe.DaemonThreadFactory;
+import com.brinkus.labs.neo4j.health.probe.HealthProbeEngine;
+import com.brinkus.labs.neo4j.health.probe.HealthSettings;
+import com.brinkus.labs.neo4j.health.probe.HealthSnapshot;
+import com.brinkus.labs.neo4j.health.probe.HealthSubscriber;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.event.DatabaseEventContext;
+import org.neo4j.graphdb.event.DatabaseEventListenerAdapter;
+import org.neo4j.kernel.extension.ExtensionFactory;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.context.ExtensionContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extension starting the {@link AgentCheckListener} with the DBMS if {@code labs.health.agent.port} is set.
+ * <p>
+ * The listener lives as long as the system database, so it keeps answering while the reported database is stopped or
+ * restarted. It subscribes to the reported database once the database is started, and the status changes are pushed
+ * to it by the probe engine from then on. When the engine forgets the database, e.g. because it was dropped, the
+ * listener answers {@code drain} and subscribes again once the database is started again.
+ */
+public class AgentCheckExtensionFactory extends ExtensionFactory<AgentCheckExtensionFactory.Dependencies> {
+
+    /**
+     * The dependencies of the extension.
+     */
+    public interface Dependencies {
+
+        /**
+         * Get the database management service.
+         *
+         * @return the database management service
+         */
+        DatabaseManagementService databaseManagementService();
+
+        /**
+         * Get the database the extension is created for.
+         *
+         * @return the database
+         */
+        GraphDatabaseAPI graphDatabaseAPI();
+
+    }
+
+    private static final String KEY = "labs-health-agent";
+
+    /**
+     * Create a new instance of {@link AgentCheckExtensionFactory}.
+     */
+    public AgentCheckExtensionFactory() {
+        super(ExtensionType.DATABASE, KEY);
+    }
+
+    @Override
+    public Lifecycle newInstance(final ExtensionContext context, final Dependencies dependencies) {
+        HealthSettings settings = HealthSettings.fromSystemProperties();
+        if (settings.getAgentPort() <= 0
+                || !GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(dependencies.graphDatabaseAPI().databaseName())) {
+            return new LifecycleAdapter();
+        }
+        return new AgentCheckLifecycle(dependencies.databaseManagementService(), settings);
+    }
+
+    private static final class AgentCheckLifecycle extends LifecycleAdapter {
+
+        private final DatabaseManagementService dbms;
+
+        private final String dbName;
+
+        private final AgentCheckListener listener;
+
+        private final AtomicReference<Subscription> subscription;
+
+        private volatile boolean running;
+
+        private final DatabaseEventListenerAdapter events;
+
+        private AgentCheckLifecycle(final DatabaseManagementService dbms, final HealthSettings settings) {
+            this.dbms = dbms;
+            this.dbName = settings.getAgentDatabase();
+            this.listener = new AgentCheckListener(
+                    new InetSocketAddress(settings.getAgentAddress(), settings.getAgentPort()),
+                    settings.getAgentDegradedWeight());
+            this.subscription = new AtomicReference<>();
+            this.events = new DatabaseEventListenerAdapter() {
+                @Override
+                public void databaseStart(final DatabaseEventContext eventContext) {
+                    if (dbName.equals(eventContext.getDatabaseName())) {
+                        subscribe();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void start() throws Exception {
+            listener.start();
+            running = true;
+            dbms.registerDatabaseEventListener(events);
+            if (dbms.listDatabases().contains(dbName)) {
+                subscribe();
+            }
+        }
+
+        @Override
+        public void stop() {
+            try {
+                dbms.unregisterDatabaseEventListener(events);
+            } catch (RuntimeException e) {
+                // the DBMS is already shut down
+            }
+            running = false;
+            // the engine could be closed already, so a new one must not be created here
+            Subscription current = subscription.getAndSet(null);
+            if (current != null && current.engine != null) {
+                current.engine.unsubscribe(dbName, current);
+            }
+            listener.close();
+        }
+
+        private void subscribe() {
+            Subscription current = new Subscription();
+            if (!subscription.compareAndSet(null, current)) {
+                return;
+            }
+            // the first status is probed, which must not block the starting database
+            new DaemonThreadFactory("neo4j-health-agent-subscriber").newThread(() -> {
+                try {
+                    current.engine = HealthProbeEngine.of(dbms);
+                    if (!current.engine.subscribe(dbName, current)) {
+                        // the database has too many subscribers, the next start event tries again
+                        subscription.compareAndSet(current, null);
+                    }
+                } catch (RuntimeException e) {
+                    // the database is not available yet, the next start event subscribes again
+                    subscription.compareAndSet(current, null);
+                }
+            }).start();
+        }
+
+        /**
+         * Subscription of the listener, forgotten when the engine closes it, e.g. because the database was dropped.
+         */
+        private final class Subscription implements HealthSubscriber {
+
+            private volatile HealthProbeEngine engine;
+
+            @Override
+            public boolean onHealth(final String dbName, final HealthSnapshot snapshot) {
+                return listener.onHealth(dbName, snapshot);
+            }
+
+            @Override
+            public boolean onHeartbeat() {
+                return listener.onHeartbeat();
+            }
+
+            @Override
+            public void onClose() {
+                listener.onClose();
+                // the closed engine is not replaced, as the DBMS is shutting down
+                if (!subscription.compareAndSet(this, null) || !running || engine == null || engine.isClosed()) {
+                    return;
+                }
+                try {
+                    // the database could have been created again before the engine forgot it
+                    if (dbms.listDatabases().contains(dbName)) {
+                        subscribe();
+                    }
+                } catch (RuntimeException e) {
+                    // the DBMS is shut down
+                }
+            }
+
+        }
+
+    }
+
+}
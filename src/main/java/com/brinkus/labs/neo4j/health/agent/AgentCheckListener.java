@@ -0,0 +1,263 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.brinkus.labs.neo4j.health.agent;
+
+import com.brinkus.labs.neo4j.health.probe.DaemonThreadFactory;
+import com.brinkus.labs.neo4j.health.probe.HealthSnapshot;
+import com.brinkus.labs.neo4j.health.probe.HealthSubscriber;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * TCP listener speaking the HAProxy agent-check protocol.
+ * <p>
+ * HAProxy connects to the agent, reads a single line and the connection is closed. The line is mapped from the status
+ * of the subscribed database:
+ * <ul>
+ *     <li>{@code UP}: {@code up 100%}</li>
+ *     <li>{@code DEGRADED}: {@code up} with the configured weight</li>
+ *     <li>{@code OUT_OF_SERVICE} and {@code UNKNOWN}: {@code drain}</li>
+ *     <li>{@code DOWN}: {@code down}</li>
+ * </ul>
+ * The lines are encoded once, and the status is pushed by the probe engine, so the connections are served by a single
+ * selector thread without touching the database or allocating more than a buffer view per connection.
+ */
+public final class AgentCheckListener implements HealthSubscriber, AutoCloseable {
+
+    private static final int BACKLOG = 1024;
+
+    private static final long STOP_TIMEOUT = 1000L;
+
+    private final InetSocketAddress address;
+
+    private final ByteBuffer[] responses;
+
+    private final ByteBuffer discard;
+
+    private volatile ByteBuffer current;
+
+    private volatile boolean running;
+
+    private Selector selector;
+
+    private ServerSocketChannel server;
+
+    private Thread thread;
+
+    /**
+     * Create a new instance of {@link AgentCheckListener}. The database is reported as {@code drain} until the first
+     * status arrives.
+     *
+     * @param address
+     *         the address to listen on
+     * @param degradedWeight
+     *         the weight of a degraded database in percent
+     */
+    public AgentCheckListener(final InetSocketAddress address, final int degradedWeight) {
+        this.address = address;
+        this.responses = new ByteBuffer[HealthStatusCode.values().length];
+        for (HealthStatusCode code : HealthStatusCode.values()) {
+            this.responses[code.ordinal()] = encode(line(code, degradedWeight));
+        }
+        this.discard = ByteBuffer.allocateDirect(256);
+        this.current = responses[HealthStatusCode.UNKNOWN.ordinal()];
+    }
+
+    /**
+     * Get the agent-check line of the given status.
+     *
+     * @param code
+     *         the status code of the database
+     * @param degradedWeight
+     *         the weight of a degraded database in percent
+     *
+     * @return the line without the line feed
+     */
+    static String line(final HealthStatusCode code, final int degradedWeight) {
+        switch (code) {
+            case UP:
+                return "up 100%";
+            case DEGRADED:
+                return "up " + Math.max(1, Math.min(100, degradedWeight)) + "%";
+            case DOWN:
+                return "down";
+            default:
+                return "drain";
+        }
+    }
+
+    /**
+     * Bind the listener and start the selector thread.
+     *
+     * @throws IOException
+     *         if the address cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        try {
+            server = ServerSocketChannel.open();
+            server.configureBlocking(false);
+            server.bind(address, BACKLOG);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            if (server != null) {
+                server.close();
+            }
+            selector.close();
+            throw e;
+        }
+        running = true;
+        thread = new DaemonThreadFactory("neo4j-health-agent").newThread(this::run);
+        thread.start();
+    }
+
+    /**
+     * Get the port the listener is bound to.
+     *
+     * @return the local port
+     *
+     * @throws IOException
+     *         if the listener is not bound
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public boolean onHealth(final String dbName, final HealthSnapshot snapshot) {
+        current = responses[snapshot.getHealth().getStatus().getCode().ordinal()];
+        return running;
+    }
+
+    @Override
+    public boolean onHeartbeat() {
+        return running;
+    }
+
+    @Override
+    public void onClose() {
+        current = responses[HealthStatusCode.UNKNOWN.ordinal()];
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isWritable()) {
+                        write((SocketChannel) key.channel(), (ByteBuffer) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // the listener cannot serve anymore
+            running = false;
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                // the line fits into the send buffer, so it is usually written right away
+                write(channel, current.duplicate());
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void write(final SocketChannel channel, final ByteBuffer response) {
+        try {
+            channel.write(response);
+            if (response.hasRemaining()) {
+                if (!channel.isRegistered()) {
+                    channel.register(selector, SelectionKey.OP_WRITE, response);
+                }
+                return;
+            }
+            // unread input would reset the connection before the client reads the line
+            discard.clear();
+            while (channel.read(discard) > 0) {
+                discard.clear();
+            }
+        } catch (IOException e) {
+            // the client is gone
+        }
+        closeQuietly(channel);
+    }
+
+    private static ByteBuffer encode(final String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // nothing to do
+        }
+    }
+
+}
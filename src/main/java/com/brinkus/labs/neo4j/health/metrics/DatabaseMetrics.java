@@ -0,0 +1,182 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.metrics;
+
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probe latencies and result counters of a database.
+ */
+public final class DatabaseMetrics {
+
+    private final String name;
+
+    private final LatencyHistogram[] latencies;
+
+    private final AtomicLongArray results;
+
+    private final HealthHistory history;
+
+    private volatile boolean breaker;
+
+    private volatile int consecutiveFailures;
+
+    private volatile int consecutiveSuccesses;
+
+    /**
+     * Create a new instance of {@link DatabaseMetrics}.
+     *
+     * @param name
+     *         the name of the database
+     * @param historySize
+     *         the number of the probe results kept in the history
+     */
+    DatabaseMetrics(final String name, final int historySize) {
+        this.name = name;
+        this.latencies = new LatencyHistogram[ProbePhase.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            this.latencies[i] = new LatencyHistogram();
+        }
+        this.results = new AtomicLongArray(HealthStatusCode.values().length);
+        this.history = new HealthHistory(historySize);
+    }
+
+    /**
+     * Get the name of the database.
+     *
+     * @return the name of the database
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record the latency of a probe phase.
+     *
+     * @param phase
+     *         the probe phase
+     * @param nanos
+     *         the latency in nanoseconds
+     */
+    public void recordLatency(final ProbePhase phase, final long nanos) {
+        latencies[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Record the result of a probe.
+     *
+     * @param code
+     *         the status code of the result
+     */
+    public void recordResult(final HealthStatusCode code) {
+        results.incrementAndGet(code.ordinal());
+    }
+
+    /**
+     * Record the result of a probe in the history.
+     *
+     * @param timestamp
+     *         the time of the probe in milliseconds since the epoch
+     * @param code
+     *         the status code of the result
+     * @param nanos
+     *         the latency of the probe in nanoseconds
+     */
+    public void recordHistory(final long timestamp, final HealthStatusCode code, final long nanos) {
+        history.record(timestamp, code, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Record the consecutive counts of the circuit breaker of the database.
+     *
+     * @param failures
+     *         the number of the consecutive failed probes
+     * @param successes
+     *         the number of the consecutive successful probes
+     */
+    public void recordBreaker(final int failures, final int successes) {
+        this.consecutiveFailures = failures;
+        this.consecutiveSuccesses = successes;
+        this.breaker = true;
+    }
+
+    /**
+     * Check whether the probes of the database are guarded by a circuit breaker.
+     *
+     * @return {@code true} if the consecutive counts of a breaker were recorded
+     */
+    public boolean hasBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Get the number of the consecutive failed probes counted by the circuit breaker.
+     *
+     * @return the number of the failures
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Get the number of the consecutive successful probes counted by the circuit breaker.
+     *
+     * @return the number of the successes
+     */
+    public int getConsecutiveSuccesses() {
+        return consecutiveSuccesses;
+    }
+
+    /**
+     * Get the latency histogram of a probe phase.
+     *
+     * @param phase
+     *         the probe phase
+     *
+     * @return the histogram of the latencies in microseconds
+     */
+    public LatencyHistogram getLatency(final ProbePhase phase) {
+        return latencies[phase.ordinal()];
+    }
+
+    /**
+     * Get the number of the probe results with the given status code.
+     *
+     * @param code
+     *         the status code
+     *
+     * @return the number of the results
+     */
+    public long getResults(final HealthStatusCode code) {
+        return results.get(code.ordinal());
+    }
+
+    /**
+     * Get the history of the recent probe results.
+     *
+     * @return the history
+     */
+    public HealthHistory getHistory() {
+        return history;
+    }
+
+}
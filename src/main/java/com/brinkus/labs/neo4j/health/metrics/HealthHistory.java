@@ -0,0 +1,249 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.metrics;
+
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size history of the recent probe results of a database.
+ * <p>
+ * The entries are kept in preallocated ring buffers, so the memory is bounded regardless of the number of probes. The
+ * writers claim a slot with a single atomic increment and publish it with a sequence number, the readers skip the
+ * slots which are overwritten while they are read. Neither of them takes a lock.
+ */
+public final class HealthHistory {
+
+    /**
+     * A probe result of the history.
+     */
+    @JsonPropertyOrder({ "timestamp", "status", "latency" })
+    public static final class Entry {
+
+        private final long timestamp;
+
+        private final HealthStatusCode status;
+
+        private final long latency;
+
+        private Entry(final long timestamp, final HealthStatusCode status, final long latency) {
+            this.timestamp = timestamp;
+            this.status = status;
+            this.latency = latency;
+        }
+
+        /**
+         * Get the time of the probe.
+         *
+         * @return the timestamp in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Get the status code of the result.
+         *
+         * @return the status code
+         */
+        public HealthStatusCode getStatus() {
+            return status;
+        }
+
+        /**
+         * Get the latency of the probe.
+         *
+         * @return the latency in milliseconds
+         */
+        public double getLatency() {
+            return latency / 1000.0;
+        }
+    }
+
+    /**
+     * The entries of the history with their summary.
+     */
+    @JsonPropertyOrder({ "size", "availability", "latency", "entries" })
+    public static final class Window {
+
+        private static final double[] PERCENTILES = { 50.0, 95.0, 99.0 };
+
+        private final List<Entry> entries;
+
+        private Window(final List<Entry> entries) {
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        /**
+         * Get the number of the entries.
+         *
+         * @return the number of the entries
+         */
+        public int getSize() {
+            return entries.size();
+        }
+
+        /**
+         * Get the percentage of the results with {@link HealthStatusCode#UP} or {@link HealthStatusCode#DEGRADED}
+         * status.
+         *
+         * @return the availability between 0 and 100, or 0 if there are no entries
+         */
+        public double getAvailability() {
+            if (entries.isEmpty()) {
+                return 0.0;
+            }
+            int available = 0;
+            for (Entry entry : entries) {
+                if (entry.status == HealthStatusCode.UP || entry.status == HealthStatusCode.DEGRADED) {
+                    available++;
+                }
+            }
+            return 100.0 * available / entries.size();
+        }
+
+        /**
+         * Get the latency percentiles of the entries.
+         *
+         * @return the 50th, 95th and 99th percentiles in milliseconds keyed by {@code p50}, {@code p95} and
+         *         {@code p99}
+         */
+        public Map<String, Double> getLatency() {
+            long[] latencies = new long[entries.size()];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = entries.get(i).latency;
+            }
+            Arrays.sort(latencies);
+            Map<String, Double> result = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                long value = 0L;
+                if (latencies.length > 0) {
+                    int rank = (int) Math.ceil(percentile / 100.0 * latencies.length);
+                    value = latencies[Math.max(0, rank - 1)];
+                }
+                result.put("p" + (int) percentile, value / 1000.0);
+            }
+            return result;
+        }
+
+        /**
+         * Get the entries from the oldest to the newest.
+         *
+         * @return the entries
+         */
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    private static final long WRITING = -1L;
+
+    private static final int CODE_BITS = 8;
+
+    private final int mask;
+
+    private final AtomicLong head;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLongArray timestamps;
+
+    private final AtomicLongArray results;
+
+    /**
+     * Create a new instance of {@link HealthHistory}.
+     *
+     * @param capacity
+     *         the number of the entries kept, rounded up to a power of two
+     */
+    public HealthHistory(final int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, WRITING);
+        }
+        this.timestamps = new AtomicLongArray(size);
+        this.results = new AtomicLongArray(size);
+    }
+
+    /**
+     * Get the number of the entries kept.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Record a probe result.
+     *
+     * @param timestamp
+     *         the time of the probe in milliseconds since the epoch
+     * @param code
+     *         the status code of the result
+     * @param latency
+     *         the latency of the probe in microseconds
+     */
+    public void record(final long timestamp, final HealthStatusCode code, final long latency) {
+        long sequence = head.getAndIncrement();
+        int slot = (int) sequence & mask;
+        sequences.set(slot, WRITING);
+        timestamps.set(slot, timestamp);
+        results.set(slot, Math.max(0L, latency) << CODE_BITS | code.ordinal());
+        sequences.set(slot, sequence);
+    }
+
+    /**
+     * Get the current entries of the history.
+     *
+     * @return the entries from the oldest to the newest
+     */
+    public Window window() {
+        HealthStatusCode[] codes = HealthStatusCode.values();
+        long end = head.get();
+        long start = Math.max(0L, end - getCapacity());
+        List<Entry> entries = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            if (sequences.get(slot) != sequence) {
+                // the slot is not published yet or already overwritten
+                continue;
+            }
+            long timestamp = timestamps.get(slot);
+            long result = results.get(slot);
+            if (sequences.get(slot) == sequence) {
+                entries.add(new Entry(timestamp, codes[(int) (result & ((1 << CODE_BITS) - 1))], result >>> CODE_BITS));
+            }
+        }
+        return new Window(entries);
+    }
+
+}
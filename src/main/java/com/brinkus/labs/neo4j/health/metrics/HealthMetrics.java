@@ -0,0 +1,102 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the probe metrics of the databases.
+ */
+public final class HealthMetrics {
+
+    private static final int DEFAULT_HISTORY_SIZE = 512;
+
+    private final int historySize;
+
+    private final ConcurrentMap<String, DatabaseMetrics> databases;
+
+    /**
+     * Create a new, empty instance of {@link HealthMetrics}.
+     */
+    public HealthMetrics() {
+        this(DEFAULT_HISTORY_SIZE);
+    }
+
+    /**
+     * Create a new, empty instance of {@link HealthMetrics}.
+     *
+     * @param historySize
+     *         the number of the probe results kept in the history of a database
+     */
+    public HealthMetrics(final int historySize) {
+        this.historySize = historySize;
+        this.databases = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the metrics of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the metrics of the database
+     */
+    public DatabaseMetrics database(final String dbName) {
+        DatabaseMetrics metrics = databases.get(dbName);
+        if (metrics != null) {
+            return metrics;
+        }
+        return databases.computeIfAbsent(dbName, name -> new DatabaseMetrics(name, historySize));
+    }
+
+    /**
+     * Find the metrics of the given database without creating them.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the metrics of the database, or {@code null} if it was not probed yet
+     */
+    public DatabaseMetrics find(final String dbName) {
+        return databases.get(dbName);
+    }
+
+    /**
+     * Get the metrics of all databases.
+     *
+     * @return the metrics of the databases
+     */
+    public Collection<DatabaseMetrics> databases() {
+        return Collections.unmodifiableCollection(databases.values());
+    }
+
+    /**
+     * Remove the metrics of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     */
+    public void remove(final String dbName) {
+        databases.remove(dbName);
+    }
+
+}
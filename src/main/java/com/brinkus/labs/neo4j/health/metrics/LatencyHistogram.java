@@ -0,0 +1,181 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ * <p>
+ * Like the HDR histograms, every power of two range is split into {@value #SUB_BUCKETS} linear sub-buckets, so the
+ * recorded values keep about 3% precision over the whole range. Recording never locks or allocates: it only increments
+ * pre-allocated atomic counters.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_SHIFT = 40;
+
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_SHIFT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLong count;
+
+    private final AtomicLong sum;
+
+    /**
+     * Create a new, empty instance of {@link LatencyHistogram}.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value
+     *         the value to record, negative values are recorded as zero
+     */
+    public void record(long value) {
+        long recorded = Math.max(0L, value);
+        counts.incrementAndGet(index(recorded));
+        sum.addAndGet(recorded);
+        count.incrementAndGet();
+    }
+
+    /**
+     * Get the number of the recorded values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the sum of the recorded values.
+     *
+     * @return the sum of the values
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Get the value at the given percentile. The result is the highest value of the bucket, so it is never lower than
+     * the recorded value.
+     *
+     * @param percentile
+     *         the percentile between 0 and 100
+     *
+     * @return the value at the percentile, or zero if there are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Get the values at the given percentiles using a single pass over the buckets.
+     *
+     * @param percentiles
+     *         the percentiles between 0 and 100 in ascending order
+     *
+     * @return the values at the percentiles, or zeros if there are no values
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long[] values = new long[percentiles.length];
+        if (total == 0L) {
+            return values;
+        }
+        int index = 0;
+        long seen = snapshot[0];
+        for (int p = 0; p < percentiles.length; p++) {
+            double percentile = Math.min(100.0, Math.max(0.0, percentiles[p]));
+            long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+            while (seen < rank && index < BUCKETS - 1) {
+                seen += snapshot[++index];
+            }
+            values[p] = highestValue(index);
+        }
+        return values;
+    }
+
+    /**
+     * Get the number of the values not greater than the given limits using a single pass over the buckets. A bucket is
+     * counted only if its highest value is within the limit, so the counts are exact up to the precision of the
+     * buckets and never include a value above the limit.
+     *
+     * @param limits
+     *         the limits in ascending order
+     *
+     * @return the cumulative counts at the limits, followed by the number of all values
+     */
+    public long[] getCumulativeCounts(long... limits) {
+        long[] counts = new long[limits.length + 1];
+        long seen = 0L;
+        int limit = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long highest = highestValue(i);
+            while (limit < limits.length && highest > limits[limit]) {
+                counts[limit++] = seen;
+            }
+            seen += this.counts.get(i);
+        }
+        while (limit < limits.length) {
+            counts[limit++] = seen;
+        }
+        counts[limits.length] = seen;
+        return counts;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.metrics;
+
+/**
+ * The measured phases of a health probe.
+ */
+public enum ProbePhase {
+
+    /**
+     * The availability check of the database.
+     */
+    AVAILABILITY("availability"),
+
+    /**
+     * The check query of the database.
+     */
+    QUERY("query"),
+
+    /**
+     * The whole probe.
+     */
+    TOTAL("total");
+
+    /**
+     * The value of the enum.
+     */
+    private final String value;
+
+    /**
+     * Create a new instance of {@link ProbePhase}
+     *
+     * @param value
+     *         the text value of the enum
+     */
+    ProbePhase(String value) {
+        this.value = value;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+}
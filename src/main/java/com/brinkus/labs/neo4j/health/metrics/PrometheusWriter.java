@@ -0,0 +1,183 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.metrics;
+
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the {@link HealthMetrics} in the Prometheus text exposition format.
+ * <p>
+ * The latencies are exposed as cumulative histograms rather than pre-calculated quantiles, because the recorded values
+ * are never reset: the quantiles of a window, e.g. the p99 of the last five minutes, are calculated by the server with
+ * {@code histogram_quantile(0.99, rate(neo4j_health_probe_latency_seconds_bucket[5m]))}.
+ */
+public final class PrometheusWriter {
+
+    /**
+     * The content type of the Prometheus text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double MICROS_PER_SECOND = 1000000.0;
+
+    private static final String LATENCY = "neo4j_health_probe_latency_seconds";
+
+    private static final String RESULTS = "neo4j_health_probe_results_total";
+
+    private static final String BREAKER = "neo4j_health_breaker_consecutive_probes";
+
+    /**
+     * The upper bounds of the exported buckets in microseconds, from 100 microseconds to 30 seconds.
+     */
+    private static final long[] BOUNDS = {
+            100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L, 500000L, 1000000L,
+            2500000L, 5000000L, 10000000L, 30000000L
+    };
+
+    private static final String[] LE = new String[BOUNDS.length + 1];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            LE[i] = BigDecimal.valueOf(BOUNDS[i], 6).stripTrailingZeros().toPlainString();
+        }
+        LE[BOUNDS.length] = "+Inf";
+    }
+
+    private PrometheusWriter() {
+    }
+
+    /**
+     * Write the metrics to the given stream.
+     *
+     * @param metrics
+     *         the metrics to write
+     * @param stream
+     *         the output stream, it is flushed but not closed
+     *
+     * @throws IOException
+     *         if an error occurred during the write
+     */
+    public static void write(final HealthMetrics metrics, final OutputStream stream) throws IOException {
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+
+        header(writer, LATENCY, "histogram", "Latency of the health probe phases.");
+        for (DatabaseMetrics database : metrics.databases()) {
+            for (ProbePhase phase : ProbePhase.values()) {
+                LatencyHistogram histogram = database.getLatency(phase);
+                long[] counts = histogram.getCumulativeCounts(BOUNDS);
+                for (int i = 0; i < counts.length; i++) {
+                    sample(writer, LATENCY + "_bucket", database.getName(), "phase", phase.toString(), LE[i]);
+                    writer.write(Long.toString(counts[i]));
+                    writer.write('\n');
+                }
+                sample(writer, LATENCY + "_sum", database.getName(), "phase", phase.toString(), null);
+                writer.write(Double.toString(histogram.getSum() / MICROS_PER_SECOND));
+                writer.write('\n');
+                // the count is taken from the same pass as the buckets, so it always equals the +Inf bucket
+                sample(writer, LATENCY + "_count", database.getName(), "phase", phase.toString(), null);
+                writer.write(Long.toString(counts[counts.length - 1]));
+                writer.write('\n');
+            }
+        }
+
+        header(writer, RESULTS, "counter", "Number of the health probe results by status.");
+        for (DatabaseMetrics database : metrics.databases()) {
+            for (HealthStatusCode code : HealthStatusCode.values()) {
+                sample(writer, RESULTS, database.getName(), "status", code.toString(), null);
+                writer.write(Long.toString(database.getResults(code)));
+                writer.write('\n');
+            }
+        }
+
+        header(writer, BREAKER, "gauge", "Number of the consecutive failed or successful probes of the circuit breaker.");
+        for (DatabaseMetrics database : metrics.databases()) {
+            if (database.hasBreaker()) {
+                sample(writer, BREAKER, database.getName(), "result", "failure", null);
+                writer.write(Integer.toString(database.getConsecutiveFailures()));
+                writer.write('\n');
+                sample(writer, BREAKER, database.getName(), "result", "success", null);
+                writer.write(Integer.toString(database.getConsecutiveSuccesses()));
+                writer.write('\n');
+            }
+        }
+
+        writer.flush();
+    }
+
+    private static void header(Writer writer, String name, String type, String help) throws IOException {
+        writer.write("# HELP ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(help);
+        writer.write("\n# TYPE ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(type);
+        writer.write('\n');
+    }
+
+    private static void sample(
+            Writer writer,
+            String name,
+            String database,
+            String label,
+            String value,
+            String le
+    ) throws IOException {
+        writer.write(name);
+        writer.write("{database=\"");
+        escape(writer, database);
+        writer.write("\",");
+        writer.write(label);
+        writer.write("=\"");
+        escape(writer, value);
+        if (le != null) {
+            writer.write("\",le=\"");
+            writer.write(le);
+        }
+        writer.write("\"} ");
+    }
+
+    private static void escape(Writer writer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control of the requests which have to probe a database.
+ * <p>
+ * The number of the requests probing at the same time is limited globally, and the probing requests of every client
+ * are limited by a token bucket. The bucket of a client is a single theoretical arrival time, advanced by the
+ * emission interval of the configured rate on every admitted request, so a request is admitted while the arrival time
+ * is less than a burst ahead of the current time. Both limits are updated with compare-and-set only, the requests
+ * never wait for each other.
+ * <p>
+ * The number of the tracked clients is limited, the full (idle) buckets are evicted when the limit is reached. If
+ * there is still no room for a new client, its requests are only limited by the global limit.
+ */
+public final class AdmissionController {
+
+    private final int maxConcurrent;
+
+    private final int maxClients;
+
+    private final long interval;
+
+    private final long burst;
+
+    private final AtomicInteger active;
+
+    private final ConcurrentMap<String, AtomicLong> clients;
+
+    /**
+     * Create a new instance of {@link AdmissionController}.
+     *
+     * @param settings
+     *         the probe settings
+     */
+    public AdmissionController(final HealthSettings settings) {
+        this.maxConcurrent = settings.getAdmissionMaxConcurrent();
+        this.maxClients = settings.getAdmissionMaxClients();
+        double rate = settings.getAdmissionClientRate();
+        this.interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0L;
+        this.burst = interval * Math.max(1, settings.getAdmissionClientBurst());
+        this.active = new AtomicInteger();
+        this.clients = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Try to admit a probing request of the given client, consuming a token from its bucket.
+     *
+     * @param client
+     *         the address of the client
+     *
+     * @return true if the request is within the rate of the client
+     */
+    public boolean admit(final String client) {
+        return admit(client, System.nanoTime());
+    }
+
+    /**
+     * Try to start a probing request within the global limit. An acquired request has to be released by
+     * {@link #release()}.
+     *
+     * @return true if the request may probe
+     */
+    public boolean tryAcquire() {
+        if (maxConcurrent <= 0) {
+            return true;
+        }
+        int current;
+        do {
+            current = active.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+        } while (!active.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Finish a probing request acquired by {@link #tryAcquire()}.
+     */
+    public void release() {
+        if (maxConcurrent > 0) {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of the requests probing at the moment.
+     *
+     * @return the number of the active requests
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    boolean admit(final String client, final long now) {
+        if (interval <= 0 || client == null) {
+            return true;
+        }
+        AtomicLong bucket = clients.get(client);
+        if (bucket == null) {
+            if (clients.size() >= maxClients) {
+                clients.values().removeIf(arrival -> arrival.get() - now <= 0);
+                if (clients.size() >= maxClients) {
+                    return true;
+                }
+            }
+            bucket = clients.computeIfAbsent(client, key -> new AtomicLong(now));
+        }
+        long arrival;
+        long next;
+        do {
+            arrival = bucket.get();
+            next = Math.max(arrival - now, 0L) + now + interval;
+            if (next - now > burst) {
+                return false;
+            }
+        } while (!bucket.compareAndSet(arrival, next));
+        return true;
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.common.DependencyResolver;
+import org.neo4j.configuration.Config;
+import org.neo4j.configuration.connectors.BoltConnector;
+import org.neo4j.configuration.connectors.ConnectorPortRegister;
+import org.neo4j.configuration.helpers.SocketAddress;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.internal.helpers.HostnamePort;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sampler of the reachability of the Bolt connector.
+ * <p>
+ * The availability check and the embedded queries go through the in-process API, so they succeed while the Bolt
+ * connector does not accept the clients, e.g. because its thread pool is exhausted. The sampler connects to the local
+ * listen address of the connector with a non-blocking socket, performs the Bolt version handshake and reports the
+ * latency of the connect and of the handshake. The database is reported as
+ * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DOWN} if the connector does not answer within the
+ * timeout, and as {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DEGRADED} if the handshake is slow or no
+ * version is agreed. The handshake is not encrypted, so a connector requiring TLS is not probed, and it is reported as
+ * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#UNKNOWN}, which does not change the status of the
+ * databases.
+ * <p>
+ * The connector is shared by the databases, so they share the sample as well: at most one connection is open at a
+ * time, and a new one is opened only if the latest sample is older than half of the interval.
+ */
+final class BoltSampler implements HealthSampler {
+
+    private static final String NAME = "bolt";
+
+    /**
+     * The handshake of the client: the magic preamble and the supported versions (4.2, 4.1, 4.0 and 3) in order of
+     * preference.
+     */
+    private static final ByteBuffer HANDSHAKE = ByteBuffer.allocate(20)
+            .putInt(0x6060B017)
+            .putInt(0x00000204)
+            .putInt(0x00000104)
+            .putInt(0x00000004)
+            .putInt(0x00000003)
+            .flip()
+            .asReadOnlyBuffer();
+
+    private final HealthSettings settings;
+
+    private final AtomicBoolean probing;
+
+    private volatile long sampledAt;
+
+    private volatile Health health;
+
+    /**
+     * Create a new instance of {@link BoltSampler}.
+     *
+     * @param settings
+     *         the settings containing the interval, the timeout and the limit
+     */
+    BoltSampler(final HealthSettings settings) {
+        this.settings = settings;
+        this.probing = new AtomicBoolean();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getBoltInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        if (!(service instanceof GraphDatabaseAPI)) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "Bolt connector is not available!")
+                    .build();
+        }
+        Health latest = health;
+        long now = System.nanoTime();
+        if (latest != null && now - sampledAt < TimeUnit.MILLISECONDS.toNanos(settings.getBoltInterval()) / 2) {
+            return latest;
+        }
+        // another database is sampling the connector, its result is reported by the next sample
+        if (!probing.compareAndSet(false, true)) {
+            return latest != null ? latest : new Health.Builder().unknown()
+                    .withDetail("description", "Bolt connector is being probed!")
+                    .build();
+        }
+        try {
+            latest = probe(((GraphDatabaseAPI) service).getDependencyResolver());
+            sampledAt = System.nanoTime();
+            health = latest;
+            return latest;
+        } finally {
+            probing.set(false);
+        }
+    }
+
+    private Health probe(final DependencyResolver resolver) {
+        Config config = resolver.resolveDependency(Config.class);
+        if (!config.get(BoltConnector.enabled)) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "Bolt connector is not enabled!")
+                    .build();
+        }
+        // the handshake is sent in plaintext, which a connector requiring TLS refuses
+        if (config.get(BoltConnector.encryption_level) == BoltConnector.EncryptionLevel.REQUIRED) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "Bolt connector requires TLS, the handshake is not probed!")
+                    .withDetail("encryptionLevel", BoltConnector.EncryptionLevel.REQUIRED.name())
+                    .build();
+        }
+        return handshake(address(resolver, config));
+    }
+
+    /**
+     * Perform the Bolt version handshake with the connector.
+     *
+     * @param address
+     *         the address of the connector
+     *
+     * @return the result of the handshake
+     */
+    Health handshake(final InetSocketAddress address) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getBoltTimeout());
+        Health.Builder builder = new Health.Builder()
+                .withDetail("address", address.getHostString() + ":" + address.getPort());
+        try (Selector selector = Selector.open(); SocketChannel channel = SocketChannel.open()) {
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+            channel.connect(address);
+            while (!channel.finishConnect()) {
+                if (!await(selector, deadline)) {
+                    return timedOut(builder, "connect");
+                }
+            }
+            long connected = System.nanoTime();
+            builder.withDetail("connectLatency", TimeUnit.NANOSECONDS.toMillis(connected - start));
+
+            ByteBuffer request = HANDSHAKE.duplicate();
+            ByteBuffer response = ByteBuffer.allocate(4);
+            key.interestOps(SelectionKey.OP_WRITE);
+            while (response.hasRemaining()) {
+                if (request.hasRemaining()) {
+                    channel.write(request);
+                    if (!request.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                } else if (channel.read(response) < 0) {
+                    return builder.down()
+                            .withDetail("description", "Bolt connector closed the connection during the handshake!")
+                            .build();
+                }
+                if (response.hasRemaining() && !await(selector, deadline)) {
+                    return timedOut(builder, "handshake");
+                }
+            }
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connected);
+            int version = response.getInt(0);
+            builder.withDetail("handshakeLatency", latency)
+                    .withDetail("version", (version & 0xFF) + "." + ((version >> 8) & 0xFF));
+            if (version == 0) {
+                return builder.degraded()
+                        .withDetail("description", "Bolt connector does not support the probed versions!")
+                        .build();
+            }
+            if (settings.getBoltDegradedLatency() > 0 && latency > settings.getBoltDegradedLatency()) {
+                return builder.degraded()
+                        .withDetail("limit", settings.getBoltDegradedLatency())
+                        .build();
+            }
+            return builder.up().build();
+        } catch (IOException e) {
+            return builder.down()
+                    .withException(e)
+                    .build();
+        }
+    }
+
+    /**
+     * Wait until the channel is ready for the selected operation.
+     *
+     * @return {@code false} if the deadline passed
+     */
+    private static boolean await(final Selector selector, final long deadline) throws IOException {
+        while (true) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            // a zero timeout would block the selector without limit
+            if (remaining <= 0) {
+                return false;
+            }
+            if (selector.select(remaining) > 0) {
+                selector.selectedKeys().clear();
+                return true;
+            }
+        }
+    }
+
+    private Health timedOut(final Health.Builder builder, final String phase) {
+        return builder.down()
+                .withDetail("description", "Bolt " + phase + " did not complete in time!")
+                .withDetail("timeout", settings.getBoltTimeout())
+                .build();
+    }
+
+    /**
+     * Resolve the local address of the Bolt connector. The bound address is preferred, since the configured port may
+     * be ephemeral, and the loopback address is used instead of a wildcard or an unresolved host.
+     *
+     * @return the address
+     */
+    private static InetSocketAddress address(final DependencyResolver resolver, final Config config) {
+        String host;
+        int port;
+        HostnamePort bound = resolver.containsDependency(ConnectorPortRegister.class)
+                ? resolver.resolveDependency(ConnectorPortRegister.class).getLocalAddress(BoltConnector.NAME)
+                : null;
+        if (bound != null) {
+            host = bound.getHost();
+            port = bound.getPort();
+        } else {
+            SocketAddress listen = config.get(BoltConnector.listen_address);
+            host = listen.getHostname();
+            port = listen.getPort();
+        }
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved() || address.getAddress().isAnyLocalAddress()) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        }
+        return address;
+    }
+
+}
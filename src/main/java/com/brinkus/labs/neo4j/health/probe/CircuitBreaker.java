@@ -0,0 +1,192 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker and hysteresis of the probes of a database.
+ * <p>
+ * A result is a failure if its status is neither {@link HealthStatusCode#UP} nor {@link HealthStatusCode#DEGRADED}.
+ * After the configured number of consecutive failures the breaker opens, and the probes are not executed until the
+ * backoff expires. Then a single trial probe is allowed: a success closes the breaker, a failure opens it again with
+ * a doubled backoff.
+ * <p>
+ * The reported result changes between healthy and failing only after the configured number of consecutive successes
+ * (rise) or failures (fall), so a single transient error does not flap the status. The state of the breaker, and its
+ * backoff while it is open, are added to the reported result as the {@value #DETAIL} detail. The consecutive counts
+ * change on every probe, so they are exported as metrics instead, and the reported result stays the same while the
+ * status does not change.
+ */
+final class CircuitBreaker {
+
+    /**
+     * The state of the circuit breaker.
+     */
+    enum State {
+
+        /**
+         * The probes are executed.
+         */
+        CLOSED,
+
+        /**
+         * The probes are not executed until the backoff expires.
+         */
+        OPEN,
+
+        /**
+         * A trial probe is executed.
+         */
+        HALF_OPEN
+    }
+
+    private static final String DETAIL = "breaker";
+
+    private final HealthSettings settings;
+
+    private State state;
+
+    private int failures;
+
+    private int successes;
+
+    private long backoff;
+
+    private long openUntil;
+
+    private Health reported;
+
+    /**
+     * Create a new instance of {@link CircuitBreaker}.
+     *
+     * @param settings
+     *         the settings containing the thresholds and the backoff
+     */
+    CircuitBreaker(final HealthSettings settings) {
+        this.settings = settings;
+        this.state = State.CLOSED;
+    }
+
+    /**
+     * Check whether a probe can be executed. An open breaker becomes half-open once its backoff expired.
+     *
+     * @return {@code true} if a probe can be executed
+     */
+    synchronized boolean allowProbe() {
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            state = State.HALF_OPEN;
+        }
+        return state != State.OPEN;
+    }
+
+    /**
+     * Record the result of a probe.
+     *
+     * @param result
+     *         the result of the probe
+     *
+     * @return the result to report
+     */
+    synchronized Health record(final Health result) {
+        boolean healthy = isHealthy(result);
+        if (healthy) {
+            successes++;
+            failures = 0;
+            state = State.CLOSED;
+            backoff = 0L;
+        } else {
+            failures++;
+            successes = 0;
+            if (state == State.HALF_OPEN || failures >= settings.getBreakerFailures()) {
+                open();
+            }
+        }
+        if (reported == null || isHealthy(reported) == healthy
+                || (healthy ? successes >= settings.getBreakerRise() : failures >= settings.getBreakerFall())) {
+            reported = result;
+        }
+        return current();
+    }
+
+    /**
+     * Get the result to report without a new probe.
+     *
+     * @return the last reported result, {@link HealthStatusCode#UNKNOWN} if there was none yet
+     */
+    synchronized Health current() {
+        Map<String, Object> breaker = new LinkedHashMap<>();
+        breaker.put("state", state.name());
+        if (state == State.OPEN) {
+            breaker.put("backoff", backoff);
+        }
+        Health.Builder builder = new Health.Builder();
+        if (reported != null) {
+            builder.status(reported.getStatus());
+            reported.getDetails().forEach(builder::withDetail);
+        }
+        return builder.withDetail(DETAIL, breaker).build();
+    }
+
+    /**
+     * Get the number of the consecutive failed probes.
+     *
+     * @return the number of the failures
+     */
+    synchronized int getConsecutiveFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the number of the consecutive successful probes.
+     *
+     * @return the number of the successes
+     */
+    synchronized int getConsecutiveSuccesses() {
+        return successes;
+    }
+
+    /**
+     * Get the state of the breaker.
+     *
+     * @return the state
+     */
+    synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        backoff = backoff == 0L
+                ? settings.getBreakerBackoff()
+                : Math.min(backoff * 2L, settings.getBreakerMaxBackoff());
+        openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        state = State.OPEN;
+    }
+
+    private static boolean isHealthy(final Health health) {
+        HealthStatusCode code = health.getStatus().getCode();
+        return code == HealthStatusCode.UP || code == HealthStatusCode.DEGRADED;
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Assertion on the minimum count of the nodes with a label or of the relationships of a pattern.
+ * <p>
+ * The assertions are answered from the count store of the database, so they take the same time whatever the size of
+ * the graph. The count store keeps the relationship counts by type and by the label of at most one end node, so the
+ * supported patterns are {@code (:Label)}, {@code ()-[:TYPE]->()}, {@code (:Label)-[:TYPE]->()} and
+ * {@code ()-[:TYPE]->(:Label)}, where every label and type is optional. An assertion is applied to every database
+ * except {@code system}, unless it is prefixed with the name of a database, e.g. {@code movies:(:Movie)>=1000}.
+ */
+final class CountAssertion {
+
+    private static final String NAME = "\\s*(?::\\s*([^\\s():\\[\\]]+))?\\s*";
+
+    private static final Pattern ASSERTION = Pattern.compile(
+            "(?:([^:(]+):)?\\s*\\(" + NAME + "\\)(-\\[" + NAME + "]->\\(" + NAME + "\\))?\\s*>=\\s*(\\d+)");
+
+    private final String database;
+
+    private final String startLabel;
+
+    private final String type;
+
+    private final String endLabel;
+
+    private final boolean relationship;
+
+    private final long minimum;
+
+    private final String pattern;
+
+    private CountAssertion(
+            final String database,
+            final String startLabel,
+            final String type,
+            final String endLabel,
+            final boolean relationship,
+            final long minimum
+    ) {
+        this.database = database;
+        this.startLabel = startLabel;
+        this.type = type;
+        this.endLabel = endLabel;
+        this.relationship = relationship;
+        this.minimum = minimum;
+        this.pattern = relationship
+                ? node(startLabel) + "-[" + (type != null ? ":" + type : "") + "]->" + node(endLabel)
+                : node(startLabel);
+    }
+
+    /**
+     * Parse the comma-separated list of assertions.
+     *
+     * @param assertions
+     *         the assertions, e.g. {@code (:Movie)>=1000,()-[:ACTED_IN]->()>=5000}
+     *
+     * @return the parsed assertions
+     *
+     * @throws IllegalArgumentException
+     *         if an assertion is invalid or cannot be answered from the count store
+     */
+    static List<CountAssertion> parse(final String assertions) {
+        List<CountAssertion> result = new ArrayList<>();
+        if (assertions == null) {
+            return result;
+        }
+        for (String assertion : assertions.split(",")) {
+            if (assertion.trim().isEmpty()) {
+                continue;
+            }
+            Matcher matcher = ASSERTION.matcher(assertion.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid count assertion: " + assertion.trim());
+            }
+            if (matcher.group(2) != null && matcher.group(5) != null) {
+                throw new IllegalArgumentException("The count store has no relationship counts by the labels of both "
+                        + "end nodes: " + assertion.trim());
+            }
+            String database = matcher.group(1) != null ? matcher.group(1).trim() : null;
+            result.add(new CountAssertion(database, matcher.group(2), matcher.group(4), matcher.group(5),
+                    matcher.group(3) != null, Long.parseLong(matcher.group(6))));
+        }
+        return result;
+    }
+
+    /**
+     * Check whether the assertion is applied to the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param system
+     *         whether the database is the system database
+     *
+     * @return {@code true} if the assertion is applied to the database
+     */
+    boolean appliesTo(final String dbName, final boolean system) {
+        return database != null ? database.equals(dbName) : !system;
+    }
+
+    /**
+     * Get the count of the pattern from the count store. Labels and types that do not exist have no count, and the
+     * marker node of the write canary is not counted by the {@code ()} pattern.
+     *
+     * @param tokens
+     *         the token lookup of the transaction
+     * @param read
+     *         the data read of the transaction
+     *
+     * @return the count
+     */
+    long count(final TokenRead tokens, final Read read) {
+        int start = startLabel != null ? tokens.nodeLabel(startLabel) : TokenRead.ANY_LABEL;
+        if (startLabel != null && start == TokenRead.NO_TOKEN) {
+            return 0L;
+        }
+        if (!relationship) {
+            long count = read.countsForNode(start);
+            int canary = startLabel == null ? tokens.nodeLabel(WriteCanarySampler.LABEL) : TokenRead.NO_TOKEN;
+            return canary != TokenRead.NO_TOKEN ? count - read.countsForNode(canary) : count;
+        }
+        int typeId = type != null ? tokens.relationshipType(type) : TokenRead.ANY_RELATIONSHIP_TYPE;
+        int end = endLabel != null ? tokens.nodeLabel(endLabel) : TokenRead.ANY_LABEL;
+        if ((type != null && typeId == TokenRead.NO_TOKEN) || (endLabel != null && end == TokenRead.NO_TOKEN)) {
+            return 0L;
+        }
+        return read.countsForRelationship(start, typeId, end);
+    }
+
+    /**
+     * Get the minimum count.
+     *
+     * @return the minimum count
+     */
+    long getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Get the pattern of the assertion, used as the key of its detail.
+     *
+     * @return the pattern, e.g. {@code (:Movie)}
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return (database != null ? database + ":" : "") + pattern + ">=" + minimum;
+    }
+
+    private static String node(final String label) {
+        return label != null ? "(:" + label + ")" : "()";
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sampler checking that the reference data of a database is loaded.
+ * <p>
+ * The {@link CountAssertion assertions} are answered from the count store through the kernel API, so a check never
+ * scans the nodes or the relationships, and it takes the same time on any size of graph. The counts are reported as
+ * details, and the database is reported as {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#OUT_OF_SERVICE}
+ * if any count is below its minimum.
+ */
+final class CountStoreSampler implements HealthSampler {
+
+    private static final String NAME = "counts";
+
+    private final HealthSettings settings;
+
+    private final List<CountAssertion> assertions;
+
+    /**
+     * Create a new instance of {@link CountStoreSampler}.
+     *
+     * @param settings
+     *         the settings containing the assertions and their interval
+     *
+     * @throws IllegalArgumentException
+     *         if an assertion is invalid
+     */
+    CountStoreSampler(final HealthSettings settings) {
+        this.settings = settings;
+        this.assertions = CountAssertion.parse(settings.getCountAssertions());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getCountInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        boolean system = GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(dbName);
+        List<CountAssertion> applied = assertions.stream()
+                .filter(assertion -> assertion.appliesTo(dbName, system))
+                .collect(Collectors.toList());
+        if (applied.isEmpty()) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "No count assertions for the database.")
+                    .build();
+        }
+
+        Health.Builder builder = new Health.Builder().up();
+        List<String> failed = new ArrayList<>();
+        try (Transaction transaction = service.beginTx(settings.getTimeout(), TimeUnit.MILLISECONDS)) {
+            if (!(transaction instanceof InternalTransaction)) {
+                return new Health.Builder().unknown()
+                        .withDetail("description", "Neo4j count store is not available.")
+                        .build();
+            }
+            KernelTransaction kernelTransaction = ((InternalTransaction) transaction).kernelTransaction();
+            for (CountAssertion assertion : applied) {
+                long count = assertion.count(kernelTransaction.tokenRead(), kernelTransaction.dataRead());
+                builder.withDetail(assertion.getPattern(), count);
+                if (count < assertion.getMinimum()) {
+                    failed.add(assertion.toString());
+                }
+            }
+        } catch (Exception e) {
+            return new Health.Builder().unknown()
+                    .withException(e)
+                    .build();
+        }
+
+        if (!failed.isEmpty()) {
+            builder.outOfService()
+                    .withDetail("description", "Neo4j reference data is missing!")
+                    .withDetail("failed", failed);
+        }
+        return builder.build();
+    }
+
+}
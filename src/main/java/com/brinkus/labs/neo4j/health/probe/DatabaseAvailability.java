@@ -0,0 +1,146 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.graphdb.event.DatabaseEventContext;
+import org.neo4j.graphdb.event.DatabaseEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Availability of the databases, tracked from the lifecycle events of the DBMS.
+ * <p>
+ * The state of a database is pushed by the DBMS when it is started, stopped or panics, so a request for a stopped or
+ * panicked database is answered right away, without waiting for the database to become available. A panicked database
+ * stays panicked until it is started again. Databases without any event since the registration of the listener are
+ * not known, and they are probed as usual.
+ */
+final class DatabaseAvailability implements DatabaseEventListener {
+
+    /**
+     * The state of a database.
+     */
+    enum State {
+
+        /**
+         * The database was started.
+         */
+        STARTED,
+
+        /**
+         * The database was stopped or dropped.
+         */
+        STOPPED,
+
+        /**
+         * The database panicked.
+         */
+        PANICKED
+    }
+
+    private static final Health STOPPED = new Health.Builder().outOfService()
+            .withDetail("description", "Neo4j database is stopped!")
+            .build();
+
+    private static final Health PANICKED = new Health.Builder().down()
+            .withDetail("description", "Neo4j database panicked!")
+            .build();
+
+    private final ConcurrentMap<String, State> states;
+
+    private final BiConsumer<String, State> listener;
+
+    /**
+     * Create a new instance of {@link DatabaseAvailability}.
+     *
+     * @param listener
+     *         the listener notified with the new state after every event of a database
+     */
+    DatabaseAvailability(final BiConsumer<String, State> listener) {
+        this.states = new ConcurrentHashMap<>();
+        this.listener = listener;
+    }
+
+    @Override
+    public void databaseStart(final DatabaseEventContext context) {
+        update(context.getDatabaseName(), State.STARTED);
+    }
+
+    @Override
+    public void databaseShutdown(final DatabaseEventContext context) {
+        update(context.getDatabaseName(), State.STOPPED);
+    }
+
+    @Override
+    public void databasePanic(final DatabaseEventContext context) {
+        update(context.getDatabaseName(), State.PANICKED);
+    }
+
+    /**
+     * Get the state of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the state, or {@code null} if there was no event of the database
+     */
+    State getState(final String dbName) {
+        return states.get(dbName);
+    }
+
+    /**
+     * Get the health of the given database if it is known without probing.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the health of a stopped or panicked database, {@code null} otherwise
+     */
+    Health getHealth(final String dbName) {
+        State state = states.get(dbName);
+        if (state == State.STOPPED) {
+            return STOPPED;
+        }
+        if (state == State.PANICKED) {
+            return PANICKED;
+        }
+        return null;
+    }
+
+    /**
+     * Remove the state of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     */
+    void forget(final String dbName) {
+        states.remove(dbName);
+    }
+
+    private void update(final String dbName, final State state) {
+        states.merge(dbName, state,
+                (current, next) -> current == State.PANICKED && next == State.STOPPED ? current : next);
+        // the listener gets the event, a panicked database that is stopped afterwards is stopped as well
+        listener.accept(dbName, state);
+    }
+
+}
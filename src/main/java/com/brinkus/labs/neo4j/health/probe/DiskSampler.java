@@ -0,0 +1,228 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.io.layout.DatabaseLayout;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampler of the free space of the volumes of the store and of the transaction logs of a database.
+ * <p>
+ * The usable space of every volume is sampled with NIO, its growth rate is smoothed over the samples, and the time
+ * until the volume is full is estimated from it. The database is reported as {@link HealthStatusCode#DOWN} or
+ * {@link HealthStatusCode#DEGRADED} if the usable space is below the configured shares, and as
+ * {@link HealthStatusCode#DEGRADED} if the volume is estimated to be full soon.
+ * <p>
+ * The databases on the same volume share its sample, so the number of the file system calls does not grow with the
+ * number of databases.
+ */
+final class DiskSampler implements HealthSampler {
+
+    private static final String NAME = "disk";
+
+    private final HealthSettings settings;
+
+    private final StatusAggregator aggregator;
+
+    private final ConcurrentMap<String, Map<String, FileStore>> stores;
+
+    private final ConcurrentMap<FileStore, Volume> volumes;
+
+    /**
+     * Create a new instance of {@link DiskSampler}.
+     *
+     * @param settings
+     *         the settings containing the interval and the limits
+     * @param aggregator
+     *         the aggregator of the status codes of the volumes
+     */
+    DiskSampler(final HealthSettings settings, final StatusAggregator aggregator) {
+        this.settings = settings;
+        this.aggregator = aggregator;
+        this.stores = new ConcurrentHashMap<>();
+        this.volumes = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getDiskInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        if (!(service instanceof GraphDatabaseAPI)) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "Store volumes are not available!")
+                    .build();
+        }
+        Map<String, FileStore> fileStores;
+        try {
+            fileStores = stores(dbName, ((GraphDatabaseAPI) service).databaseLayout());
+        } catch (IOException e) {
+            return new Health.Builder().unknown()
+                    .withException(e)
+                    .build();
+        }
+        long now = System.nanoTime();
+        HealthStatusCode code = HealthStatusCode.UP;
+        Health.Builder builder = new Health.Builder();
+        for (Map.Entry<String, FileStore> entry : fileStores.entrySet()) {
+            Health volume = volumes.computeIfAbsent(entry.getValue(), store -> new Volume(store, settings)).sample(now);
+            builder.withDetail(entry.getKey(), volume);
+            code = aggregator.worst(code, volume.getStatus().getCode());
+        }
+        return builder.status(code).build();
+    }
+
+    @Override
+    public void forget(final String dbName) {
+        stores.remove(dbName);
+    }
+
+    private Map<String, FileStore> stores(final String dbName, final DatabaseLayout layout) throws IOException {
+        Map<String, FileStore> result = stores.get(dbName);
+        if (result == null) {
+            result = new LinkedHashMap<>();
+            result.put("store", fileStore(layout.databaseDirectory()));
+            result.put("transactionLogs", fileStore(layout.getTransactionLogsDirectory()));
+            stores.put(dbName, result);
+        }
+        return result;
+    }
+
+    private static FileStore fileStore(final Path path) throws IOException {
+        return Files.getFileStore(path);
+    }
+
+    /**
+     * The shared sample of a volume.
+     */
+    static final class Volume {
+
+        private final FileStore store;
+
+        private final HealthSettings settings;
+
+        private long sampledAt;
+
+        private long usableSpace;
+
+        private double growthRate;
+
+        private long samples;
+
+        private Health health;
+
+        /**
+         * Create a new instance of {@link Volume}.
+         *
+         * @param store
+         *         the file store of the volume
+         * @param settings
+         *         the settings containing the interval and the limits
+         */
+        Volume(final FileStore store, final HealthSettings settings) {
+            this.store = store;
+            this.settings = settings;
+        }
+
+        /**
+         * Get the sample of the volume. A new sample is taken only if the latest one is older than half of the
+         * interval, so the databases on the same volume share the sample.
+         *
+         * @param now
+         *         the current value of the {@link System#nanoTime()} clock
+         *
+         * @return the sample
+         */
+        synchronized Health sample(final long now) {
+            long elapsed = now - sampledAt;
+            if (health != null && elapsed < TimeUnit.MILLISECONDS.toNanos(settings.getDiskInterval()) / 2) {
+                return health;
+            }
+            long usable;
+            long total;
+            try {
+                usable = store.getUsableSpace();
+                total = store.getTotalSpace();
+            } catch (IOException e) {
+                return new Health.Builder().unknown()
+                        .withDetail("volume", store.toString())
+                        .withException(e)
+                        .build();
+            }
+            boolean first = health == null;
+            if (!first && elapsed > 0) {
+                // the rate is smoothed, so a single large write or deletion does not dominate the estimate
+                double rate = (usableSpace - usable) / (elapsed / 1e9);
+                growthRate = samples > 1 ? (growthRate + rate) / 2 : rate;
+            }
+            samples++;
+            sampledAt = now;
+            usableSpace = usable;
+
+            double freeRatio = total > 0 ? (double) usable / total : 1.0;
+            Health.Builder builder = new Health.Builder().up()
+                    .withDetail("volume", store.toString())
+                    .withDetail("usableSpace", usable)
+                    .withDetail("totalSpace", total)
+                    .withDetail("freeRatio", freeRatio);
+            long timeToFull = -1L;
+            if (!first) {
+                builder.withDetail("growthRate", (long) growthRate);
+                if (growthRate > 0) {
+                    timeToFull = (long) (usable / growthRate * 1000);
+                    builder.withDetail("timeToFull", timeToFull);
+                }
+            }
+            if (freeRatio < settings.getDiskDownFreeRatio()) {
+                builder.down()
+                        .withDetail("description", "Usable space is below " + settings.getDiskDownFreeRatio());
+            } else if (freeRatio < settings.getDiskDegradedFreeRatio()) {
+                builder.degraded()
+                        .withDetail("description", "Usable space is below " + settings.getDiskDegradedFreeRatio());
+            } else if (timeToFull >= 0 && timeToFull < settings.getDiskDegradedTimeToFull()) {
+                builder.degraded()
+                        .withDetail("description", "Volume is full in " + timeToFull + " ms");
+            }
+            health = builder.build();
+            return health;
+        }
+
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.metrics.DatabaseMetrics;
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Composite evaluation of the built-in {@link HealthProbe} and the additional {@link HealthIndicator indicators} of a
+ * database.
+ * <p>
+ * The indicators are started on their own threads before the probe is executed on the calling thread, so the latency
+ * of a probe is the latency of its slowest part instead of their sum. Every indicator is awaited until its own
+ * deadline, and its result is reused until its time to live expires. An indicator is never evaluated concurrently
+ * with itself for the same database: while an evaluation is running, the following probes wait for the same one.
+ */
+final class HealthEvaluator implements AutoCloseable {
+
+    private static final class Evaluation {
+
+        private final CompletableFuture<Health> future = new CompletableFuture<>();
+
+        private volatile long completed;
+
+    }
+
+    private final HealthProbe probe;
+
+    private final List<HealthIndicator> indicators;
+
+    private final StatusAggregator aggregator;
+
+    private final ExecutorService executor;
+
+    private final ConcurrentMap<String, AtomicReferenceArray<Evaluation>> evaluations;
+
+    /**
+     * Create a new instance of {@link HealthEvaluator}.
+     *
+     * @param probe
+     *         the built-in probe
+     * @param indicators
+     *         the additional indicators
+     * @param aggregator
+     *         the severity ordering used to merge the results
+     */
+    HealthEvaluator(final HealthProbe probe, final List<HealthIndicator> indicators, final StatusAggregator aggregator) {
+        this.probe = probe;
+        this.indicators = indicators;
+        this.aggregator = aggregator;
+        this.executor = indicators.isEmpty()
+                ? null
+                : Executors.newCachedThreadPool(new DaemonThreadFactory("neo4j-health-indicator"));
+        this.evaluations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Load the indicators registered with {@link ServiceLoader}. An implementation that cannot be loaded is skipped,
+     * so it does not break the health checks.
+     *
+     * @return the loaded indicators
+     */
+    static List<HealthIndicator> load() {
+        List<HealthIndicator> indicators = new ArrayList<>();
+        Iterator<HealthIndicator> iterator = ServiceLoader.load(HealthIndicator.class,
+                HealthIndicator.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    return indicators;
+                }
+                indicators.add(iterator.next());
+            } catch (ServiceConfigurationError e) {
+                // a broken indicator does not disable the others
+            }
+        }
+    }
+
+    /**
+     * Evaluate the probe and the indicators of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param service
+     *         the database to check
+     * @param timeout
+     *         the deadline of the health check in milliseconds
+     * @param metrics
+     *         the metrics recording the latency of the probe phases
+     *
+     * @return the merged result, the details of the probe extended with the results of the indicators
+     */
+    Health check(
+            final String dbName,
+            final GraphDatabaseService service,
+            final long timeout,
+            final DatabaseMetrics metrics
+    ) {
+        if (indicators.isEmpty()) {
+            return probe.check(service, timeout, metrics);
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<Health>> futures = new ArrayList<>(indicators.size());
+        for (int i = 0; i < indicators.size(); i++) {
+            futures.add(evaluate(dbName, i, service, timeout));
+        }
+
+        Health health = probe.check(service, timeout, metrics);
+        HealthStatusCode code = health.getStatus().getCode();
+        Health.Builder builder = new Health.Builder();
+        health.getDetails().forEach(builder::withDetail);
+        for (int i = 0; i < indicators.size(); i++) {
+            long limit = limit(indicators.get(i), timeout);
+            Health result = await(futures.get(i), start + TimeUnit.MILLISECONDS.toNanos(limit), limit);
+            builder.withDetail(indicators.get(i).getName(), result);
+            code = aggregator.worst(code, result.getStatus().getCode());
+        }
+        return builder.status(code).build();
+    }
+
+    /**
+     * Release the cached results of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     */
+    void forget(final String dbName) {
+        evaluations.remove(dbName);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<Health> evaluate(
+            final String dbName,
+            final int index,
+            final GraphDatabaseService service,
+            final long timeout
+    ) {
+        AtomicReferenceArray<Evaluation> array = evaluations.computeIfAbsent(dbName,
+                name -> new AtomicReferenceArray<>(indicators.size()));
+        HealthIndicator indicator = indicators.get(index);
+        Evaluation current = array.get(index);
+        if (current != null && (!current.future.isDone()
+                || System.nanoTime() - current.completed < TimeUnit.MILLISECONDS.toNanos(indicator.getTtl()))) {
+            return current.future;
+        }
+        Evaluation next = new Evaluation();
+        if (!array.compareAndSet(index, current, next)) {
+            return array.get(index).future;
+        }
+        long limit = limit(indicator, timeout);
+        try {
+            executor.execute(() -> {
+                Health health;
+                try {
+                    health = indicator.check(service, limit);
+                    if (health == null) {
+                        health = new Health.Builder().unknown().build();
+                    }
+                } catch (RuntimeException e) {
+                    health = new Health.Builder().outOfService()
+                            .withException(e)
+                            .build();
+                } catch (Error e) {
+                    // the following probes evaluate the indicator again
+                    next.completed = System.nanoTime();
+                    next.future.completeExceptionally(e);
+                    throw e;
+                }
+                next.completed = System.nanoTime();
+                next.future.complete(health);
+            });
+        } catch (RejectedExecutionException e) {
+            // the engine is closed
+            next.completed = System.nanoTime();
+            next.future.complete(new Health.Builder().unknown().withException(e).build());
+        }
+        return next.future;
+    }
+
+    private static long limit(final HealthIndicator indicator, final long timeout) {
+        long own = indicator.getTimeout();
+        return own > 0 ? Math.min(own, timeout) : timeout;
+    }
+
+    private static Health await(final CompletableFuture<Health> future, final long deadline, final long timeout) {
+        try {
+            return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return HealthProbe.timedOut(timeout);
+        } catch (ExecutionException e) {
+            return new Health.Builder().unknown().withDetail("error", String.valueOf(e.getCause())).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Health.Builder().unknown().withException(e).build();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * Indicator contributing to the health of a database.
+ * <p>
+ * The implementations are discovered with {@link java.util.ServiceLoader}, so a custom check can be added by putting
+ * a jar into the plugins directory of Neo4j, which lists the implementation in
+ * {@code META-INF/services/com.brinkus.labs.neo4j.health.probe.HealthIndicator}. The implementations need a public
+ * no-argument constructor.
+ * <p>
+ * Every probe evaluates the indicators in parallel with the built-in {@link HealthProbe}, and their results are added
+ * to the result of the probe as details named after the indicators. The status of the database is the most severe
+ * status of the results, using the configured severity ordering.
+ */
+public interface HealthIndicator {
+
+    /**
+     * Get the name of the indicator, used as the key of its detail.
+     *
+     * @return the name of the indicator
+     */
+    String getName();
+
+    /**
+     * Get the deadline of the indicator. An indicator that does not answer in time is reported as
+     * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#UNKNOWN} for the probe, while it keeps running in
+     * the background, and it is not started again until it finishes.
+     *
+     * @return the timeout in milliseconds, {@code 0} to use the deadline of the health check
+     */
+    default long getTimeout() {
+        return 0L;
+    }
+
+    /**
+     * Get the time the result of the indicator is reused for, so an expensive indicator does not have to be evaluated
+     * by every probe.
+     *
+     * @return the time to live of the result in milliseconds, {@code 0} to evaluate the indicator on every probe
+     */
+    default long getTtl() {
+        return 0L;
+    }
+
+    /**
+     * Check the given database. The indicators of the same database are never evaluated concurrently with
+     * themselves.
+     *
+     * @param service
+     *         the database to check
+     * @param timeout
+     *         the deadline of the check in milliseconds
+     *
+     * @return the result of the check
+     */
+    Health check(GraphDatabaseService service, long timeout);
+
+}
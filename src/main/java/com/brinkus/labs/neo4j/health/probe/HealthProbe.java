@@ -0,0 +1,186 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.metrics.DatabaseMetrics;
+import com.brinkus.labs.neo4j.health.metrics.ProbePhase;
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.ResultTransformer;
+import org.neo4j.kernel.api.exceptions.Status;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probe to check the availability of a database and whether it has any nodes.
+ * <p>
+ * The system database does not accept data queries, so only its availability is checked. This is the built-in
+ * {@link HealthIndicator}, its result is the base of the result of every probe.
+ */
+public class HealthProbe implements HealthIndicator {
+
+    /**
+     * The name of the built-in indicator.
+     */
+    public static final String NAME = "availability";
+
+    private static final long AVAILABILITY_TIMEOUT = 1000L;
+
+    // the marker node of the write canary is not data, an empty database with the marker is still out of service
+    private static final String PING_CYPHER = "MATCH (n) WITH count(n) AS nodes "
+            + "OPTIONAL MATCH (c:" + WriteCanarySampler.LABEL + ") RETURN nodes - count(c) AS count";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Health check(GraphDatabaseService service, long timeout) {
+        return check(service, timeout, null);
+    }
+
+    /**
+     * Execute the health check on the given database. The check query is executed with a transaction timeout, so it
+     * is terminated by the database if the deadline passes.
+     *
+     * @param service
+     *         the database to check
+     * @param timeout
+     *         the deadline of the health check in milliseconds
+     * @param metrics
+     *         the metrics recording the latency of the probe phases, can be {@code null}
+     *
+     * @return the result of the health check
+     */
+    public Health check(GraphDatabaseService service, long timeout, DatabaseMetrics metrics) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            assert(service != null);
+
+            if (!isAvailable(service, Math.min(AVAILABILITY_TIMEOUT, timeout), metrics)) {
+                return new Health.Builder().down()
+                        .withDetail("description", "Neo4j health check result was invalid!")
+                        .build();
+            }
+
+            if (GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(service.databaseName())) {
+                return new Health.Builder().up()
+                        .withDetail("description", "Neo4j health check was successful.")
+                        .build();
+            }
+
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return timedOut(timeout);
+            }
+
+            Long count = count(service, remaining, metrics);
+            assert(count != null);
+
+            if (count == 0) {
+                return new Health.Builder().outOfService()
+                        .withDetail("description", "Neo4j has no available nodes!")
+                        .build();
+            }
+
+            return new Health.Builder().up()
+                    .withDetail("description", "Neo4j health check was successful.")
+                    .build();
+        } catch (Exception e) {
+            if (isTimeout(e)) {
+                return timedOut(timeout);
+            }
+            return new Health.Builder().outOfService()
+                    .withDetail("description", "Neo4j health check failed!")
+                    .withException(e)
+                    .build();
+        }
+    }
+
+    private static boolean isAvailable(GraphDatabaseService service, long timeout, DatabaseMetrics metrics) {
+        long start = System.nanoTime();
+        try {
+            return service.isAvailable(timeout);
+        } finally {
+            record(metrics, ProbePhase.AVAILABILITY, start);
+        }
+    }
+
+    private static Long count(GraphDatabaseService service, long timeout, DatabaseMetrics metrics) {
+        long start = System.nanoTime();
+        try {
+            return service.executeTransactionally(PING_CYPHER, Collections.emptyMap(), new CountResultTransformer(),
+                    Duration.ofMillis(timeout));
+        } finally {
+            record(metrics, ProbePhase.QUERY, start);
+        }
+    }
+
+    private static void record(DatabaseMetrics metrics, ProbePhase phase, long start) {
+        if (metrics != null) {
+            metrics.recordLatency(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Create the result of a health check that did not finish within its deadline.
+     *
+     * @param timeout
+     *         the deadline of the health check in milliseconds
+     *
+     * @return the result of the health check
+     */
+    static Health timedOut(long timeout) {
+        return new Health.Builder().unknown()
+                .withDetail("description", "Neo4j health check timed out!")
+                .withDetail("timedOut", true)
+                .withDetail("timeout", timeout)
+                .build();
+    }
+
+    /**
+     * Check whether the given exception was caused by the timeout of a transaction.
+     *
+     * @param e
+     *         the exception
+     *
+     * @return {@code true} if the transaction timed out
+     */
+    static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof Status.HasStatus
+                    && ((Status.HasStatus) cause).status() == Status.Transaction.TransactionTimedOut) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class CountResultTransformer implements ResultTransformer<Long> {
+        @Override
+        public Long apply(Result result) {
+            return (Long) result.next().get("count");
+        }
+    }
+}
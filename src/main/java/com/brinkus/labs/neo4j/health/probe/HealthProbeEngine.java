@@ -0,0 +1,817 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.metrics.DatabaseMetrics;
+import com.brinkus.labs.neo4j.health.metrics.HealthMetrics;
+import com.brinkus.labs.neo4j.health.metrics.ProbePhase;
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseNotFoundException;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Probe engine keeping the latest {@link HealthSnapshot} of every requested database.
+ * <p>
+ * Once a database was requested, it is probed in the background with the configured interval, so the requests can be
+ * served from the snapshot without touching the database. A new probe is executed on the request thread only if the
+ * snapshot is missing or older than the requested staleness limit.
+ * <p>
+ * Concurrent probes of the same database are coalesced: the first caller starts the probe and the others wait for its
+ * result instead of opening their own transactions. The callers wait only until their deadline, so a hanging database
+ * never blocks the request threads.
+ * <p>
+ * The optional {@link HealthSampler samplers} are scheduled for the same databases on their own threads, so a slow
+ * sampler does not delay the probes, and their latest results are added to the probe results as details. Their status
+ * is merged into the status of the probe unless it is {@link HealthStatusCode#UNKNOWN}, which means the information is
+ * not available.
+ * <p>
+ * The {@link HealthIndicator indicators} discovered with {@link java.util.ServiceLoader} are evaluated by every probe
+ * in parallel with the built-in {@link HealthProbe}, and the results are merged with the configured severity ordering.
+ * <p>
+ * If enabled, the probes of every database are guarded by a {@link CircuitBreaker}, so a failing database is not
+ * probed on every request and its reported status does not flap on transient errors.
+ * <p>
+ * The {@link HealthSubscriber subscribers} of a database are notified when the status of the database changes, and
+ * they receive periodic heartbeats from a single scheduled task, so the number of subscribers does not change the
+ * number of probes. The notifications are queued for every subscriber and delivered by a fixed number of notifier
+ * threads, so a slow subscriber never delays the probes, and a subscriber whose queue overflows is dropped. The number
+ * of the subscribers of a database is limited by {@code labs.health.events.max.subscribers}.
+ * <p>
+ * The engine listens to the lifecycle events of the databases: a stopped or panicked database is reported right away
+ * without probing it, a restarted database is probed again, and the engine is closed when the DBMS shuts down.
+ */
+public final class HealthProbeEngine implements AutoCloseable {
+
+    private static final ConcurrentMap<DatabaseManagementService, HealthProbeEngine> ENGINES = new ConcurrentHashMap<>();
+
+    private static final long KEEP_ALIVE = 60L;
+
+    private final DatabaseManagementService dbms;
+
+    private final HealthSettings settings;
+
+    private final HealthEvaluator evaluator;
+
+    private final StatusAggregator aggregator;
+
+    private final List<HealthSampler> samplers;
+
+    private final DatabaseAvailability availability;
+
+    private final HealthMetrics metrics;
+
+    private final AdmissionController admission;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ScheduledThreadPoolExecutor sampling;
+
+    private final ThreadPoolExecutor fanout;
+
+    private final ConcurrentMap<String, HealthSnapshot> snapshots;
+
+    private final ConcurrentMap<String, List<ScheduledFuture<?>>> schedules;
+
+    private final ConcurrentMap<String, AtomicReferenceArray<Health>> samples;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers;
+
+    private final ExecutorService notifier;
+
+    private final ConcurrentMap<String, ConcurrentMap<HealthSubscriber, HealthSubscription>> subscribers;
+
+    private volatile boolean closed;
+
+    private final AtomicReference<ScheduledFuture<?>> heartbeat;
+
+    private final ConcurrentMap<String, CompletableFuture<HealthSnapshot>> inFlight;
+
+    /**
+     * Create a new instance of {@link HealthProbeEngine}.
+     *
+     * @param dbms
+     *         the database management service
+     * @param settings
+     *         the probe settings
+     * @param probe
+     *         the probe to execute
+     */
+    HealthProbeEngine(final DatabaseManagementService dbms, final HealthSettings settings, final HealthProbe probe) {
+        this(dbms, settings, probe, Collections.emptyList());
+    }
+
+    /**
+     * Create a new instance of {@link HealthProbeEngine}.
+     *
+     * @param dbms
+     *         the database management service
+     * @param settings
+     *         the probe settings
+     * @param probe
+     *         the probe to execute
+     * @param samplers
+     *         the samplers to schedule for the probed databases
+     */
+    HealthProbeEngine(
+            final DatabaseManagementService dbms,
+            final HealthSettings settings,
+            final HealthProbe probe,
+            final List<HealthSampler> samplers
+    ) {
+        this(dbms, settings, probe, samplers, Collections.emptyList());
+    }
+
+    /**
+     * Create a new instance of {@link HealthProbeEngine}.
+     *
+     * @param dbms
+     *         the database management service
+     * @param settings
+     *         the probe settings
+     * @param probe
+     *         the probe to execute
+     * @param samplers
+     *         the samplers to schedule for the probed databases
+     * @param indicators
+     *         the indicators to evaluate with the probe
+     */
+    HealthProbeEngine(
+            final DatabaseManagementService dbms,
+            final HealthSettings settings,
+            final HealthProbe probe,
+            final List<HealthSampler> samplers,
+            final List<HealthIndicator> indicators
+    ) {
+        this.dbms = dbms;
+        this.settings = settings;
+        this.aggregator = new StatusAggregator(StatusAggregator.parse(settings.getSeverityOrder()));
+        this.evaluator = new HealthEvaluator(probe, indicators, aggregator);
+        this.samplers = samplers;
+        this.metrics = new HealthMetrics(settings.getHistorySize());
+        this.admission = new AdmissionController(settings);
+        this.scheduler = new ScheduledThreadPoolExecutor(settings.getProbeThreads(), new DaemonThreadFactory("neo4j-health-probe"));
+        this.scheduler.setKeepAliveTime(KEEP_ALIVE, TimeUnit.SECONDS);
+        this.scheduler.allowCoreThreadTimeOut(true);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        // a blocked sampler must not delay the background probes
+        this.sampling = new ScheduledThreadPoolExecutor(settings.getSamplerThreads(), new DaemonThreadFactory("neo4j-health-sampler"));
+        this.sampling.setKeepAliveTime(KEEP_ALIVE, TimeUnit.SECONDS);
+        this.sampling.allowCoreThreadTimeOut(true);
+        this.sampling.setRemoveOnCancelPolicy(true);
+        this.fanout = new ThreadPoolExecutor(settings.getFanoutThreads(), settings.getFanoutThreads(),
+                KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory("neo4j-health-fanout"));
+        this.fanout.allowCoreThreadTimeOut(true);
+        this.snapshots = new ConcurrentHashMap<>();
+        this.schedules = new ConcurrentHashMap<>();
+        this.samples = new ConcurrentHashMap<>();
+        this.breakers = new ConcurrentHashMap<>();
+        // every subscription drains its own queue on one thread at a time, so a few threads serve any number of them
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(settings.getNotifierThreads(), settings.getNotifierThreads(),
+                KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DaemonThreadFactory("neo4j-health-notifier"));
+        pool.allowCoreThreadTimeOut(true);
+        this.notifier = pool;
+        this.subscribers = new ConcurrentHashMap<>();
+        this.heartbeat = new AtomicReference<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.availability = new DatabaseAvailability(this::onStateChange);
+        dbms.registerDatabaseEventListener(availability);
+    }
+
+    /**
+     * Get the shared engine of the given database management service.
+     *
+     * @param dbms
+     *         the database management service
+     *
+     * @return the engine instance
+     */
+    public static HealthProbeEngine of(final DatabaseManagementService dbms) {
+        return ENGINES.computeIfAbsent(dbms, key -> {
+            HealthSettings settings = HealthSettings.fromSystemProperties();
+            StatusAggregator aggregator = new StatusAggregator(StatusAggregator.parse(settings.getSeverityOrder()));
+            return new HealthProbeEngine(key, settings, new HealthProbe(), samplers(settings, aggregator),
+                    HealthEvaluator.load());
+        });
+    }
+
+    /**
+     * Get the settings of the engine.
+     *
+     * @return the settings
+     */
+    public HealthSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Get the severity ordering used to merge the results.
+     *
+     * @return the aggregator of the status codes
+     */
+    public StatusAggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Get the probe metrics of the databases.
+     *
+     * @return the metrics
+     */
+    public HealthMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the admission control of the requests probing the databases.
+     *
+     * @return the admission controller
+     */
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+
+    /**
+     * Get the latest snapshot of the given database without probing it.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the latest snapshot, or {@code null} if the database was not probed yet
+     */
+    public HealthSnapshot latest(final String dbName) {
+        return snapshots.get(dbName);
+    }
+
+    /**
+     * Get the snapshot of the given database using the configured staleness limit and timeout.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the snapshot
+     */
+    public HealthSnapshot snapshot(final String dbName) {
+        return snapshot(dbName, settings.getMaxStaleness(), settings.getTimeout());
+    }
+
+    /**
+     * Get the snapshot of the given database. A new probe is executed if there is no snapshot yet or it is older than
+     * the given limit. If the probe does not finish within the timeout, an
+     * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#UNKNOWN} result is returned to this caller only, while
+     * the probe keeps running with the configured timeout and its result is shared with the other callers.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param maxStaleness
+     *         the maximum age of the snapshot in milliseconds
+     * @param timeout
+     *         the deadline of the health check in milliseconds, at most the configured timeout, which is used if the
+     *         value is not positive
+     *
+     * @return the snapshot
+     *
+     * @throws org.neo4j.dbms.api.DatabaseNotFoundException
+     *         if the database does not exist
+     */
+    public HealthSnapshot snapshot(final String dbName, final long maxStaleness, final long timeout) {
+        long wait = waitTime(timeout);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+        HealthSnapshot snapshot = snapshots.get(dbName);
+        if (snapshot != null && snapshot.getAge() <= maxStaleness) {
+            return snapshot;
+        }
+        CompletableFuture<HealthSnapshot> future = refresh(dbName, dbms.database(dbName), maxStaleness, fanout);
+        schedule(dbName);
+        return await(future, deadline, wait);
+    }
+
+    /**
+     * Get the names of all databases of the DBMS.
+     *
+     * @return the names of the databases
+     */
+    public List<String> databases() {
+        return dbms.listDatabases();
+    }
+
+    /**
+     * Get the snapshots of the given databases. The databases without a fresh snapshot are probed in parallel, and
+     * every database has to answer within the timeout, otherwise it is reported as
+     * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#UNKNOWN}.
+     *
+     * @param dbNames
+     *         the names of the databases
+     * @param maxStaleness
+     *         the maximum age of the snapshots in milliseconds
+     * @param timeout
+     *         the deadline of the health check of every database in milliseconds, at most the configured timeout,
+     *         which is used if the value is not positive
+     *
+     * @return the snapshots in the order of the given names
+     */
+    public Map<String, HealthSnapshot> snapshots(final List<String> dbNames, final long maxStaleness, final long timeout) {
+        long wait = waitTime(timeout);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+
+        Map<String, CompletableFuture<HealthSnapshot>> futures = new LinkedHashMap<>();
+        for (String dbName : dbNames) {
+            HealthSnapshot snapshot = snapshots.get(dbName);
+            if (snapshot != null && snapshot.getAge() <= maxStaleness) {
+                futures.put(dbName, CompletableFuture.completedFuture(snapshot));
+                continue;
+            }
+            try {
+                futures.put(dbName, refresh(dbName, dbms.database(dbName), maxStaleness, fanout));
+                schedule(dbName);
+            } catch (DatabaseNotFoundException e) {
+                futures.put(dbName, CompletableFuture.completedFuture(new HealthSnapshot(notFound())));
+            }
+        }
+
+        Map<String, HealthSnapshot> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<HealthSnapshot>> entry : futures.entrySet()) {
+            result.put(entry.getKey(), await(entry.getValue(), deadline, wait));
+        }
+        return result;
+    }
+
+    /**
+     * Subscribe to the status changes of the given database. The subscriber is notified with the current snapshot
+     * right away, and the database is probed in the background from then on.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param subscriber
+     *         the subscriber to notify
+     *
+     * @return {@code false} if the database has the maximum number of subscribers already
+     *
+     * @throws org.neo4j.dbms.api.DatabaseNotFoundException
+     *         if the database does not exist
+     */
+    public boolean subscribe(final String dbName, final HealthSubscriber subscriber) {
+        return subscribe(dbName, subscriber, settings.getMaxStaleness());
+    }
+
+    /**
+     * Subscribe to the status changes of the given database. The subscriber is notified with the current snapshot
+     * right away, which is probed only if it is older than the given limit, and the database is probed in the
+     * background from then on.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param subscriber
+     *         the subscriber to notify
+     * @param maxStaleness
+     *         the maximum age of the first snapshot in milliseconds, {@link Long#MAX_VALUE} to send the latest
+     *         snapshot without probing
+     *
+     * @return {@code false} if the database has the maximum number of subscribers already
+     *
+     * @throws org.neo4j.dbms.api.DatabaseNotFoundException
+     *         if the database does not exist
+     */
+    public boolean subscribe(final String dbName, final HealthSubscriber subscriber, final long maxStaleness) {
+        // a rejected subscriber does not probe the database
+        ConcurrentMap<HealthSubscriber, HealthSubscription> existing = subscribers.get(dbName);
+        if (existing != null && isFull(existing, subscriber)) {
+            return false;
+        }
+        HealthSnapshot snapshot = snapshot(dbName, maxStaleness, settings.getTimeout());
+        HealthSubscription subscription = new HealthSubscription(dbName, subscriber, settings.getEventQueueSize(),
+                notifier);
+        ConcurrentMap<HealthSubscriber, HealthSubscription> map =
+                subscribers.computeIfAbsent(dbName, name -> new ConcurrentHashMap<>());
+        HealthSubscription previous;
+        synchronized (map) {
+            if (isFull(map, subscriber)) {
+                return false;
+            }
+            previous = map.put(subscriber, subscription);
+        }
+        if (previous != null) {
+            previous.cancel();
+        }
+        startHeartbeat();
+        // a status change could have been published since the snapshot was taken
+        HealthSnapshot current = snapshots.get(dbName);
+        notify(map, subscriber, subscription, subscription.onHealth(current != null ? current : snapshot));
+        return true;
+    }
+
+    private boolean isFull(final Map<HealthSubscriber, HealthSubscription> map, final HealthSubscriber subscriber) {
+        return map.size() >= settings.getMaxSubscribers() && !map.containsKey(subscriber);
+    }
+
+    /**
+     * Remove a subscriber of the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param subscriber
+     *         the subscriber to remove
+     */
+    public void unsubscribe(final String dbName, final HealthSubscriber subscriber) {
+        ConcurrentMap<HealthSubscriber, HealthSubscription> map = subscribers.get(dbName);
+        HealthSubscription subscription = map != null ? map.remove(subscriber) : null;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Check whether the engine was closed, i.e. the DBMS is shutting down.
+     *
+     * @return {@code true} if the engine was closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ENGINES.remove(dbms, this);
+        try {
+            dbms.unregisterDatabaseEventListener(availability);
+        } catch (RuntimeException e) {
+            // the DBMS is already shut down
+        }
+        schedules.values().forEach(futures -> futures.forEach(future -> future.cancel(false)));
+        schedules.clear();
+        snapshots.clear();
+        samples.clear();
+        breakers.clear();
+        ScheduledFuture<?> future = heartbeat.getAndSet(null);
+        if (future != null) {
+            future.cancel(false);
+        }
+        subscribers.values().forEach(map -> map.values().forEach(HealthSubscription::close));
+        subscribers.clear();
+        samplers.forEach(HealthSampler::close);
+        evaluator.close();
+        scheduler.shutdownNow();
+        sampling.shutdownNow();
+        fanout.shutdownNow();
+        // the queued close notifications are still delivered
+        notifier.shutdown();
+    }
+
+    private CompletableFuture<HealthSnapshot> refresh(
+            final String dbName,
+            final GraphDatabaseService service,
+            final long maxStaleness,
+            final Executor executor
+    ) {
+        CompletableFuture<HealthSnapshot> future = inFlight.get(dbName);
+        if (future == null) {
+            CompletableFuture<HealthSnapshot> created = new CompletableFuture<>();
+            future = inFlight.putIfAbsent(dbName, created);
+            if (future == null) {
+                try {
+                    executor.execute(() -> execute(dbName, service, maxStaleness, created));
+                } catch (RejectedExecutionException e) {
+                    inFlight.remove(dbName, created);
+                    created.completeExceptionally(e);
+                }
+                return created;
+            }
+        }
+        return future;
+    }
+
+    private void execute(
+            final String dbName,
+            final GraphDatabaseService service,
+            final long maxStaleness,
+            final CompletableFuture<HealthSnapshot> future
+    ) {
+        try {
+            // the snapshot could have been refreshed while this caller was waiting for the slot
+            HealthSnapshot snapshot = snapshots.get(dbName);
+            boolean changed = false;
+            if (snapshot == null || snapshot.getAge() > maxStaleness) {
+                Health health = check(dbName, service);
+                snapshot = new HealthSnapshot(withSamples(dbName, health));
+                changed = store(dbName, snapshot);
+            }
+            // a caller arriving after the waiters were released starts a new probe instead of reusing this one
+            inFlight.remove(dbName, future);
+            future.complete(snapshot);
+            // the waiters are released first, the subscribers are notified by the notifier threads
+            if (changed) {
+                publish(dbName, snapshot);
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(dbName, future);
+        }
+    }
+
+    private boolean store(final String dbName, final HealthSnapshot snapshot) {
+        HealthSnapshot previous = snapshots.get(dbName);
+        HealthSnapshot merged = snapshots.merge(dbName, snapshot,
+                (current, next) -> next.isNewerThan(current) ? next : current);
+        return merged == snapshot
+                && (previous == null || !previous.getHealth().getStatus().equals(snapshot.getHealth().getStatus()));
+    }
+
+    private void publish(final String dbName, final HealthSnapshot snapshot) {
+        ConcurrentMap<HealthSubscriber, HealthSubscription> map = subscribers.get(dbName);
+        if (map != null) {
+            // the probes of a database are not executed concurrently, so the changes are queued in order
+            map.forEach((subscriber, subscription) ->
+                    notify(map, subscriber, subscription, subscription.onHealth(snapshot)));
+        }
+    }
+
+    private void heartbeat() {
+        subscribers.values().forEach(map -> map.forEach((subscriber, subscription) ->
+                notify(map, subscriber, subscription, subscription.onHeartbeat())));
+    }
+
+    /**
+     * Drop the subscription if the notification was not queued, because the subscription is closed or its queue is
+     * full.
+     */
+    private static void notify(
+            final ConcurrentMap<HealthSubscriber, HealthSubscription> map,
+            final HealthSubscriber subscriber,
+            final HealthSubscription subscription,
+            final boolean queued
+    ) {
+        if (!queued && map.remove(subscriber, subscription)) {
+            subscription.close();
+        }
+    }
+
+    private void startHeartbeat() {
+        long interval = settings.getHeartbeatInterval();
+        if (interval <= 0 || heartbeat.get() != null || scheduler.isShutdown()) {
+            return;
+        }
+        ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(this::heartbeat, interval, interval,
+                TimeUnit.MILLISECONDS);
+        if (!heartbeat.compareAndSet(null, future)) {
+            future.cancel(false);
+        }
+    }
+
+    private void onStateChange(final String dbName, final DatabaseAvailability.State state) {
+        if (state == DatabaseAvailability.State.STARTED) {
+            // the previous results do not apply to the restarted database
+            breakers.remove(dbName);
+            snapshots.remove(dbName);
+            samplers.forEach(sampler -> sampler.forget(dbName));
+            evaluator.forget(dbName);
+            if (schedules.containsKey(dbName)) {
+                try {
+                    refresh(dbName, dbms.database(dbName), 0L, fanout);
+                } catch (RuntimeException e) {
+                    // the database is gone again, the schedule forgets it
+                }
+            }
+        } else if (state == DatabaseAvailability.State.STOPPED
+                && GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(dbName)) {
+            // the system database is stopped only when the DBMS shuts down, a panicked one is reported as down
+            close();
+        } else {
+            HealthSnapshot snapshot = new HealthSnapshot(availability.getHealth(dbName));
+            if (store(dbName, snapshot)) {
+                // the event is only queued on the thread stopping the database
+                publish(dbName, snapshot);
+            }
+        }
+    }
+
+    private Health check(final String dbName, final GraphDatabaseService service) {
+        DatabaseMetrics databaseMetrics = metrics.database(dbName);
+        Health unavailable = availability.getHealth(dbName);
+        if (unavailable != null) {
+            databaseMetrics.recordResult(unavailable.getStatus().getCode());
+            databaseMetrics.recordHistory(System.currentTimeMillis(), unavailable.getStatus().getCode(), 0L);
+            return unavailable;
+        }
+        CircuitBreaker breaker = settings.isBreakerEnabled()
+                ? breakers.computeIfAbsent(dbName, name -> new CircuitBreaker(settings))
+                : null;
+        if (breaker != null && !breaker.allowProbe()) {
+            return breaker.current();
+        }
+        long start = System.nanoTime();
+        // the shared result is probed with the configured timeout, whatever the callers wait for
+        Health health = evaluator.check(dbName, service, settings.getTimeout(), databaseMetrics);
+        long latency = System.nanoTime() - start;
+        databaseMetrics.recordLatency(ProbePhase.TOTAL, latency);
+        databaseMetrics.recordResult(health.getStatus().getCode());
+        databaseMetrics.recordHistory(System.currentTimeMillis(), health.getStatus().getCode(), latency);
+        // the database could have been stopped while it was probed
+        unavailable = availability.getHealth(dbName);
+        if (unavailable != null) {
+            return unavailable;
+        }
+        if (breaker == null) {
+            return health;
+        }
+        Health reported = breaker.record(health);
+        databaseMetrics.recordBreaker(breaker.getConsecutiveFailures(), breaker.getConsecutiveSuccesses());
+        return reported;
+    }
+
+    /**
+     * Get the time a caller waits for a probe, bounded by the configured timeout.
+     */
+    private long waitTime(final long timeout) {
+        return timeout > 0L ? Math.min(timeout, settings.getTimeout()) : settings.getTimeout();
+    }
+
+    private static HealthSnapshot await(final CompletableFuture<HealthSnapshot> future, final long deadline, final long timeout) {
+        try {
+            long remaining = Math.max(0L, deadline - System.nanoTime());
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return new HealthSnapshot(HealthProbe.timedOut(timeout));
+        } catch (ExecutionException e) {
+            return new HealthSnapshot(failed(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new HealthSnapshot(failed(e));
+        }
+    }
+
+    private void schedule(final String dbName) {
+        if (schedules.containsKey(dbName) || scheduler.isShutdown()) {
+            return;
+        }
+        schedules.computeIfAbsent(dbName, name -> {
+            List<ScheduledFuture<?>> futures = new ArrayList<>();
+            long interval = settings.getProbeInterval();
+            if (interval > 0) {
+                futures.add(scheduler.scheduleWithFixedDelay(() -> probe(name), interval, interval, TimeUnit.MILLISECONDS));
+            }
+            for (int i = 0; i < samplers.size(); i++) {
+                int index = i;
+                futures.add(sampling.scheduleWithFixedDelay(
+                        () -> sample(name, index), 0L, samplers.get(i).getInterval(), TimeUnit.MILLISECONDS));
+            }
+            return futures;
+        });
+    }
+
+    private void probe(final String dbName) {
+        GraphDatabaseService service;
+        try {
+            service = dbms.database(dbName);
+        } catch (Exception e) {
+            // the database was dropped or the DBMS was shut down
+            forget(dbName);
+            return;
+        }
+        // the background probes are executed on the scheduler thread
+        CompletableFuture<HealthSnapshot> future = refresh(dbName, service, 0L, Runnable::run);
+        await(future, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getTimeout()), settings.getTimeout());
+    }
+
+    private void sample(final String dbName, final int index) {
+        GraphDatabaseService service;
+        try {
+            service = dbms.database(dbName);
+        } catch (Exception e) {
+            forget(dbName);
+            return;
+        }
+        HealthSampler sampler = samplers.get(index);
+        Health health;
+        try {
+            health = sampler.sample(dbName, service);
+        } catch (RuntimeException e) {
+            // an exception would cancel the schedule
+            health = new Health.Builder().unknown()
+                    .withException(e)
+                    .build();
+        }
+        samples.computeIfAbsent(dbName, name -> new AtomicReferenceArray<>(samplers.size())).set(index, health);
+    }
+
+    private Health withSamples(final String dbName, final Health health) {
+        AtomicReferenceArray<Health> values = samples.get(dbName);
+        if (values == null) {
+            return health;
+        }
+        HealthStatusCode code = health.getStatus().getCode();
+        Health.Builder builder = new Health.Builder();
+        health.getDetails().forEach(builder::withDetail);
+        for (int i = 0; i < values.length(); i++) {
+            Health sample = values.get(i);
+            if (sample != null) {
+                builder.withDetail(samplers.get(i).getName(), sample);
+                if (sample.getStatus().getCode() != HealthStatusCode.UNKNOWN) {
+                    code = aggregator.worst(code, sample.getStatus().getCode());
+                }
+            }
+        }
+        return builder.status(code).build();
+    }
+
+    private void forget(final String dbName) {
+        List<ScheduledFuture<?>> futures = schedules.remove(dbName);
+        if (futures != null) {
+            futures.forEach(future -> future.cancel(false));
+        }
+        snapshots.remove(dbName);
+        samples.remove(dbName);
+        breakers.remove(dbName);
+        ConcurrentMap<HealthSubscriber, HealthSubscription> removed = subscribers.remove(dbName);
+        if (removed != null) {
+            removed.values().forEach(HealthSubscription::close);
+        }
+        samplers.forEach(sampler -> sampler.forget(dbName));
+        evaluator.forget(dbName);
+        availability.forget(dbName);
+        metrics.remove(dbName);
+    }
+
+    private static List<HealthSampler> samplers(final HealthSettings settings, final StatusAggregator aggregator) {
+        List<HealthSampler> samplers = new ArrayList<>();
+        if (settings.isStorageProbe()) {
+            samplers.add(new StorageSampler(settings));
+        }
+        if (settings.isCanaryProbe()) {
+            samplers.add(new WriteCanarySampler(settings));
+        }
+        if (!settings.getCountAssertions().trim().isEmpty()) {
+            samplers.add(new CountStoreSampler(settings));
+        }
+        if (!settings.getSloQueries().isEmpty()) {
+            samplers.add(new QueryLatencySampler(settings, aggregator));
+        }
+        if (settings.isJvmProbe()) {
+            samplers.add(new JvmPressureSampler(settings));
+        }
+        if (settings.isDiskProbe()) {
+            samplers.add(new DiskSampler(settings, aggregator));
+        }
+        if (settings.isTransactionProbe()) {
+            samplers.add(new TransactionSampler(settings));
+        }
+        if (settings.isBoltProbe()) {
+            samplers.add(new BoltSampler(settings));
+        }
+        return samplers;
+    }
+
+    private static Health notFound() {
+        return new Health.Builder().unknown()
+                .withDetail("description", "Neo4j database was not found!")
+                .build();
+    }
+
+    private static Health failed(final Throwable cause) {
+        return new Health.Builder().outOfService()
+                .withDetail("description", "Neo4j health check failed!")
+                .withDetail("error", cause.getClass().getName() + ": " + cause.getMessage())
+                .build();
+    }
+
+}
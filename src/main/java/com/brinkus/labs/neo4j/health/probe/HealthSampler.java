@@ -0,0 +1,74 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+/**
+ * Sampler collecting detailed health information of a database in the background.
+ * <p>
+ * The samplers are scheduled independently of the health probes, and their latest result is added to the result of
+ * the probes as a detail named after the sampler, so the request path only reads cached values.
+ */
+interface HealthSampler {
+
+    /**
+     * Get the name of the sampler, used as the key of its detail.
+     *
+     * @return the name of the sampler
+     */
+    String getName();
+
+    /**
+     * Get the interval of the sampling.
+     *
+     * @return the interval in milliseconds
+     */
+    long getInterval();
+
+    /**
+     * Sample the given database. The samples of the same database are never taken concurrently.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param service
+     *         the database to sample
+     *
+     * @return the sampled health, {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#UNKNOWN} if the
+     *         information is not available
+     */
+    Health sample(String dbName, GraphDatabaseService service);
+
+    /**
+     * Release the state kept for the given database.
+     *
+     * @param dbName
+     *         the name of the database
+     */
+    default void forget(String dbName) {
+    }
+
+    /**
+     * Release the resources of the sampler when the engine is closed.
+     */
+    default void close() {
+    }
+
+}
@@ -0,0 +1,2063 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Configuration of the health probes.
+ * <p>
+ * The values are read from the JVM system properties prefixed with {@value #PREFIX}, which can be set in
+ * {@code neo4j.conf} using the {@code dbms.jvm.additional} setting.
+ */
+public final class HealthSettings {
+
+    /**
+     * Builder for creating immutable {@link HealthSettings} instances.
+     */
+    public static class Builder {
+
+        private long probeInterval;
+
+        private long maxStaleness;
+
+        private int probeThreads;
+
+        private long timeout;
+
+        private int fanoutThreads;
+
+        private boolean storageProbe;
+
+        private long storageInterval;
+
+        private double minHitRatio;
+
+        private long maxCheckpointAge;
+
+        private long maxLogSize;
+
+        private boolean canaryProbe;
+
+        private long canaryInterval;
+
+        private long canaryDegradedLatency;
+
+        private long canaryDownLatency;
+
+        private boolean breakerEnabled;
+
+        private int breakerFailures;
+
+        private long breakerBackoff;
+
+        private long breakerMaxBackoff;
+
+        private int breakerRise;
+
+        private int breakerFall;
+
+        private int historySize;
+
+        private long heartbeatInterval;
+
+        private String countAssertions;
+
+        private long countInterval;
+
+        private List<SloQuery> sloQueries;
+
+        private long sloInterval;
+
+        private boolean jvmProbe;
+
+        private long jvmInterval;
+
+        private long jvmWindow;
+
+        private long maxGcPause;
+
+        private double maxGcTimeRatio;
+
+        private double maxOldGenRatio;
+
+        private double maxDirectMemoryRatio;
+
+        private boolean diskProbe;
+
+        private long diskInterval;
+
+        private double diskDegradedFreeRatio;
+
+        private double diskDownFreeRatio;
+
+        private long diskDegradedTimeToFull;
+
+        private boolean transactionProbe;
+
+        private long transactionInterval;
+
+        private long maxTransactionAge;
+
+        private int maxLockWaiting;
+
+        private int transactionTop;
+
+        private int admissionMaxConcurrent;
+
+        private double admissionClientRate;
+
+        private int admissionClientBurst;
+
+        private int admissionMaxClients;
+
+        private String severityOrder;
+
+        private int agentPort;
+
+        private String agentAddress;
+
+        private String agentDatabase;
+
+        private int agentDegradedWeight;
+
+        private boolean boltProbe;
+
+        private long boltInterval;
+
+        private long boltTimeout;
+
+        private long boltDegradedLatency;
+
+        private int eventQueueSize;
+
+        private int notifierThreads;
+
+        private int maxSubscribers;
+
+        private int samplerThreads;
+
+        /**
+         * Create new Builder instance with the default values.
+         */
+        public Builder() {
+            this.probeInterval = DEFAULT_PROBE_INTERVAL;
+            this.maxStaleness = DEFAULT_MAX_STALENESS;
+            this.probeThreads = DEFAULT_PROBE_THREADS;
+            this.timeout = DEFAULT_TIMEOUT;
+            this.fanoutThreads = DEFAULT_FANOUT_THREADS;
+            this.storageProbe = DEFAULT_STORAGE_PROBE;
+            this.storageInterval = DEFAULT_STORAGE_INTERVAL;
+            this.minHitRatio = DEFAULT_MIN_HIT_RATIO;
+            this.maxCheckpointAge = DEFAULT_MAX_CHECKPOINT_AGE;
+            this.maxLogSize = DEFAULT_MAX_LOG_SIZE;
+            this.canaryProbe = DEFAULT_CANARY_PROBE;
+            this.canaryInterval = DEFAULT_CANARY_INTERVAL;
+            this.canaryDegradedLatency = DEFAULT_CANARY_DEGRADED_LATENCY;
+            this.canaryDownLatency = DEFAULT_CANARY_DOWN_LATENCY;
+            this.breakerEnabled = DEFAULT_BREAKER_ENABLED;
+            this.breakerFailures = DEFAULT_BREAKER_FAILURES;
+            this.breakerBackoff = DEFAULT_BREAKER_BACKOFF;
+            this.breakerMaxBackoff = DEFAULT_BREAKER_MAX_BACKOFF;
+            this.breakerRise = DEFAULT_BREAKER_RISE;
+            this.breakerFall = DEFAULT_BREAKER_FALL;
+            this.historySize = DEFAULT_HISTORY_SIZE;
+            this.heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+            this.countAssertions = DEFAULT_COUNT_ASSERTIONS;
+            this.countInterval = DEFAULT_COUNT_INTERVAL;
+            this.sloQueries = DEFAULT_SLO_QUERIES;
+            this.sloInterval = DEFAULT_SLO_INTERVAL;
+            this.jvmProbe = DEFAULT_JVM_PROBE;
+            this.jvmInterval = DEFAULT_JVM_INTERVAL;
+            this.jvmWindow = DEFAULT_JVM_WINDOW;
+            this.maxGcPause = DEFAULT_MAX_GC_PAUSE;
+            this.maxGcTimeRatio = DEFAULT_MAX_GC_TIME_RATIO;
+            this.maxOldGenRatio = DEFAULT_MAX_OLD_GEN_RATIO;
+            this.maxDirectMemoryRatio = DEFAULT_MAX_DIRECT_MEMORY_RATIO;
+            this.diskProbe = DEFAULT_DISK_PROBE;
+            this.diskInterval = DEFAULT_DISK_INTERVAL;
+            this.diskDegradedFreeRatio = DEFAULT_DISK_DEGRADED_FREE_RATIO;
+            this.diskDownFreeRatio = DEFAULT_DISK_DOWN_FREE_RATIO;
+            this.diskDegradedTimeToFull = DEFAULT_DISK_DEGRADED_TIME_TO_FULL;
+            this.transactionProbe = DEFAULT_TRANSACTION_PROBE;
+            this.transactionInterval = DEFAULT_TRANSACTION_INTERVAL;
+            this.maxTransactionAge = DEFAULT_MAX_TRANSACTION_AGE;
+            this.maxLockWaiting = DEFAULT_MAX_LOCK_WAITING;
+            this.transactionTop = DEFAULT_TRANSACTION_TOP;
+            this.admissionMaxConcurrent = DEFAULT_ADMISSION_MAX_CONCURRENT;
+            this.admissionClientRate = DEFAULT_ADMISSION_CLIENT_RATE;
+            this.admissionClientBurst = DEFAULT_ADMISSION_CLIENT_BURST;
+            this.admissionMaxClients = DEFAULT_ADMISSION_MAX_CLIENTS;
+            this.severityOrder = DEFAULT_SEVERITY_ORDER;
+            this.agentPort = DEFAULT_AGENT_PORT;
+            this.agentAddress = DEFAULT_AGENT_ADDRESS;
+            this.agentDatabase = DEFAULT_AGENT_DATABASE;
+            this.agentDegradedWeight = DEFAULT_AGENT_DEGRADED_WEIGHT;
+            this.boltProbe = DEFAULT_BOLT_PROBE;
+            this.boltInterval = DEFAULT_BOLT_INTERVAL;
+            this.boltTimeout = DEFAULT_BOLT_TIMEOUT;
+            this.boltDegradedLatency = DEFAULT_BOLT_DEGRADED_LATENCY;
+            this.eventQueueSize = DEFAULT_EVENT_QUEUE_SIZE;
+            this.notifierThreads = DEFAULT_NOTIFIER_THREADS;
+            this.maxSubscribers = DEFAULT_MAX_SUBSCRIBERS;
+            this.samplerThreads = DEFAULT_SAMPLER_THREADS;
+        }
+
+        /**
+         * Set the interval of the background probes.
+         *
+         * @param probeInterval
+         *         the interval in milliseconds, zero or negative value disables the background probes
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withProbeInterval(long probeInterval) {
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        /**
+         * Set the maximum age of a health snapshot that can be served without a new probe.
+         *
+         * @param maxStaleness
+         *         the maximum age in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxStaleness(long maxStaleness) {
+            this.maxStaleness = maxStaleness;
+            return this;
+        }
+
+        /**
+         * Set the number of threads executing the background probes.
+         *
+         * @param probeThreads
+         *         the number of threads
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withProbeThreads(int probeThreads) {
+            this.probeThreads = probeThreads;
+            return this;
+        }
+
+        /**
+         * Set the deadline of a health check.
+         *
+         * @param timeout
+         *         the deadline in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withTimeout(long timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Set the number of threads executing the probes on behalf of the requests.
+         *
+         * @param fanoutThreads
+         *         the number of threads
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withFanoutThreads(int fanoutThreads) {
+            this.fanoutThreads = fanoutThreads;
+            return this;
+        }
+
+        /**
+         * Set whether the storage engine internals are sampled.
+         *
+         * @param storageProbe
+         *         {@code true} if the storage engine internals are sampled
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withStorageProbe(boolean storageProbe) {
+            this.storageProbe = storageProbe;
+            return this;
+        }
+
+        /**
+         * Set the interval of the storage engine sampling.
+         *
+         * @param storageInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withStorageInterval(long storageInterval) {
+            this.storageInterval = storageInterval;
+            return this;
+        }
+
+        /**
+         * Set the page cache hit ratio below which the database is degraded.
+         *
+         * @param minHitRatio
+         *         the minimum hit ratio between 0 and 1
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMinHitRatio(double minHitRatio) {
+            this.minHitRatio = minHitRatio;
+            return this;
+        }
+
+        /**
+         * Set the time since the last checkpoint above which the database is degraded.
+         *
+         * @param maxCheckpointAge
+         *         the maximum age in milliseconds, zero or negative value disables the threshold
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxCheckpointAge(long maxCheckpointAge) {
+            this.maxCheckpointAge = maxCheckpointAge;
+            return this;
+        }
+
+        /**
+         * Set the transaction log size above which the database is degraded.
+         *
+         * @param maxLogSize
+         *         the maximum size in bytes, zero or negative value disables the threshold
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxLogSize(long maxLogSize) {
+            this.maxLogSize = maxLogSize;
+            return this;
+        }
+
+        /**
+         * Set whether the write canary is executed.
+         *
+         * @param canaryProbe
+         *         {@code true} if the write canary is executed
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withCanaryProbe(boolean canaryProbe) {
+            this.canaryProbe = canaryProbe;
+            return this;
+        }
+
+        /**
+         * Set the interval of the write canary.
+         *
+         * @param canaryInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withCanaryInterval(long canaryInterval) {
+            this.canaryInterval = canaryInterval;
+            return this;
+        }
+
+        /**
+         * Set the write canary latency above which the database is degraded.
+         *
+         * @param canaryDegradedLatency
+         *         the latency in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withCanaryDegradedLatency(long canaryDegradedLatency) {
+            this.canaryDegradedLatency = canaryDegradedLatency;
+            return this;
+        }
+
+        /**
+         * Set the write canary latency above which the database is down.
+         *
+         * @param canaryDownLatency
+         *         the latency in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withCanaryDownLatency(long canaryDownLatency) {
+            this.canaryDownLatency = canaryDownLatency;
+            return this;
+        }
+
+        /**
+         * Set whether the probes are guarded by a circuit breaker.
+         *
+         * @param breakerEnabled
+         *         {@code true} if the circuit breaker is enabled
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBreakerEnabled(boolean breakerEnabled) {
+            this.breakerEnabled = breakerEnabled;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive failures opening the circuit breaker.
+         *
+         * @param breakerFailures
+         *         the number of failures
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBreakerFailures(int breakerFailures) {
+            this.breakerFailures = breakerFailures;
+            return this;
+        }
+
+        /**
+         * Set the initial time the circuit breaker stays open.
+         *
+         * @param breakerBackoff
+         *         the time in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBreakerBackoff(long breakerBackoff) {
+            this.breakerBackoff = breakerBackoff;
+            return this;
+        }
+
+        /**
+         * Set the maximum time the circuit breaker stays open.
+         *
+         * @param breakerMaxBackoff
+         *         the time in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBreakerMaxBackoff(long breakerMaxBackoff) {
+            this.breakerMaxBackoff = breakerMaxBackoff;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive successes before a failing database is reported healthy.
+         *
+         * @param breakerRise
+         *         the number of successes
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBreakerRise(int breakerRise) {
+            this.breakerRise = breakerRise;
+            return this;
+        }
+
+        /**
+         * Set the number of consecutive failures before a healthy database is reported failing.
+         *
+         * @param breakerFall
+         *         the number of failures
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBreakerFall(int breakerFall) {
+            this.breakerFall = breakerFall;
+            return this;
+        }
+
+        /**
+         * Set the number of the probe results kept in the history of a database.
+         *
+         * @param historySize
+         *         the number of the results
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withHistorySize(int historySize) {
+            this.historySize = historySize;
+            return this;
+        }
+
+        /**
+         * Set the interval of the heartbeats sent to the subscribers of the health events.
+         *
+         * @param heartbeatInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+            return this;
+        }
+
+        /**
+         * Set the count-store assertions of the databases.
+         *
+         * @param countAssertions
+         *         the comma-separated assertions, empty to disable them
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withCountAssertions(String countAssertions) {
+            this.countAssertions = countAssertions;
+            return this;
+        }
+
+        /**
+         * Set the interval of the count-store assertions.
+         *
+         * @param countInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withCountInterval(long countInterval) {
+            this.countInterval = countInterval;
+            return this;
+        }
+
+        /**
+         * Set the representative queries with latency objectives.
+         *
+         * @param sloQueries
+         *         the queries
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withSloQueries(List<SloQuery> sloQueries) {
+            this.sloQueries = sloQueries;
+            return this;
+        }
+
+        /**
+         * Set the interval of the representative queries.
+         *
+         * @param sloInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withSloInterval(long sloInterval) {
+            this.sloInterval = sloInterval;
+            return this;
+        }
+
+        /**
+         * Set whether the JVM pressure is probed.
+         *
+         * @param jvmProbe
+         *         {@code true} to probe the JVM pressure
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withJvmProbe(boolean jvmProbe) {
+            this.jvmProbe = jvmProbe;
+            return this;
+        }
+
+        /**
+         * Set the interval of the JVM pressure samples.
+         *
+         * @param jvmInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withJvmInterval(long jvmInterval) {
+            this.jvmInterval = jvmInterval;
+            return this;
+        }
+
+        /**
+         * Set the sliding window of the garbage collection statistics.
+         *
+         * @param jvmWindow
+         *         the window in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withJvmWindow(long jvmWindow) {
+            this.jvmWindow = jvmWindow;
+            return this;
+        }
+
+        /**
+         * Set the longest garbage collection pause within the window above which the JVM is degraded.
+         *
+         * @param maxGcPause
+         *         the pause in milliseconds, zero disables the check
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxGcPause(long maxGcPause) {
+            this.maxGcPause = maxGcPause;
+            return this;
+        }
+
+        /**
+         * Set the share of the window spent in garbage collection pauses above which the JVM is degraded.
+         *
+         * @param maxGcTimeRatio
+         *         the ratio between 0 and 1
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxGcTimeRatio(double maxGcTimeRatio) {
+            this.maxGcTimeRatio = maxGcTimeRatio;
+            return this;
+        }
+
+        /**
+         * Set the old generation occupancy after garbage collection above which the JVM is degraded.
+         *
+         * @param maxOldGenRatio
+         *         the ratio between 0 and 1
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxOldGenRatio(double maxOldGenRatio) {
+            this.maxOldGenRatio = maxOldGenRatio;
+            return this;
+        }
+
+        /**
+         * Set the direct memory usage above which the JVM is degraded.
+         *
+         * @param maxDirectMemoryRatio
+         *         the ratio between 0 and 1
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxDirectMemoryRatio(double maxDirectMemoryRatio) {
+            this.maxDirectMemoryRatio = maxDirectMemoryRatio;
+            return this;
+        }
+
+        /**
+         * Set whether the free space of the store volumes is probed.
+         *
+         * @param diskProbe
+         *         {@code true} to probe the store volumes
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDiskProbe(boolean diskProbe) {
+            this.diskProbe = diskProbe;
+            return this;
+        }
+
+        /**
+         * Set the interval of the store volume samples.
+         *
+         * @param diskInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDiskInterval(long diskInterval) {
+            this.diskInterval = diskInterval;
+            return this;
+        }
+
+        /**
+         * Set the share of the usable space of a volume below which the database is degraded.
+         *
+         * @param diskDegradedFreeRatio
+         *         the ratio between 0 and 1
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDiskDegradedFreeRatio(double diskDegradedFreeRatio) {
+            this.diskDegradedFreeRatio = diskDegradedFreeRatio;
+            return this;
+        }
+
+        /**
+         * Set the share of the usable space of a volume below which the database is down.
+         *
+         * @param diskDownFreeRatio
+         *         the ratio between 0 and 1
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDiskDownFreeRatio(double diskDownFreeRatio) {
+            this.diskDownFreeRatio = diskDownFreeRatio;
+            return this;
+        }
+
+        /**
+         * Set the estimated time until a volume is full below which the database is degraded.
+         *
+         * @param diskDegradedTimeToFull
+         *         the time in milliseconds, zero disables the check
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDiskDegradedTimeToFull(long diskDegradedTimeToFull) {
+            this.diskDegradedTimeToFull = diskDegradedTimeToFull;
+            return this;
+        }
+
+        /**
+         * Set whether the active transactions are probed.
+         *
+         * @param transactionProbe
+         *         {@code true} to probe the active transactions
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withTransactionProbe(boolean transactionProbe) {
+            this.transactionProbe = transactionProbe;
+            return this;
+        }
+
+        /**
+         * Set the interval of the active transaction samples.
+         *
+         * @param transactionInterval
+         *         the interval in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withTransactionInterval(long transactionInterval) {
+            this.transactionInterval = transactionInterval;
+            return this;
+        }
+
+        /**
+         * Set the age of the oldest transaction above which the database is degraded.
+         *
+         * @param maxTransactionAge
+         *         the age in milliseconds, zero disables the check
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxTransactionAge(long maxTransactionAge) {
+            this.maxTransactionAge = maxTransactionAge;
+            return this;
+        }
+
+        /**
+         * Set the number of the transactions waiting on locks above which the database is degraded.
+         *
+         * @param maxLockWaiting
+         *         the number of the transactions, zero disables the check
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxLockWaiting(int maxLockWaiting) {
+            this.maxLockWaiting = maxLockWaiting;
+            return this;
+        }
+
+        /**
+         * Set the number of the oldest transactions reported.
+         *
+         * @param transactionTop
+         *         the number of the transactions
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withTransactionTop(int transactionTop) {
+            this.transactionTop = transactionTop;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of requests probing the databases at the same time, {@code 0} disables the limit.
+         *
+         * @param admissionMaxConcurrent
+         *         the maximum number of concurrent probing requests
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAdmissionMaxConcurrent(int admissionMaxConcurrent) {
+            this.admissionMaxConcurrent = admissionMaxConcurrent;
+            return this;
+        }
+
+        /**
+         * Set the number of probing requests a client is allowed per second, {@code 0} disables the limit.
+         *
+         * @param admissionClientRate
+         *         the allowed probing requests per second of a client
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAdmissionClientRate(double admissionClientRate) {
+            this.admissionClientRate = admissionClientRate;
+            return this;
+        }
+
+        /**
+         * Set the number of probing requests a client is allowed in a burst above its rate.
+         *
+         * @param admissionClientBurst
+         *         the burst size of a client
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAdmissionClientBurst(int admissionClientBurst) {
+            this.admissionClientBurst = admissionClientBurst;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of clients whose request rate is tracked.
+         *
+         * @param admissionMaxClients
+         *         the maximum number of tracked clients
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAdmissionMaxClients(int admissionMaxClients) {
+            this.admissionMaxClients = admissionMaxClients;
+            return this;
+        }
+
+        /**
+         * Set the comma separated severity ordering of the status codes, starting with the most severe one.
+         *
+         * @param severityOrder
+         *         the severity ordering of the status codes
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withSeverityOrder(String severityOrder) {
+            this.severityOrder = severityOrder;
+            return this;
+        }
+
+        /**
+         * Set the port of the HAProxy agent-check listener, {@code 0} disables the listener.
+         *
+         * @param agentPort
+         *         the port of the agent-check listener
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAgentPort(int agentPort) {
+            this.agentPort = agentPort;
+            return this;
+        }
+
+        /**
+         * Set the address the HAProxy agent-check listener is bound to.
+         *
+         * @param agentAddress
+         *         the address of the agent-check listener
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAgentAddress(String agentAddress) {
+            this.agentAddress = agentAddress;
+            return this;
+        }
+
+        /**
+         * Set the name of the database reported by the HAProxy agent-check listener.
+         *
+         * @param agentDatabase
+         *         the name of the reported database
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAgentDatabase(String agentDatabase) {
+            this.agentDatabase = agentDatabase;
+            return this;
+        }
+
+        /**
+         * Set the weight reported to HAProxy in percent while the database is degraded.
+         *
+         * @param agentDegradedWeight
+         *         the weight of a degraded database in percent
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withAgentDegradedWeight(int agentDegradedWeight) {
+            this.agentDegradedWeight = agentDegradedWeight;
+            return this;
+        }
+
+        /**
+         * Set whether the Bolt connector is probed.
+         *
+         * @param boltProbe
+         *         {@code true} if the Bolt connector is probed
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBoltProbe(boolean boltProbe) {
+            this.boltProbe = boltProbe;
+            return this;
+        }
+
+        /**
+         * Set the interval of the Bolt handshake probes.
+         *
+         * @param boltInterval
+         *         the interval of the Bolt handshake probes in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBoltInterval(long boltInterval) {
+            this.boltInterval = boltInterval;
+            return this;
+        }
+
+        /**
+         * Set the timeout of the Bolt handshake probes.
+         *
+         * @param boltTimeout
+         *         the timeout of the connect and of the handshake in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBoltTimeout(long boltTimeout) {
+            this.boltTimeout = boltTimeout;
+            return this;
+        }
+
+        /**
+         * Set the Bolt handshake latency above which the database is degraded.
+         *
+         * @param boltDegradedLatency
+         *         the handshake latency in milliseconds, {@code 0} disables the check
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withBoltDegradedLatency(long boltDegradedLatency) {
+            this.boltDegradedLatency = boltDegradedLatency;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of the pending notifications of a subscriber.
+         *
+         * @param eventQueueSize
+         *         the number of the notifications, a subscriber falling further behind is dropped
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withEventQueueSize(int eventQueueSize) {
+            this.eventQueueSize = eventQueueSize;
+            return this;
+        }
+
+        /**
+         * Set the number of threads delivering the notifications of the subscribers.
+         *
+         * @param notifierThreads
+         *         the number of threads
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withNotifierThreads(int notifierThreads) {
+            this.notifierThreads = notifierThreads;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of the subscribers of a database.
+         *
+         * @param maxSubscribers
+         *         the number of the subscribers
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withMaxSubscribers(int maxSubscribers) {
+            this.maxSubscribers = maxSubscribers;
+            return this;
+        }
+
+        /**
+         * Set the number of threads executing the samplers.
+         *
+         * @param samplerThreads
+         *         the number of threads
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withSamplerThreads(int samplerThreads) {
+            this.samplerThreads = samplerThreads;
+            return this;
+        }
+
+        /**
+         * Create a new {@link HealthSettings} instance with the previously specified values.
+         *
+         * @return a new {@link HealthSettings} instance
+         */
+        public HealthSettings build() {
+            return new HealthSettings(this);
+        }
+    }
+
+    /**
+     * The prefix of the system properties.
+     */
+    public static final String PREFIX = "labs.health.";
+
+    private static final Logger LOGGER = Logger.getLogger(HealthSettings.class.getName());
+
+    private static final long DEFAULT_PROBE_INTERVAL = 1000L;
+
+    private static final long DEFAULT_MAX_STALENESS = 5000L;
+
+    private static final int DEFAULT_PROBE_THREADS = 2;
+
+    private static final long DEFAULT_TIMEOUT = 5000L;
+
+    private static final int DEFAULT_FANOUT_THREADS = 8;
+
+    private static final boolean DEFAULT_STORAGE_PROBE = false;
+
+    private static final long DEFAULT_STORAGE_INTERVAL = 10000L;
+
+    private static final double DEFAULT_MIN_HIT_RATIO = 0.9;
+
+    private static final long DEFAULT_MAX_CHECKPOINT_AGE = 1800000L;
+
+    private static final long DEFAULT_MAX_LOG_SIZE = 0L;
+
+    private static final boolean DEFAULT_CANARY_PROBE = false;
+
+    private static final long DEFAULT_CANARY_INTERVAL = 10000L;
+
+    private static final long DEFAULT_CANARY_DEGRADED_LATENCY = 200L;
+
+    private static final long DEFAULT_CANARY_DOWN_LATENCY = 2000L;
+
+    private static final boolean DEFAULT_BREAKER_ENABLED = false;
+
+    private static final int DEFAULT_BREAKER_FAILURES = 3;
+
+    private static final long DEFAULT_BREAKER_BACKOFF = 1000L;
+
+    private static final long DEFAULT_BREAKER_MAX_BACKOFF = 60000L;
+
+    private static final int DEFAULT_BREAKER_RISE = 2;
+
+    private static final int DEFAULT_BREAKER_FALL = 2;
+
+    private static final int DEFAULT_HISTORY_SIZE = 512;
+
+    private static final long DEFAULT_HEARTBEAT_INTERVAL = 15000L;
+
+    private static final String DEFAULT_COUNT_ASSERTIONS = "";
+
+    private static final long DEFAULT_COUNT_INTERVAL = 5000L;
+
+    private static final List<SloQuery> DEFAULT_SLO_QUERIES = Collections.emptyList();
+
+    private static final long DEFAULT_SLO_INTERVAL = 10000L;
+
+    private static final boolean DEFAULT_JVM_PROBE = false;
+
+    private static final long DEFAULT_JVM_INTERVAL = 1000L;
+
+    private static final long DEFAULT_JVM_WINDOW = 60000L;
+
+    private static final long DEFAULT_MAX_GC_PAUSE = 1000L;
+
+    private static final double DEFAULT_MAX_GC_TIME_RATIO = 0.1;
+
+    private static final double DEFAULT_MAX_OLD_GEN_RATIO = 0.9;
+
+    private static final double DEFAULT_MAX_DIRECT_MEMORY_RATIO = 0.9;
+
+    private static final boolean DEFAULT_DISK_PROBE = false;
+
+    private static final long DEFAULT_DISK_INTERVAL = 10000L;
+
+    private static final double DEFAULT_DISK_DEGRADED_FREE_RATIO = 0.1;
+
+    private static final double DEFAULT_DISK_DOWN_FREE_RATIO = 0.02;
+
+    private static final long DEFAULT_DISK_DEGRADED_TIME_TO_FULL = 3600000L;
+
+    private static final boolean DEFAULT_TRANSACTION_PROBE = false;
+
+    private static final long DEFAULT_TRANSACTION_INTERVAL = 5000L;
+
+    private static final long DEFAULT_MAX_TRANSACTION_AGE = 600000L;
+
+    private static final int DEFAULT_MAX_LOCK_WAITING = 10;
+
+    private static final int DEFAULT_TRANSACTION_TOP = 5;
+
+    private static final int DEFAULT_ADMISSION_MAX_CONCURRENT = 8;
+
+    private static final double DEFAULT_ADMISSION_CLIENT_RATE = 10.0;
+
+    private static final int DEFAULT_ADMISSION_CLIENT_BURST = 20;
+
+    private static final int DEFAULT_ADMISSION_MAX_CLIENTS = 10000;
+
+    private static final String DEFAULT_SEVERITY_ORDER = "DOWN,OUT_OF_SERVICE,UNKNOWN,DEGRADED,UP";
+
+    private static final int DEFAULT_AGENT_PORT = 0;
+
+    private static final String DEFAULT_AGENT_ADDRESS = "127.0.0.1";
+
+    private static final String DEFAULT_AGENT_DATABASE = "neo4j";
+
+    private static final int DEFAULT_AGENT_DEGRADED_WEIGHT = 50;
+
+    private static final boolean DEFAULT_BOLT_PROBE = false;
+
+    private static final long DEFAULT_BOLT_INTERVAL = 5000L;
+
+    private static final long DEFAULT_BOLT_TIMEOUT = 500L;
+
+    private static final long DEFAULT_BOLT_DEGRADED_LATENCY = 100L;
+
+    private static final int DEFAULT_EVENT_QUEUE_SIZE = 64;
+
+    private static final int DEFAULT_NOTIFIER_THREADS = 2;
+
+    private static final int DEFAULT_MAX_SUBSCRIBERS = 256;
+
+    private static final int DEFAULT_SAMPLER_THREADS = 2;
+
+    private final long probeInterval;
+
+    private final long maxStaleness;
+
+    private final int probeThreads;
+
+    private final long timeout;
+
+    private final int fanoutThreads;
+
+    private final boolean storageProbe;
+
+    private final long storageInterval;
+
+    private final double minHitRatio;
+
+    private final long maxCheckpointAge;
+
+    private final long maxLogSize;
+
+    private final boolean canaryProbe;
+
+    private final long canaryInterval;
+
+    private final long canaryDegradedLatency;
+
+    private final long canaryDownLatency;
+
+    private final boolean breakerEnabled;
+
+    private final int breakerFailures;
+
+    private final long breakerBackoff;
+
+    private final long breakerMaxBackoff;
+
+    private final int breakerRise;
+
+    private final int breakerFall;
+
+    private final int historySize;
+
+    private final long heartbeatInterval;
+
+    private final String countAssertions;
+
+    private final long countInterval;
+
+    private final List<SloQuery> sloQueries;
+
+    private final long sloInterval;
+
+    private final boolean jvmProbe;
+
+    private final long jvmInterval;
+
+    private final long jvmWindow;
+
+    private final long maxGcPause;
+
+    private final double maxGcTimeRatio;
+
+    private final double maxOldGenRatio;
+
+    private final double maxDirectMemoryRatio;
+
+    private final boolean diskProbe;
+
+    private final long diskInterval;
+
+    private final double diskDegradedFreeRatio;
+
+    private final double diskDownFreeRatio;
+
+    private final long diskDegradedTimeToFull;
+
+    private final boolean transactionProbe;
+
+    private final long transactionInterval;
+
+    private final long maxTransactionAge;
+
+    private final int maxLockWaiting;
+
+    private final int transactionTop;
+
+    private final int admissionMaxConcurrent;
+
+    private final double admissionClientRate;
+
+    private final int admissionClientBurst;
+
+    private final int admissionMaxClients;
+
+    private final String severityOrder;
+
+    private final int agentPort;
+
+    private final String agentAddress;
+
+    private final String agentDatabase;
+
+    private final int agentDegradedWeight;
+
+    private final boolean boltProbe;
+
+    private final long boltInterval;
+
+    private final long boltTimeout;
+
+    private final long boltDegradedLatency;
+
+    private final int eventQueueSize;
+
+    private final int notifierThreads;
+
+    private final int maxSubscribers;
+
+    private final int samplerThreads;
+
+    private HealthSettings(Builder builder) {
+        this.probeInterval = builder.probeInterval;
+        this.maxStaleness = builder.maxStaleness;
+        this.probeThreads = builder.probeThreads;
+        this.timeout = builder.timeout;
+        this.fanoutThreads = builder.fanoutThreads;
+        this.storageProbe = builder.storageProbe;
+        this.storageInterval = builder.storageInterval;
+        this.minHitRatio = builder.minHitRatio;
+        this.maxCheckpointAge = builder.maxCheckpointAge;
+        this.maxLogSize = builder.maxLogSize;
+        this.canaryProbe = builder.canaryProbe;
+        this.canaryInterval = builder.canaryInterval;
+        this.canaryDegradedLatency = builder.canaryDegradedLatency;
+        this.canaryDownLatency = builder.canaryDownLatency;
+        this.breakerEnabled = builder.breakerEnabled;
+        this.breakerFailures = builder.breakerFailures;
+        this.breakerBackoff = builder.breakerBackoff;
+        this.breakerMaxBackoff = builder.breakerMaxBackoff;
+        this.breakerRise = builder.breakerRise;
+        this.breakerFall = builder.breakerFall;
+        this.historySize = builder.historySize;
+        this.heartbeatInterval = builder.heartbeatInterval;
+        this.countAssertions = builder.countAssertions;
+        this.countInterval = builder.countInterval;
+        this.sloQueries = Collections.unmodifiableList(new ArrayList<>(builder.sloQueries));
+        this.sloInterval = builder.sloInterval;
+        this.jvmProbe = builder.jvmProbe;
+        this.jvmInterval = builder.jvmInterval;
+        this.jvmWindow = builder.jvmWindow;
+        this.maxGcPause = builder.maxGcPause;
+        this.maxGcTimeRatio = builder.maxGcTimeRatio;
+        this.maxOldGenRatio = builder.maxOldGenRatio;
+        this.maxDirectMemoryRatio = builder.maxDirectMemoryRatio;
+        this.diskProbe = builder.diskProbe;
+        this.diskInterval = builder.diskInterval;
+        this.diskDegradedFreeRatio = builder.diskDegradedFreeRatio;
+        this.diskDownFreeRatio = builder.diskDownFreeRatio;
+        this.diskDegradedTimeToFull = builder.diskDegradedTimeToFull;
+        this.transactionProbe = builder.transactionProbe;
+        this.transactionInterval = builder.transactionInterval;
+        this.maxTransactionAge = builder.maxTransactionAge;
+        this.maxLockWaiting = builder.maxLockWaiting;
+        this.transactionTop = builder.transactionTop;
+        this.admissionMaxConcurrent = builder.admissionMaxConcurrent;
+        this.admissionClientRate = builder.admissionClientRate;
+        this.admissionClientBurst = builder.admissionClientBurst;
+        this.admissionMaxClients = builder.admissionMaxClients;
+        this.severityOrder = builder.severityOrder;
+        this.agentPort = builder.agentPort;
+        this.agentAddress = builder.agentAddress;
+        this.agentDatabase = builder.agentDatabase;
+        this.agentDegradedWeight = builder.agentDegradedWeight;
+        this.boltProbe = builder.boltProbe;
+        this.boltInterval = builder.boltInterval;
+        this.boltTimeout = builder.boltTimeout;
+        this.boltDegradedLatency = builder.boltDegradedLatency;
+        this.eventQueueSize = builder.eventQueueSize;
+        this.notifierThreads = builder.notifierThreads;
+        this.maxSubscribers = builder.maxSubscribers;
+        this.samplerThreads = builder.samplerThreads;
+    }
+
+    /**
+     * Create a new {@link HealthSettings} instance from the system properties. An invalid value is logged and the
+     * default value is used instead, and an invalid SLO query is ignored.
+     *
+     * @return a new {@link HealthSettings} instance
+     */
+    public static HealthSettings fromSystemProperties() {
+        return new Builder()
+                .withProbeInterval(getLong(PREFIX + "probe.interval", DEFAULT_PROBE_INTERVAL))
+                .withMaxStaleness(getLong(PREFIX + "max.staleness", DEFAULT_MAX_STALENESS))
+                .withProbeThreads(getInt(PREFIX + "probe.threads", DEFAULT_PROBE_THREADS, 1))
+                .withTimeout(getLong(PREFIX + "timeout", DEFAULT_TIMEOUT))
+                .withFanoutThreads(getInt(PREFIX + "fanout.threads", DEFAULT_FANOUT_THREADS, 1))
+                .withStorageProbe(getBoolean(PREFIX + "storage.probe", DEFAULT_STORAGE_PROBE))
+                .withStorageInterval(getLong(PREFIX + "storage.interval", DEFAULT_STORAGE_INTERVAL, 1L))
+                .withMinHitRatio(getDouble(PREFIX + "storage.min.hit.ratio", DEFAULT_MIN_HIT_RATIO))
+                .withMaxCheckpointAge(getLong(PREFIX + "storage.max.checkpoint.age", DEFAULT_MAX_CHECKPOINT_AGE))
+                .withMaxLogSize(getLong(PREFIX + "storage.max.log.size", DEFAULT_MAX_LOG_SIZE))
+                .withCanaryProbe(getBoolean(PREFIX + "canary.probe", DEFAULT_CANARY_PROBE))
+                .withCanaryInterval(getLong(PREFIX + "canary.interval", DEFAULT_CANARY_INTERVAL, 1L))
+                .withCanaryDegradedLatency(getLong(PREFIX + "canary.degraded.latency", DEFAULT_CANARY_DEGRADED_LATENCY))
+                .withCanaryDownLatency(getLong(PREFIX + "canary.down.latency", DEFAULT_CANARY_DOWN_LATENCY))
+                .withBreakerEnabled(getBoolean(PREFIX + "breaker.enabled", DEFAULT_BREAKER_ENABLED))
+                .withBreakerFailures(getInt(PREFIX + "breaker.failures", DEFAULT_BREAKER_FAILURES))
+                .withBreakerBackoff(getLong(PREFIX + "breaker.backoff", DEFAULT_BREAKER_BACKOFF))
+                .withBreakerMaxBackoff(getLong(PREFIX + "breaker.max.backoff", DEFAULT_BREAKER_MAX_BACKOFF))
+                .withBreakerRise(getInt(PREFIX + "breaker.rise", DEFAULT_BREAKER_RISE))
+                .withBreakerFall(getInt(PREFIX + "breaker.fall", DEFAULT_BREAKER_FALL))
+                .withHistorySize(getInt(PREFIX + "history.size", DEFAULT_HISTORY_SIZE))
+                .withHeartbeatInterval(getLong(PREFIX + "events.heartbeat", DEFAULT_HEARTBEAT_INTERVAL))
+                .withCountAssertions(getCountAssertions(PREFIX + "counts"))
+                .withCountInterval(getLong(PREFIX + "counts.interval", DEFAULT_COUNT_INTERVAL, 1L))
+                .withSloQueries(getSloQueries(PREFIX + "slo.queries"))
+                .withSloInterval(getLong(PREFIX + "slo.interval", DEFAULT_SLO_INTERVAL, 1L))
+                .withJvmProbe(getBoolean(PREFIX + "jvm.probe", DEFAULT_JVM_PROBE))
+                .withJvmInterval(getLong(PREFIX + "jvm.interval", DEFAULT_JVM_INTERVAL, 1L))
+                .withJvmWindow(getLong(PREFIX + "jvm.window", DEFAULT_JVM_WINDOW))
+                .withMaxGcPause(getLong(PREFIX + "jvm.max.pause", DEFAULT_MAX_GC_PAUSE))
+                .withMaxGcTimeRatio(getDouble(PREFIX + "jvm.max.gc.time.ratio", DEFAULT_MAX_GC_TIME_RATIO))
+                .withMaxOldGenRatio(getDouble(PREFIX + "jvm.max.old.gen.ratio", DEFAULT_MAX_OLD_GEN_RATIO))
+                .withMaxDirectMemoryRatio(getDouble(PREFIX + "jvm.max.direct.ratio", DEFAULT_MAX_DIRECT_MEMORY_RATIO))
+                .withDiskProbe(getBoolean(PREFIX + "disk.probe", DEFAULT_DISK_PROBE))
+                .withDiskInterval(getLong(PREFIX + "disk.interval", DEFAULT_DISK_INTERVAL, 1L))
+                .withDiskDegradedFreeRatio(getDouble(PREFIX + "disk.degraded.free.ratio", DEFAULT_DISK_DEGRADED_FREE_RATIO))
+                .withDiskDownFreeRatio(getDouble(PREFIX + "disk.down.free.ratio", DEFAULT_DISK_DOWN_FREE_RATIO))
+                .withDiskDegradedTimeToFull(getLong(PREFIX + "disk.degraded.time.to.full", DEFAULT_DISK_DEGRADED_TIME_TO_FULL))
+                .withTransactionProbe(getBoolean(PREFIX + "transactions.probe", DEFAULT_TRANSACTION_PROBE))
+                .withTransactionInterval(getLong(PREFIX + "transactions.interval", DEFAULT_TRANSACTION_INTERVAL, 1L))
+                .withMaxTransactionAge(getLong(PREFIX + "transactions.max.age", DEFAULT_MAX_TRANSACTION_AGE))
+                .withMaxLockWaiting(getInt(PREFIX + "transactions.max.waiting", DEFAULT_MAX_LOCK_WAITING))
+                .withTransactionTop(getInt(PREFIX + "transactions.top", DEFAULT_TRANSACTION_TOP))
+                .withAdmissionMaxConcurrent(getInt(PREFIX + "admission.max.concurrent", DEFAULT_ADMISSION_MAX_CONCURRENT))
+                .withAdmissionClientRate(getDouble(PREFIX + "admission.client.rate", DEFAULT_ADMISSION_CLIENT_RATE))
+                .withAdmissionClientBurst(getInt(PREFIX + "admission.client.burst", DEFAULT_ADMISSION_CLIENT_BURST))
+                .withAdmissionMaxClients(getInt(PREFIX + "admission.max.clients", DEFAULT_ADMISSION_MAX_CLIENTS))
+                .withSeverityOrder(getSeverityOrder(PREFIX + "severity.order"))
+                .withAgentPort(getInt(PREFIX + "agent.port", DEFAULT_AGENT_PORT))
+                .withAgentAddress(System.getProperty(PREFIX + "agent.address", DEFAULT_AGENT_ADDRESS))
+                .withAgentDatabase(System.getProperty(PREFIX + "agent.database", DEFAULT_AGENT_DATABASE))
+                .withAgentDegradedWeight(getInt(PREFIX + "agent.degraded.weight", DEFAULT_AGENT_DEGRADED_WEIGHT))
+                .withBoltProbe(getBoolean(PREFIX + "bolt.probe", DEFAULT_BOLT_PROBE))
+                .withBoltInterval(getLong(PREFIX + "bolt.interval", DEFAULT_BOLT_INTERVAL, 1L))
+                .withBoltTimeout(getLong(PREFIX + "bolt.timeout", DEFAULT_BOLT_TIMEOUT))
+                .withBoltDegradedLatency(getLong(PREFIX + "bolt.degraded.latency", DEFAULT_BOLT_DEGRADED_LATENCY))
+                .withEventQueueSize(getInt(PREFIX + "events.queue.size", DEFAULT_EVENT_QUEUE_SIZE))
+                .withNotifierThreads(getInt(PREFIX + "notifier.threads", DEFAULT_NOTIFIER_THREADS, 1))
+                .withMaxSubscribers(getInt(PREFIX + "events.max.subscribers", DEFAULT_MAX_SUBSCRIBERS, 1))
+                .withSamplerThreads(getInt(PREFIX + "sampler.threads", DEFAULT_SAMPLER_THREADS, 1))
+                .build();
+    }
+
+    private static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!"true".equalsIgnoreCase(value.trim()) && !"false".equalsIgnoreCase(value.trim())) {
+            return invalid(name, value, defaultValue);
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int getInt(String name, int defaultValue) {
+        return getInt(name, defaultValue, Integer.MIN_VALUE);
+    }
+
+    private static int getInt(String name, int defaultValue, int min) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            return result >= min ? result : invalid(name, value, defaultValue);
+        } catch (NumberFormatException e) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    private static long getLong(String name, long defaultValue) {
+        return getLong(name, defaultValue, Long.MIN_VALUE);
+    }
+
+    private static long getLong(String name, long defaultValue, long min) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long result = Long.parseLong(value.trim());
+            return result >= min ? result : invalid(name, value, defaultValue);
+        } catch (NumberFormatException e) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    private static double getDouble(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            double result = Double.parseDouble(value.trim());
+            return !Double.isNaN(result) ? result : invalid(name, value, defaultValue);
+        } catch (NumberFormatException e) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    private static String getCountAssertions(String name) {
+        String value = System.getProperty(name, DEFAULT_COUNT_ASSERTIONS);
+        try {
+            CountAssertion.parse(value);
+            return value;
+        } catch (IllegalArgumentException e) {
+            return invalid(name, value, DEFAULT_COUNT_ASSERTIONS);
+        }
+    }
+
+    private static String getSeverityOrder(String name) {
+        String value = System.getProperty(name, DEFAULT_SEVERITY_ORDER);
+        try {
+            StatusAggregator.parse(value);
+            return value;
+        } catch (IllegalArgumentException e) {
+            return invalid(name, value, DEFAULT_SEVERITY_ORDER);
+        }
+    }
+
+    private static List<SloQuery> getSloQueries(String name) {
+        List<SloQuery> queries = new ArrayList<>();
+        for (String query : System.getProperty(name, "").split(",")) {
+            query = query.trim();
+            if (query.isEmpty()) {
+                continue;
+            }
+            String prefix = PREFIX + "slo." + query + ".";
+            try {
+                queries.add(new SloQuery.Builder()
+                        .withName(query)
+                        .withQuery(System.getProperty(prefix + "query"))
+                        .withParameters(getParameters(prefix + "parameters"))
+                        .withDegradedLatency(getLong(prefix + "degraded.latency", SloQuery.DEFAULT_DEGRADED_LATENCY))
+                        .withDatabase(System.getProperty(prefix + "database"))
+                        .build());
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning(String.format("Invalid SLO query %s, it is ignored: %s", query, e.getMessage()));
+            }
+        }
+        return queries;
+    }
+
+    private static Map<String, Object> getParameters(String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            return new ObjectMapper().readValue(value, new TypeReference<Map<String, Object>>() { });
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON parameters in " + name, e);
+        }
+    }
+
+    /**
+     * Log an invalid setting, so a typo does not prevent the plugin from starting.
+     */
+    private static <T> T invalid(String name, String value, T defaultValue) {
+        LOGGER.warning(String.format("Invalid value of %s: '%s', the default value %s is used", name, value,
+                defaultValue));
+        return defaultValue;
+    }
+
+    /**
+     * Get the interval of the background probes.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * Get the maximum age of a health snapshot that can be served without a new probe.
+     *
+     * @return the maximum age in milliseconds
+     */
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    /**
+     * Get the number of threads executing the background probes.
+     *
+     * @return the number of threads
+     */
+    public int getProbeThreads() {
+        return probeThreads;
+    }
+
+    /**
+     * Get the deadline of a health check.
+     *
+     * @return the deadline in milliseconds
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Get the number of threads executing the probes on behalf of the requests.
+     *
+     * @return the number of threads
+     */
+    public int getFanoutThreads() {
+        return fanoutThreads;
+    }
+
+    /**
+     * Get whether the storage engine internals are sampled.
+     *
+     * @return {@code true} if the storage engine internals are sampled
+     */
+    public boolean isStorageProbe() {
+        return storageProbe;
+    }
+
+    /**
+     * Get the interval of the storage engine sampling.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getStorageInterval() {
+        return storageInterval;
+    }
+
+    /**
+     * Get the page cache hit ratio below which the database is degraded.
+     *
+     * @return the minimum hit ratio between 0 and 1
+     */
+    public double getMinHitRatio() {
+        return minHitRatio;
+    }
+
+    /**
+     * Get the time since the last checkpoint above which the database is degraded.
+     *
+     * @return the maximum age in milliseconds, zero or negative value disables the threshold
+     */
+    public long getMaxCheckpointAge() {
+        return maxCheckpointAge;
+    }
+
+    /**
+     * Get the transaction log size above which the database is degraded.
+     *
+     * @return the maximum size in bytes, zero or negative value disables the threshold
+     */
+    public long getMaxLogSize() {
+        return maxLogSize;
+    }
+
+    /**
+     * Get whether the write canary is executed.
+     *
+     * @return {@code true} if the write canary is executed
+     */
+    public boolean isCanaryProbe() {
+        return canaryProbe;
+    }
+
+    /**
+     * Get the interval of the write canary.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getCanaryInterval() {
+        return canaryInterval;
+    }
+
+    /**
+     * Get the write canary latency above which the database is degraded.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getCanaryDegradedLatency() {
+        return canaryDegradedLatency;
+    }
+
+    /**
+     * Get the write canary latency above which the database is down.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getCanaryDownLatency() {
+        return canaryDownLatency;
+    }
+
+    /**
+     * Get whether the probes are guarded by a circuit breaker.
+     *
+     * @return {@code true} if the circuit breaker is enabled
+     */
+    public boolean isBreakerEnabled() {
+        return breakerEnabled;
+    }
+
+    /**
+     * Get the number of consecutive failures opening the circuit breaker.
+     *
+     * @return the number of failures
+     */
+    public int getBreakerFailures() {
+        return breakerFailures;
+    }
+
+    /**
+     * Get the initial time the circuit breaker stays open.
+     *
+     * @return the time in milliseconds
+     */
+    public long getBreakerBackoff() {
+        return breakerBackoff;
+    }
+
+    /**
+     * Get the maximum time the circuit breaker stays open.
+     *
+     * @return the time in milliseconds
+     */
+    public long getBreakerMaxBackoff() {
+        return breakerMaxBackoff;
+    }
+
+    /**
+     * Get the number of consecutive successes before a failing database is reported healthy.
+     *
+     * @return the number of successes
+     */
+    public int getBreakerRise() {
+        return breakerRise;
+    }
+
+    /**
+     * Get the number of consecutive failures before a healthy database is reported failing.
+     *
+     * @return the number of failures
+     */
+    public int getBreakerFall() {
+        return breakerFall;
+    }
+
+    /**
+     * Get the number of the probe results kept in the history of a database.
+     *
+     * @return the number of the results
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Get the interval of the heartbeats sent to the subscribers of the health events.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * Get the count-store assertions of the databases.
+     *
+     * @return the comma-separated assertions, empty to disable them
+     */
+    public String getCountAssertions() {
+        return countAssertions;
+    }
+
+    /**
+     * Get the interval of the count-store assertions.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getCountInterval() {
+        return countInterval;
+    }
+
+    /**
+     * Get the representative queries with latency objectives.
+     *
+     * @return the unmodifiable list of the queries
+     */
+    public List<SloQuery> getSloQueries() {
+        return sloQueries;
+    }
+
+    /**
+     * Get the interval of the representative queries.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getSloInterval() {
+        return sloInterval;
+    }
+
+    /**
+     * Get whether the JVM pressure is probed.
+     *
+     * @return {@code true} to probe the JVM pressure
+     */
+    public boolean isJvmProbe() {
+        return jvmProbe;
+    }
+
+    /**
+     * Get the interval of the JVM pressure samples.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getJvmInterval() {
+        return jvmInterval;
+    }
+
+    /**
+     * Get the sliding window of the garbage collection statistics.
+     *
+     * @return the window in milliseconds
+     */
+    public long getJvmWindow() {
+        return jvmWindow;
+    }
+
+    /**
+     * Get the longest garbage collection pause within the window above which the JVM is degraded.
+     *
+     * @return the pause in milliseconds, zero disables the check
+     */
+    public long getMaxGcPause() {
+        return maxGcPause;
+    }
+
+    /**
+     * Get the share of the window spent in garbage collection pauses above which the JVM is degraded.
+     *
+     * @return the ratio between 0 and 1
+     */
+    public double getMaxGcTimeRatio() {
+        return maxGcTimeRatio;
+    }
+
+    /**
+     * Get the old generation occupancy after garbage collection above which the JVM is degraded.
+     *
+     * @return the ratio between 0 and 1
+     */
+    public double getMaxOldGenRatio() {
+        return maxOldGenRatio;
+    }
+
+    /**
+     * Get the direct memory usage above which the JVM is degraded.
+     *
+     * @return the ratio between 0 and 1
+     */
+    public double getMaxDirectMemoryRatio() {
+        return maxDirectMemoryRatio;
+    }
+
+    /**
+     * Get whether the free space of the store volumes is probed.
+     *
+     * @return {@code true} to probe the store volumes
+     */
+    public boolean isDiskProbe() {
+        return diskProbe;
+    }
+
+    /**
+     * Get the interval of the store volume samples.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getDiskInterval() {
+        return diskInterval;
+    }
+
+    /**
+     * Get the share of the usable space of a volume below which the database is degraded.
+     *
+     * @return the ratio between 0 and 1
+     */
+    public double getDiskDegradedFreeRatio() {
+        return diskDegradedFreeRatio;
+    }
+
+    /**
+     * Get the share of the usable space of a volume below which the database is down.
+     *
+     * @return the ratio between 0 and 1
+     */
+    public double getDiskDownFreeRatio() {
+        return diskDownFreeRatio;
+    }
+
+    /**
+     * Get the estimated time until a volume is full below which the database is degraded.
+     *
+     * @return the time in milliseconds, zero disables the check
+     */
+    public long getDiskDegradedTimeToFull() {
+        return diskDegradedTimeToFull;
+    }
+
+    /**
+     * Get whether the active transactions are probed.
+     *
+     * @return {@code true} to probe the active transactions
+     */
+    public boolean isTransactionProbe() {
+        return transactionProbe;
+    }
+
+    /**
+     * Get the interval of the active transaction samples.
+     *
+     * @return the interval in milliseconds
+     */
+    public long getTransactionInterval() {
+        return transactionInterval;
+    }
+
+    /**
+     * Get the age of the oldest transaction above which the database is degraded.
+     *
+     * @return the age in milliseconds, zero disables the check
+     */
+    public long getMaxTransactionAge() {
+        return maxTransactionAge;
+    }
+
+    /**
+     * Get the number of the transactions waiting on locks above which the database is degraded.
+     *
+     * @return the number of the transactions, zero disables the check
+     */
+    public int getMaxLockWaiting() {
+        return maxLockWaiting;
+    }
+
+    /**
+     * Get the number of the oldest transactions reported.
+     *
+     * @return the number of the transactions
+     */
+    public int getTransactionTop() {
+        return transactionTop;
+    }
+
+    /**
+     * Get the maximum number of requests probing the databases at the same time, {@code 0} disables the limit.
+     *
+     * @return the maximum number of concurrent probing requests
+     */
+    public int getAdmissionMaxConcurrent() {
+        return admissionMaxConcurrent;
+    }
+
+    /**
+     * Get the number of probing requests a client is allowed per second, {@code 0} disables the limit.
+     *
+     * @return the allowed probing requests per second of a client
+     */
+    public double getAdmissionClientRate() {
+        return admissionClientRate;
+    }
+
+    /**
+     * Get the number of probing requests a client is allowed in a burst above its rate.
+     *
+     * @return the burst size of a client
+     */
+    public int getAdmissionClientBurst() {
+        return admissionClientBurst;
+    }
+
+    /**
+     * Get the maximum number of clients whose request rate is tracked.
+     *
+     * @return the maximum number of tracked clients
+     */
+    public int getAdmissionMaxClients() {
+        return admissionMaxClients;
+    }
+
+    /**
+     * Get the comma separated severity ordering of the status codes, starting with the most severe one.
+     *
+     * @return the severity ordering of the status codes
+     */
+    public String getSeverityOrder() {
+        return severityOrder;
+    }
+
+    /**
+     * Get the port of the HAProxy agent-check listener, {@code 0} disables the listener.
+     *
+     * @return the port of the agent-check listener
+     */
+    public int getAgentPort() {
+        return agentPort;
+    }
+
+    /**
+     * Get the address the HAProxy agent-check listener is bound to.
+     *
+     * @return the address of the agent-check listener
+     */
+    public String getAgentAddress() {
+        return agentAddress;
+    }
+
+    /**
+     * Get the name of the database reported by the HAProxy agent-check listener.
+     *
+     * @return the name of the reported database
+     */
+    public String getAgentDatabase() {
+        return agentDatabase;
+    }
+
+    /**
+     * Get the weight reported to HAProxy in percent while the database is degraded.
+     *
+     * @return the weight of a degraded database in percent
+     */
+    public int getAgentDegradedWeight() {
+        return agentDegradedWeight;
+    }
+
+    /**
+     * Get whether the Bolt connector is probed.
+     *
+     * @return {@code true} if the Bolt connector is probed
+     */
+    public boolean isBoltProbe() {
+        return boltProbe;
+    }
+
+    /**
+     * Get the interval of the Bolt handshake probes.
+     *
+     * @return the interval of the Bolt handshake probes in milliseconds
+     */
+    public long getBoltInterval() {
+        return boltInterval;
+    }
+
+    /**
+     * Get the timeout of the Bolt handshake probes.
+     *
+     * @return the timeout of the connect and of the handshake in milliseconds
+     */
+    public long getBoltTimeout() {
+        return boltTimeout;
+    }
+
+    /**
+     * Get the Bolt handshake latency above which the database is degraded.
+     *
+     * @return the handshake latency in milliseconds, {@code 0} disables the check
+     */
+    public long getBoltDegradedLatency() {
+        return boltDegradedLatency;
+    }
+
+    /**
+     * Get the maximum number of the pending notifications of a subscriber.
+     *
+     * @return the number of the notifications, a subscriber falling further behind is dropped
+     */
+    public int getEventQueueSize() {
+        return eventQueueSize;
+    }
+
+    /**
+     * Get the number of threads delivering the notifications of the subscribers.
+     *
+     * @return the number of threads
+     */
+    public int getNotifierThreads() {
+        return notifierThreads;
+    }
+
+    /**
+     * Get the maximum number of the subscribers of a database.
+     *
+     * @return the number of the subscribers
+     */
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    /**
+     * Get the number of threads executing the samplers.
+     *
+     * @return the number of threads
+     */
+    public int getSamplerThreads() {
+        return samplerThreads;
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a health probe with the time it was taken.
+ */
+public final class HealthSnapshot {
+
+    private final Health health;
+
+    private final long timestamp;
+
+    private final long nanoTime;
+
+    /**
+     * Create a new instance of {@link HealthSnapshot} taken at the current time.
+     *
+     * @param health
+     *         the result of the probe
+     */
+    public HealthSnapshot(final Health health) {
+        this.health = health;
+        this.timestamp = System.currentTimeMillis();
+        this.nanoTime = System.nanoTime();
+    }
+
+    /**
+     * Get the result of the probe.
+     *
+     * @return the health
+     */
+    public Health getHealth() {
+        return health;
+    }
+
+    /**
+     * Get the wall-clock time the snapshot was taken.
+     *
+     * @return the timestamp in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the age of the snapshot.
+     *
+     * @return the age in milliseconds
+     */
+    public long getAge() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime);
+    }
+
+    /**
+     * Check whether this snapshot was taken after the other one.
+     *
+     * @param other
+     *         the other snapshot, can be {@code null}
+     *
+     * @return {@code true} if this snapshot is newer
+     */
+    public boolean isNewerThan(final HealthSnapshot other) {
+        return other == null || nanoTime - other.nanoTime > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d ms)", health, getAge());
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+/**
+ * Subscriber of the status changes of a database.
+ * <p>
+ * The notifications of a subscriber are queued by the {@link HealthProbeEngine} and delivered in order by a notifier
+ * thread, so a slow subscriber does not delay the probes. A subscriber returning {@code false} is removed, and a
+ * subscriber falling behind by more than {@code labs.health.events.queue.size} notifications is dropped and closed.
+ */
+public interface HealthSubscriber {
+
+    /**
+     * Notify the subscriber about a new status of the database. It is also called with the current snapshot right
+     * after the subscription.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param snapshot
+     *         the snapshot with the new status
+     *
+     * @return {@code false} if the subscriber should be removed
+     */
+    boolean onHealth(String dbName, HealthSnapshot snapshot);
+
+    /**
+     * Notify the subscriber about the periodic heartbeat.
+     *
+     * @return {@code false} if the subscriber should be removed
+     */
+    boolean onHeartbeat();
+
+    /**
+     * Notify the subscriber that the engine was closed.
+     */
+    void onClose();
+
+}
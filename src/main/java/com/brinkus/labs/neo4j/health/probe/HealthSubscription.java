@@ -0,0 +1,170 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Bounded queue of the notifications of a {@link HealthSubscriber}.
+ * <p>
+ * The notifications are queued by the threads of the probe engine without blocking, and they are delivered in order
+ * by at most one thread of the notifier executor at a time. A subscriber that falls behind by more than the capacity
+ * of the queue is dropped, so a stalled client never holds the probe threads or the memory of the engine.
+ */
+final class HealthSubscription {
+
+    private final String dbName;
+
+    private final HealthSubscriber subscriber;
+
+    private final BlockingQueue<Predicate<HealthSubscriber>> events;
+
+    private final Executor executor;
+
+    private final AtomicBoolean scheduled;
+
+    private final AtomicBoolean closing;
+
+    private volatile boolean closed;
+
+    private HealthSnapshot latest;
+
+    /**
+     * Create a new instance of {@link HealthSubscription}.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param subscriber
+     *         the subscriber to notify
+     * @param capacity
+     *         the maximum number of the pending notifications
+     * @param executor
+     *         the executor delivering the notifications
+     */
+    HealthSubscription(
+            final String dbName,
+            final HealthSubscriber subscriber,
+            final int capacity,
+            final Executor executor
+    ) {
+        this.dbName = dbName;
+        this.subscriber = subscriber;
+        this.events = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.executor = executor;
+        this.scheduled = new AtomicBoolean();
+        this.closing = new AtomicBoolean();
+    }
+
+    /**
+     * Queue a new status of the database. A snapshot that is not newer than the latest queued one is skipped, so the
+     * subscriber does not receive the same status twice when a change is published while it subscribes.
+     *
+     * @param snapshot
+     *         the snapshot with the new status
+     *
+     * @return {@code false} if the subscription is closed or its queue is full
+     */
+    synchronized boolean onHealth(final HealthSnapshot snapshot) {
+        if (!snapshot.isNewerThan(latest)) {
+            return !closed;
+        }
+        latest = snapshot;
+        return offer(target -> target.onHealth(dbName, snapshot));
+    }
+
+    /**
+     * Queue a heartbeat.
+     *
+     * @return {@code false} if the subscription is closed or its queue is full
+     */
+    boolean onHeartbeat() {
+        return offer(HealthSubscriber::onHeartbeat);
+    }
+
+    /**
+     * Close the subscription. The pending notifications are discarded and the subscriber is notified about the close
+     * by the notifier executor.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        events.clear();
+        closing.set(true);
+        schedule();
+    }
+
+    /**
+     * Cancel the subscription without notifying the subscriber.
+     */
+    void cancel() {
+        closed = true;
+        events.clear();
+    }
+
+    private boolean offer(final Predicate<HealthSubscriber> event) {
+        if (closed || !events.offer(event)) {
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // the engine is closed
+                scheduled.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            Predicate<HealthSubscriber> event;
+            while (!closed && (event = events.poll()) != null) {
+                if (!deliver(event)) {
+                    cancel();
+                }
+            }
+            if (closing.compareAndSet(true, false)) {
+                subscriber.onClose();
+            }
+            scheduled.set(false);
+            // a notification could have been queued after the queue was found empty
+        } while ((closing.get() || !closed && !events.isEmpty()) && scheduled.compareAndSet(false, true));
+    }
+
+    private boolean deliver(final Predicate<HealthSubscriber> event) {
+        try {
+            return event.test(subscriber);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monitor of the garbage collection pauses and the memory occupancy of the JVM.
+ * <p>
+ * The monitor subscribes to the garbage collection notifications of the JVM instead of polling, and aggregates the
+ * pauses into the buckets of a sliding window when they happen. The occupancy of the heap and of the old generation is
+ * taken from the memory usage after the latest collection, so the garbage that is not collected yet does not count.
+ * The readers only read the preaggregated values, they never call the management beans of the collectors.
+ * <p>
+ * The cycles of the concurrent collectors are not pauses, so they are ignored.
+ */
+final class JvmPressureMonitor implements NotificationListener, AutoCloseable {
+
+    private static final int BUCKETS = 60;
+
+    private final long bucketMillis;
+
+    private final Set<String> heapPools;
+
+    private final Set<String> oldGenPools;
+
+    private final AtomicLongArray epochs;
+
+    private final AtomicLongArray maxPauses;
+
+    private final AtomicLongArray pauseTimes;
+
+    private final List<NotificationEmitter> emitters;
+
+    private final BufferPoolMXBean directPool;
+
+    private final long maxDirectMemory;
+
+    private final long maxHeap;
+
+    private volatile double heapRatio;
+
+    private volatile double oldGenRatio;
+
+    /**
+     * Create a new instance of {@link JvmPressureMonitor} for the memory pools of the JVM.
+     *
+     * @param window
+     *         the sliding window of the pause statistics in milliseconds
+     */
+    JvmPressureMonitor(final long window) {
+        this(window, ManagementFactory.getMemoryPoolMXBeans());
+    }
+
+    /**
+     * Create a new instance of {@link JvmPressureMonitor}.
+     *
+     * @param window
+     *         the sliding window of the pause statistics in milliseconds
+     * @param pools
+     *         the memory pools of the JVM
+     */
+    JvmPressureMonitor(final long window, final List<MemoryPoolMXBean> pools) {
+        this.bucketMillis = Math.max(1L, window / BUCKETS);
+        this.heapPools = new HashSet<>();
+        this.oldGenPools = new HashSet<>();
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+                String name = pool.getName().toLowerCase(Locale.ROOT);
+                if (name.contains("old") || name.contains("tenured")) {
+                    oldGenPools.add(pool.getName());
+                }
+            }
+        }
+        if (oldGenPools.isEmpty()) {
+            // the single generation collectors have a single heap pool
+            oldGenPools.addAll(heapPools);
+        }
+        this.epochs = new AtomicLongArray(BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            epochs.set(i, Long.MIN_VALUE);
+        }
+        this.maxPauses = new AtomicLongArray(BUCKETS);
+        this.pauseTimes = new AtomicLongArray(BUCKETS);
+        this.emitters = new ArrayList<>();
+        this.directPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .findFirst()
+                .orElse(null);
+        this.maxDirectMemory = maxDirectMemory();
+        this.maxHeap = Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Subscribe to the garbage collection notifications of the JVM.
+     */
+    void start() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                // not subscribed
+            }
+        }
+        emitters.clear();
+    }
+
+    @Override
+    public void handleNotification(final Notification notification, final Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        record(System.currentTimeMillis(), isPause(info.getGcName()) ? info.getGcInfo().getDuration() : 0L,
+                info.getGcInfo().getMemoryUsageAfterGc());
+    }
+
+    /**
+     * Record a garbage collection.
+     *
+     * @param now
+     *         the end of the collection in milliseconds since the epoch
+     * @param pause
+     *         the length of the pause in milliseconds, zero if the application was not paused
+     * @param usageAfterGc
+     *         the usage of the memory pools after the collection
+     */
+    synchronized void record(final long now, final long pause, final Map<String, MemoryUsage> usageAfterGc) {
+        long epoch = now / bucketMillis;
+        int index = (int) (epoch % BUCKETS);
+        if (epochs.get(index) != epoch) {
+            // the readers skip the bucket while it is reset
+            epochs.set(index, Long.MIN_VALUE);
+            maxPauses.set(index, 0L);
+            pauseTimes.set(index, 0L);
+            epochs.set(index, epoch);
+        }
+        maxPauses.set(index, Math.max(maxPauses.get(index), pause));
+        pauseTimes.addAndGet(index, pause);
+        heapRatio = ratio(usageAfterGc, heapPools, maxHeap, heapRatio);
+        oldGenRatio = ratio(usageAfterGc, oldGenPools, -1L, oldGenRatio);
+    }
+
+    /**
+     * Get the longest pause within the window.
+     *
+     * @param now
+     *         the current time in milliseconds since the epoch
+     *
+     * @return the pause in milliseconds
+     */
+    long getMaxPause(final long now) {
+        long oldest = now / bucketMillis - BUCKETS + 1;
+        long result = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            long epoch = epochs.get(i);
+            long value = maxPauses.get(i);
+            if (epoch >= oldest && epochs.get(i) == epoch) {
+                result = Math.max(result, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the total length of the pauses within the window.
+     *
+     * @param now
+     *         the current time in milliseconds since the epoch
+     *
+     * @return the total pause time in milliseconds
+     */
+    long getPauseTime(final long now) {
+        long oldest = now / bucketMillis - BUCKETS + 1;
+        long result = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            long epoch = epochs.get(i);
+            long value = pauseTimes.get(i);
+            if (epoch >= oldest && epochs.get(i) == epoch) {
+                result += value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the length of the sliding window.
+     *
+     * @return the window in milliseconds
+     */
+    long getWindow() {
+        return bucketMillis * BUCKETS;
+    }
+
+    /**
+     * Get the heap occupancy after the latest collection.
+     *
+     * @return the ratio of the used and the maximum heap, zero before the first collection
+     */
+    double getHeapRatio() {
+        return heapRatio;
+    }
+
+    /**
+     * Get the old generation occupancy after the latest collection.
+     *
+     * @return the ratio of the used and the maximum old generation, zero before the first collection
+     */
+    double getOldGenRatio() {
+        return oldGenRatio;
+    }
+
+    /**
+     * Get the used direct memory.
+     *
+     * @return the used direct memory in bytes, -1 if it is not known
+     */
+    long getDirectMemory() {
+        return directPool != null ? directPool.getMemoryUsed() : -1L;
+    }
+
+    /**
+     * Get the maximum direct memory.
+     *
+     * @return the maximum direct memory in bytes
+     */
+    long getMaxDirectMemory() {
+        return maxDirectMemory;
+    }
+
+    private static double ratio(
+            final Map<String, MemoryUsage> usage,
+            final Set<String> pools,
+            final long total,
+            final double previous
+    ) {
+        long used = 0L;
+        long max = 0L;
+        boolean found = false;
+        for (String pool : pools) {
+            MemoryUsage value = usage.get(pool);
+            if (value != null) {
+                found = true;
+                used += value.getUsed();
+                max += value.getMax() >= 0 ? value.getMax() : value.getCommitted();
+            }
+        }
+        if (total > 0) {
+            // the young generation pools of some collectors have no maximum of their own
+            max = total;
+        }
+        return found && max > 0 ? (double) used / max : previous;
+    }
+
+    private static boolean isPause(final String gcName) {
+        // ConcurrentMarkSweep, ZGC, Shenandoah Cycles and G1 Concurrent GC report concurrent cycles
+        return !gcName.contains("Concurrent") && !gcName.contains("Cycles") && !"ZGC".equals(gcName);
+    }
+
+    private static long maxDirectMemory() {
+        try {
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (diagnostic != null) {
+                long value = Long.parseLong(diagnostic.getVMOption("MaxDirectMemorySize").getValue());
+                if (value > 0) {
+                    return value;
+                }
+            }
+        } catch (RuntimeException e) {
+            // not a HotSpot JVM
+        }
+        // the default limit of the direct memory is the maximum heap
+        return Runtime.getRuntime().maxMemory();
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sampler of the pressure on the JVM hosting the databases: garbage collection pauses, heap and old generation
+ * occupancy after collection and direct memory usage.
+ * <p>
+ * Long pauses and an exhausted heap stop every database of the JVM, so the same result is added to the result of
+ * every database. The sampler only reads the values preaggregated by the {@link JvmPressureMonitor}, and the database
+ * is reported as {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DEGRADED} if any value exceeds its limit.
+ */
+final class JvmPressureSampler implements HealthSampler {
+
+    private static final String NAME = "jvm";
+
+    private final HealthSettings settings;
+
+    private final JvmPressureMonitor monitor;
+
+    /**
+     * Create a new instance of {@link JvmPressureSampler} subscribing to the garbage collection notifications.
+     *
+     * @param settings
+     *         the settings containing the window and the limits
+     */
+    JvmPressureSampler(final HealthSettings settings) {
+        this(settings, new JvmPressureMonitor(settings.getJvmWindow()));
+        monitor.start();
+    }
+
+    /**
+     * Create a new instance of {@link JvmPressureSampler}.
+     *
+     * @param settings
+     *         the settings containing the window and the limits
+     * @param monitor
+     *         the monitor of the JVM
+     */
+    JvmPressureSampler(final HealthSettings settings, final JvmPressureMonitor monitor) {
+        this.settings = settings;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getJvmInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        long now = System.currentTimeMillis();
+        long maxPause = monitor.getMaxPause(now);
+        double pauseRatio = (double) monitor.getPauseTime(now) / monitor.getWindow();
+        double oldGenRatio = monitor.getOldGenRatio();
+        long directMemory = monitor.getDirectMemory();
+        double directMemoryRatio = directMemory >= 0 ? (double) directMemory / monitor.getMaxDirectMemory() : 0.0;
+
+        List<String> degraded = new ArrayList<>();
+        if (settings.getMaxGcPause() > 0 && maxPause > settings.getMaxGcPause()) {
+            degraded.add("Garbage collection pause is above " + settings.getMaxGcPause() + " ms");
+        }
+        if (pauseRatio > settings.getMaxGcTimeRatio()) {
+            degraded.add("Garbage collection time ratio is above " + settings.getMaxGcTimeRatio());
+        }
+        if (oldGenRatio > settings.getMaxOldGenRatio()) {
+            degraded.add("Old generation occupancy after collection is above " + settings.getMaxOldGenRatio());
+        }
+        if (directMemoryRatio > settings.getMaxDirectMemoryRatio()) {
+            degraded.add("Direct memory usage is above " + settings.getMaxDirectMemoryRatio());
+        }
+
+        Health.Builder builder = new Health.Builder()
+                .withDetail("maxGcPause", maxPause)
+                .withDetail("gcTimeRatio", pauseRatio)
+                .withDetail("heapAfterGc", monitor.getHeapRatio())
+                .withDetail("oldGenAfterGc", oldGenRatio)
+                .withDetail("directMemory", directMemory)
+                .withDetail("directMemoryRatio", directMemoryRatio);
+        if (degraded.isEmpty()) {
+            return builder.up().build();
+        }
+        return builder.degraded()
+                .withDetail("degraded", degraded)
+                .build();
+    }
+
+    @Override
+    public void close() {
+        monitor.close();
+    }
+
+}
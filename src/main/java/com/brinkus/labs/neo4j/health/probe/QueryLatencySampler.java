@@ -0,0 +1,166 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampler executing the representative {@link SloQuery queries} of the databases and comparing their latency to their
+ * objectives.
+ * <p>
+ * A database can be available and still too slow to serve its traffic, so it is reported as
+ * {@link HealthStatusCode#DEGRADED} if a query is slower than its limit or does not finish within the timeout, and as
+ * {@link HealthStatusCode#DOWN} if a query fails. The first execution of a query after the start of the engine or of
+ * the database also plans the query and loads its pages, so it is executed as a warm-up and reported separately as
+ * {@code warmupLatency}, and only the following execution is compared to the limit.
+ * <p>
+ * Only read queries are executed. The type of a query is checked with {@code EXPLAIN} before its warm-up, and a query
+ * that could write is reported as {@link HealthStatusCode#DOWN} without being executed. The transactions of the
+ * queries are never committed.
+ */
+final class QueryLatencySampler implements HealthSampler {
+
+    private static final String NAME = "slo";
+
+    private static final String EXPLAIN = "EXPLAIN ";
+
+    private final HealthSettings settings;
+
+    private final StatusAggregator aggregator;
+
+    private final ConcurrentMap<String, Set<String>> warm;
+
+    /**
+     * Create a new instance of {@link QueryLatencySampler}.
+     *
+     * @param settings
+     *         the settings containing the queries and their interval
+     * @param aggregator
+     *         the aggregator of the status codes of the queries
+     */
+    QueryLatencySampler(final HealthSettings settings, final StatusAggregator aggregator) {
+        this.settings = settings;
+        this.aggregator = aggregator;
+        this.warm = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getSloInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        boolean system = GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(dbName);
+        Set<String> warmed = warm.computeIfAbsent(dbName, name -> ConcurrentHashMap.newKeySet());
+        HealthStatusCode code = null;
+        Health.Builder builder = new Health.Builder();
+        for (SloQuery query : settings.getSloQueries()) {
+            if (query.getDatabase() != null ? !query.getDatabase().equals(dbName) : system) {
+                continue;
+            }
+            Health health = sample(service, query, warmed);
+            builder.withDetail(query.getName(), health);
+            code = code != null ? aggregator.worst(code, health.getStatus().getCode()) : health.getStatus().getCode();
+        }
+        if (code == null) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "No SLO queries for the database.")
+                    .build();
+        }
+        return builder.status(code).build();
+    }
+
+    @Override
+    public void forget(final String dbName) {
+        warm.remove(dbName);
+    }
+
+    private Health sample(final GraphDatabaseService service, final SloQuery query, final Set<String> warmed) {
+        Health.Builder builder = new Health.Builder().up();
+        try {
+            if (!warmed.contains(query.getName())) {
+                QueryExecutionType.QueryType type = explain(service, query);
+                if (type != QueryExecutionType.QueryType.READ_ONLY) {
+                    return builder.down()
+                            .withDetail("description", "Neo4j query is not read-only!")
+                            .withDetail("queryType", type.name())
+                            .build();
+                }
+                builder.withDetail("warmupLatency", TimeUnit.NANOSECONDS.toMillis(execute(service, query)));
+                warmed.add(query.getName());
+            }
+            long latency = TimeUnit.NANOSECONDS.toMillis(execute(service, query));
+            if (latency > query.getDegradedLatency()) {
+                builder.degraded()
+                        .withDetail("description", "Neo4j query was too slow!");
+            }
+            return builder.withDetail("latency", latency)
+                    .withDetail("limit", query.getDegradedLatency())
+                    .build();
+        } catch (Exception e) {
+            if (HealthProbe.isTimeout(e)) {
+                return builder.degraded()
+                        .withDetail("description", "Neo4j query timed out!")
+                        .withDetail("timedOut", true)
+                        .withDetail("timeout", settings.getTimeout())
+                        .build();
+            }
+            return builder.down()
+                    .withDetail("description", "Neo4j query failed!")
+                    .withException(e)
+                    .build();
+        }
+    }
+
+    private QueryExecutionType.QueryType explain(final GraphDatabaseService service, final SloQuery query) {
+        // the query is only planned, so a write query is rejected without taking any locks
+        try (Transaction transaction = service.beginTx(settings.getTimeout(), TimeUnit.MILLISECONDS);
+                Result result = transaction.execute(EXPLAIN + query.getQuery(), query.getParameters())) {
+            return result.getQueryExecutionType().queryType();
+        }
+    }
+
+    private long execute(final GraphDatabaseService service, final SloQuery query) {
+        long start = System.nanoTime();
+        try (Transaction transaction = service.beginTx(settings.getTimeout(), TimeUnit.MILLISECONDS);
+                Result result = transaction.execute(query.getQuery(), query.getParameters())) {
+            // the results are consumed, as the rows are produced lazily
+            result.accept(row -> true);
+        }
+        return System.nanoTime() - start;
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Representative read query with its latency objective.
+ * <p>
+ * The query is executed with its parameters, so every execution reuses the same cached execution plan, and the
+ * database is reported as {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DEGRADED} if its latency exceeds
+ * the configured limit.
+ */
+public final class SloQuery {
+
+    /**
+     * Builder for creating immutable {@link SloQuery} instances.
+     */
+    public static class Builder {
+
+        private String name;
+
+        private String query;
+
+        private Map<String, Object> parameters;
+
+        private long degradedLatency;
+
+        private String database;
+
+        /**
+         * Create new Builder instance.
+         */
+        public Builder() {
+            this.parameters = Collections.emptyMap();
+            this.degradedLatency = DEFAULT_DEGRADED_LATENCY;
+        }
+
+        /**
+         * Set the name of the query, used as the key of its detail.
+         *
+         * @param name
+         *         the name of the query
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Set the Cypher query.
+         *
+         * @param query
+         *         the read-only Cypher query using parameters
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withQuery(String query) {
+            this.query = query;
+            return this;
+        }
+
+        /**
+         * Set the parameters of the query.
+         *
+         * @param parameters
+         *         the parameters
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withParameters(Map<String, Object> parameters) {
+            this.parameters = parameters;
+            return this;
+        }
+
+        /**
+         * Set the latency above which the database is degraded.
+         *
+         * @param degradedLatency
+         *         the latency in milliseconds
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDegradedLatency(long degradedLatency) {
+            this.degradedLatency = degradedLatency;
+            return this;
+        }
+
+        /**
+         * Set the database of the query.
+         *
+         * @param database
+         *         the name of the database, {@code null} to execute the query on every database except
+         *         {@code system}
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder withDatabase(String database) {
+            this.database = database;
+            return this;
+        }
+
+        /**
+         * Create a new {@link SloQuery} instance with the previously specified values.
+         *
+         * @return a new {@link SloQuery} instance
+         */
+        public SloQuery build() {
+            if (name == null || query == null) {
+                throw new IllegalArgumentException("The name and the query of an SLO query are mandatory.");
+            }
+            return new SloQuery(this);
+        }
+    }
+
+    /**
+     * The default latency above which the database is degraded.
+     */
+    public static final long DEFAULT_DEGRADED_LATENCY = 100L;
+
+    private final String name;
+
+    private final String query;
+
+    private final Map<String, Object> parameters;
+
+    private final long degradedLatency;
+
+    private final String database;
+
+    private SloQuery(Builder builder) {
+        this.name = builder.name;
+        this.query = builder.query;
+        this.parameters = Collections.unmodifiableMap(new HashMap<>(builder.parameters));
+        this.degradedLatency = builder.degradedLatency;
+        this.database = builder.database;
+    }
+
+    /**
+     * Get the name of the query.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the Cypher query.
+     *
+     * @return the query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Get the parameters of the query.
+     *
+     * @return the unmodifiable parameters
+     */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Get the latency above which the database is degraded.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getDegradedLatency() {
+        return degradedLatency;
+    }
+
+    /**
+     * Get the database of the query.
+     *
+     * @return the name of the database, {@code null} if the query is executed on every database except
+     *         {@code system}
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregates multiple status codes into a single one using a severity ordering.
+ */
+public class StatusAggregator {
+
+    /**
+     * The default severity ordering, starting with the most severe status code.
+     */
+    public static final List<HealthStatusCode> DEFAULT_ORDER = Arrays.asList(
+            HealthStatusCode.DOWN,
+            HealthStatusCode.OUT_OF_SERVICE,
+            HealthStatusCode.UNKNOWN,
+            HealthStatusCode.DEGRADED,
+            HealthStatusCode.UP
+    );
+
+    private final int[] severity;
+
+    /**
+     * Create a new instance of {@link StatusAggregator} with the default severity ordering.
+     */
+    public StatusAggregator() {
+        this(DEFAULT_ORDER);
+    }
+
+    /**
+     * Create a new instance of {@link StatusAggregator}.
+     *
+     * @param order
+     *         the severity ordering starting with the most severe status code, the missing codes are treated as the
+     *         least severe ones
+     */
+    public StatusAggregator(final List<HealthStatusCode> order) {
+        this.severity = new int[HealthStatusCode.values().length];
+        Arrays.fill(this.severity, order.size());
+        for (int i = order.size() - 1; i >= 0; i--) {
+            this.severity[order.get(i).ordinal()] = i;
+        }
+    }
+
+    /**
+     * Parse a comma separated severity ordering, e.g. {@code DOWN,OUT_OF_SERVICE,UNKNOWN,DEGRADED,UP}.
+     *
+     * @param order
+     *         the names of the status codes starting with the most severe one
+     *
+     * @return the severity ordering
+     *
+     * @throws IllegalArgumentException
+     *         if a name is not a status code
+     */
+    public static List<HealthStatusCode> parse(final String order) {
+        List<HealthStatusCode> codes = new ArrayList<>();
+        for (String name : order.split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty()) {
+                codes.add(HealthStatusCode.valueOf(trimmed));
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Get the more severe of the two status codes.
+     *
+     * @param first
+     *         the first status code
+     * @param second
+     *         the second status code
+     *
+     * @return the more severe status code, or the first one if they are equally severe
+     */
+    public HealthStatusCode worst(final HealthStatusCode first, final HealthStatusCode second) {
+        return severity[second.ordinal()] < severity[first.ordinal()] ? second : first;
+    }
+
+    /**
+     * Aggregate the given status codes.
+     *
+     * @param codes
+     *         the status codes
+     *
+     * @return the most severe status code, or {@link HealthStatusCode#UNKNOWN} if there are no status codes
+     */
+    public HealthStatusCode aggregate(final Iterable<HealthStatusCode> codes) {
+        HealthStatusCode result = null;
+        for (HealthStatusCode code : codes) {
+            result = result == null ? code : worst(result, code);
+        }
+        return result != null ? result : HealthStatusCode.UNKNOWN;
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.common.DependencyResolver;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointer;
+import org.neo4j.kernel.impl.transaction.log.files.LogFile;
+import org.neo4j.kernel.impl.transaction.log.files.LogFiles;
+import org.neo4j.kernel.impl.transaction.log.files.checkpoint.CheckpointInfo;
+import org.neo4j.kernel.impl.transaction.stats.CheckpointCounters;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.storageengine.api.TransactionIdStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampler of the storage engine internals: page cache, checkpoints and transaction log.
+ * <p>
+ * The values are read from the monitors of the database, and the database is reported as
+ * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DEGRADED} if any of them exceeds its threshold. The page
+ * cache is shared by the databases of the DBMS, so its hit ratio and evictions are the same for every database. The
+ * hit ratio is calculated over the sampling interval, and it is checked only if the page cache was accessed enough to
+ * make it meaningful.
+ */
+final class StorageSampler implements HealthSampler {
+
+    /**
+     * The state of a database kept between the samples.
+     */
+    private static final class State {
+
+        private long hits;
+
+        private long faults;
+
+        private long evictions;
+
+        private long checkpoints;
+
+        private long checkpointTime;
+
+        private long checkpointLogVersion = -1L;
+    }
+
+    private static final String NAME = "storage";
+
+    private static final long MIN_PAGE_CACHE_ACCESSES = 100L;
+
+    private final HealthSettings settings;
+
+    private final ConcurrentMap<String, State> states;
+
+    /**
+     * Create a new instance of {@link StorageSampler}.
+     *
+     * @param settings
+     *         the settings containing the sampling interval and the thresholds
+     */
+    StorageSampler(final HealthSettings settings) {
+        this.settings = settings;
+        this.states = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getStorageInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        if (!(service instanceof GraphDatabaseAPI)) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "Storage engine internals are not available!")
+                    .build();
+        }
+        DependencyResolver resolver = ((GraphDatabaseAPI) service).getDependencyResolver();
+        long now = System.nanoTime();
+        State state = states.get(dbName);
+        boolean first = state == null;
+        if (first) {
+            state = new State();
+            states.put(dbName, state);
+        }
+
+        List<String> degraded = new ArrayList<>();
+        Health.Builder builder = new Health.Builder();
+
+        PageCacheCounters pageCache = resolver.resolveDependency(PageCacheCounters.class);
+        long hits = pageCache.hits() - state.hits;
+        long faults = pageCache.faults() - state.faults;
+        long evictions = pageCache.evictions() - state.evictions;
+        state.hits += hits;
+        state.faults += faults;
+        state.evictions += evictions;
+        double hitRatio = hits + faults > 0 ? (double) hits / (hits + faults) : pageCache.hitRatio();
+        builder.withDetail("pageCacheHitRatio", hitRatio)
+                .withDetail("pageCacheEvictions", evictions);
+        if (hits + faults >= MIN_PAGE_CACHE_ACCESSES && hitRatio < settings.getMinHitRatio()) {
+            degraded.add("Page cache hit ratio is below " + settings.getMinHitRatio());
+        }
+
+        long lastCommitted = resolver.resolveDependency(TransactionIdStore.class).getLastCommittedTransactionId();
+        long lastCheckpointed = resolver.resolveDependency(CheckPointer.class).lastCheckPointedTransactionId();
+        long checkpoints = resolver.resolveDependency(CheckpointCounters.class).numberOfCheckPoints();
+        LogFiles logFiles = resolver.resolveDependency(LogFiles.class);
+        if (first || checkpoints != state.checkpoints) {
+            // the time of the checkpoint is known only with the precision of the sampling interval, and the first
+            // sample is treated as a checkpoint
+            state.checkpointTime = now;
+            state.checkpoints = checkpoints;
+            state.checkpointLogVersion = checkpointLogVersion(logFiles);
+        }
+        long checkpointAge = TimeUnit.NANOSECONDS.toMillis(now - state.checkpointTime);
+        builder.withDetail("lastCommittedTxId", lastCommitted)
+                .withDetail("lastCheckpointedTxId", lastCheckpointed)
+                .withDetail("checkpointAge", checkpointAge);
+        if (settings.getMaxCheckpointAge() > 0 && checkpointAge > settings.getMaxCheckpointAge()
+                && lastCommitted > lastCheckpointed) {
+            degraded.add("No checkpoint in " + checkpointAge + " ms");
+        }
+
+        long logSize = 0L;
+        for (Path file : logFiles.logFiles()) {
+            logSize += size(file);
+        }
+        LogFile logFile = logFiles.getLogFile();
+        long lowestVersion = logFile.getLowestLogVersion();
+        long prunableVersion = state.checkpointLogVersion >= 0 ? state.checkpointLogVersion : lowestVersion;
+        builder.withDetail("logSize", logSize)
+                .withDetail("logFiles", logFile.getHighestLogVersion() - lowestVersion + 1)
+                .withDetail("pruningLag", Math.max(0L, prunableVersion - lowestVersion));
+        if (settings.getMaxLogSize() > 0 && logSize > settings.getMaxLogSize()) {
+            degraded.add("Transaction log size is above " + settings.getMaxLogSize() + " bytes");
+        }
+
+        if (degraded.isEmpty()) {
+            return builder.up().build();
+        }
+        return builder.degraded()
+                .withDetail("degraded", degraded)
+                .build();
+    }
+
+    @Override
+    public void forget(final String dbName) {
+        states.remove(dbName);
+    }
+
+    /**
+     * Get the version of the log file containing the latest checkpoint. The log files before it can be pruned.
+     */
+    private static long checkpointLogVersion(final LogFiles logFiles) {
+        try {
+            Optional<CheckpointInfo> checkpoint = logFiles.getCheckpointFile().findLatestCheckpoint();
+            return checkpoint.isPresent() ? checkpoint.get().getTransactionLogPosition().getLogVersion() : -1L;
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    private static long size(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            // the file was pruned since it was listed
+            return 0L;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.api.KernelTransactionHandle;
+import org.neo4j.kernel.api.query.ExecutingQuery;
+import org.neo4j.kernel.impl.api.KernelTransactions;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Sampler of the active transactions of a database.
+ * <p>
+ * A runaway transaction holding locks makes the database unresponsive while the health check query still succeeds,
+ * so the sampler reports the age of the oldest transaction, the number of the transactions whose query is waiting on
+ * a lock, and the oldest transactions. The transactions are read from the kernel without any query or lock, only the
+ * configured number of the oldest ones is kept, and the database is reported as
+ * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DEGRADED} if a value exceeds its limit.
+ */
+final class TransactionSampler implements HealthSampler {
+
+    private static final String NAME = "transactions";
+
+    private static final Comparator<Offender> BY_AGE = Comparator.comparingLong(offender -> offender.age);
+
+    private final HealthSettings settings;
+
+    /**
+     * Create a new instance of {@link TransactionSampler}.
+     *
+     * @param settings
+     *         the settings containing the interval and the limits
+     */
+    TransactionSampler(final HealthSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getTransactionInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        if (!(service instanceof GraphDatabaseAPI)) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "Active transactions are not available!")
+                    .build();
+        }
+        KernelTransactions transactions = ((GraphDatabaseAPI) service).getDependencyResolver()
+                .resolveDependency(KernelTransactions.class);
+        long now = System.currentTimeMillis();
+        long nanos = System.nanoTime();
+        int top = Math.max(0, settings.getTransactionTop());
+        // the youngest of the kept transactions is at the head, so the queue never grows above the limit
+        PriorityQueue<Offender> oldest = new PriorityQueue<>(top + 1, BY_AGE);
+        int active = 0;
+        int waiting = 0;
+        long oldestAge = 0L;
+        for (KernelTransactionHandle handle : transactions.activeTransactions()) {
+            if (!handle.isOpen() || handle.isClosing()) {
+                continue;
+            }
+            active++;
+            long age = Math.max(0L, now - handle.startTime());
+            oldestAge = Math.max(oldestAge, age);
+            boolean lockWait = isWaitingOnLock(handle, nanos);
+            if (lockWait) {
+                waiting++;
+            }
+            if (top > 0 && (oldest.size() < top || age > oldest.peek().age)) {
+                oldest.add(new Offender(handle, age, lockWait));
+                if (oldest.size() > top) {
+                    oldest.poll();
+                }
+            }
+        }
+
+        List<Offender> offenders = new ArrayList<>(oldest);
+        offenders.sort(BY_AGE.reversed());
+        List<Map<String, Object>> details = new ArrayList<>(offenders.size());
+        for (Offender offender : offenders) {
+            details.add(offender.toMap());
+        }
+
+        List<String> degraded = new ArrayList<>();
+        if (settings.getMaxTransactionAge() > 0 && oldestAge > settings.getMaxTransactionAge()) {
+            degraded.add("Oldest transaction is older than " + settings.getMaxTransactionAge() + " ms");
+        }
+        if (settings.getMaxLockWaiting() > 0 && waiting > settings.getMaxLockWaiting()) {
+            degraded.add("More than " + settings.getMaxLockWaiting() + " transactions are waiting on locks");
+        }
+
+        Health.Builder builder = new Health.Builder()
+                .withDetail("active", active)
+                .withDetail("oldestAge", oldestAge)
+                .withDetail("waitingOnLocks", waiting)
+                .withDetail("oldest", details);
+        if (degraded.isEmpty()) {
+            return builder.up().build();
+        }
+        return builder.degraded()
+                .withDetail("degraded", degraded)
+                .build();
+    }
+
+    /**
+     * Check whether the query of the transaction is waiting on a lock. The waiting time of the query includes the
+     * current wait, which is not reported yet.
+     */
+    private static boolean isWaitingOnLock(final KernelTransactionHandle handle, final long nanos) {
+        Optional<ExecutingQuery> query = handle.executingQuery();
+        return query.isPresent() && query.get().totalWaitingTimeNanos(nanos) > query.get().reportedWaitingTimeNanos();
+    }
+
+    private static final class Offender {
+
+        private final String id;
+
+        private final long age;
+
+        private final boolean waiting;
+
+        private final String queryId;
+
+        private Offender(final KernelTransactionHandle handle, final long age, final boolean waiting) {
+            this.id = handle.getUserTransactionName();
+            this.age = age;
+            this.waiting = waiting;
+            this.queryId = handle.executingQuery().map(ExecutingQuery::id).orElse(null);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("age", age);
+            map.put("waitingOnLock", waiting);
+            if (queryId != null) {
+                map.put("queryId", queryId);
+            }
+            return map;
+        }
+
+    }
+
+}
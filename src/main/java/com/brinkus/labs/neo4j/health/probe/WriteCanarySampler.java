@@ -0,0 +1,119 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sampler writing a dedicated marker node to check the write path of a database.
+ * <p>
+ * The read-only health check does not notice a full disk or a stuck transaction log, so the canary updates a single
+ * {@value #LABEL} node and measures the latency of the write and of the commit separately. The commit includes
+ * appending and forcing the transaction log, so its latency is bound by the fsync of the disk. The database is
+ * reported as {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DEGRADED} or
+ * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DOWN} if the latency exceeds the configured limits, and as
+ * {@link com.brinkus.labs.neo4j.health.type.HealthStatusCode#DOWN} if the write fails.
+ * <p>
+ * The canary is executed only by its own schedule, so the number of writes does not depend on the number of requests.
+ */
+final class WriteCanarySampler implements HealthSampler {
+
+    private static final String NAME = "canary";
+
+    static final String LABEL = "HealthCanary";
+
+    private static final String CANARY_CYPHER = "MERGE (n:" + LABEL + " {id: $id}) SET n.updated = $updated";
+
+    private static final String CANARY_ID = "neo4j-health-check";
+
+    private final HealthSettings settings;
+
+    /**
+     * Create a new instance of {@link WriteCanarySampler}.
+     *
+     * @param settings
+     *         the settings containing the canary interval and the latency limits
+     */
+    WriteCanarySampler(final HealthSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getInterval() {
+        return settings.getCanaryInterval();
+    }
+
+    @Override
+    public Health sample(final String dbName, final GraphDatabaseService service) {
+        if (GraphDatabaseSettings.SYSTEM_DATABASE_NAME.equals(dbName)) {
+            return new Health.Builder().unknown()
+                    .withDetail("description", "The system database is not written by the canary.")
+                    .build();
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", CANARY_ID);
+        parameters.put("updated", System.currentTimeMillis());
+
+        long start = System.nanoTime();
+        long writeLatency;
+        long commitLatency;
+        try (Transaction transaction = service.beginTx(settings.getTimeout(), TimeUnit.MILLISECONDS)) {
+            transaction.execute(CANARY_CYPHER, parameters).close();
+            long commitStart = System.nanoTime();
+            writeLatency = commitStart - start;
+            transaction.commit();
+            commitLatency = System.nanoTime() - commitStart;
+        } catch (Exception e) {
+            return new Health.Builder().down()
+                    .withDetail("description", "Neo4j write canary failed!")
+                    .withDetail("latency", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                    .withException(e)
+                    .build();
+        }
+
+        long latency = TimeUnit.NANOSECONDS.toMillis(writeLatency + commitLatency);
+        Health.Builder builder = new Health.Builder().up();
+        if (latency > settings.getCanaryDownLatency()) {
+            builder.down()
+                    .withDetail("description", "Neo4j write canary was too slow!")
+                    .withDetail("limit", settings.getCanaryDownLatency());
+        } else if (latency > settings.getCanaryDegradedLatency()) {
+            builder.degraded()
+                    .withDetail("description", "Neo4j write canary was too slow!")
+                    .withDetail("limit", settings.getCanaryDegradedLatency());
+        }
+        return builder.withDetail("latency", latency)
+                .withDetail("writeLatency", TimeUnit.NANOSECONDS.toMillis(writeLatency))
+                .withDetail("commitLatency", TimeUnit.NANOSECONDS.toMillis(commitLatency))
+                .build();
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.brinkus.labs.neo4j.health.procedure;
+
+import com.brinkus.labs.neo4j.health.probe.HealthProbeEngine;
+import com.brinkus.labs.neo4j.health.probe.HealthSettings;
+import com.brinkus.labs.neo4j.health.probe.HealthSnapshot;
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * Procedures to get the health status of the databases over Bolt.
+ * <p>
+ * The procedures are served from the same {@link HealthProbeEngine} as the REST endpoints, so they return the same
+ * results from the same snapshots, and they do not probe the databases more often. The details of every distinct
+ * result are converted to Cypher values only once.
+ * <p>
+ * The engine is resolved from the dependencies of the database, so the procedures have to be allowed with
+ * {@code dbms.security.procedures.unrestricted=health.*}.
+ */
+public class HealthProcedures {
+
+    /**
+     * The health status of a database.
+     */
+    public static class HealthResult {
+
+        /**
+         * The name of the database.
+         */
+        public final String database;
+
+        /**
+         * The status code.
+         */
+        public final String status;
+
+        /**
+         * The details of the status.
+         */
+        public final Map<String, Object> details;
+
+        /**
+         * The age of the snapshot in milliseconds.
+         */
+        public final long age;
+
+        private HealthResult(
+                final String database,
+                final String status,
+                final Map<String, Object> details,
+                final long age
+        ) {
+            this.database = database;
+            this.status = status;
+            this.details = details;
+            this.age = age;
+        }
+
+    }
+
+    private static final class Converted {
+
+        private final Health health;
+
+        private final Map<String, Object> details;
+
+        private Converted(final Health health, final Map<String, Object> details) {
+            this.health = health;
+            this.details = details;
+        }
+
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> DETAILS = new TypeReference<Map<String, Object>>() {
+    };
+
+    private static final ConcurrentMap<String, Converted> CONVERTED = new ConcurrentHashMap<>();
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    /**
+     * Get the health status of a database, using the configured staleness limit and timeout.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return a single row with the health status of the database
+     */
+    @Procedure(name = "health.check", mode = Mode.READ)
+    @Description("health.check(dbName) - returns the health status of the database")
+    public Stream<HealthResult> check(@Name("dbName") final String dbName) {
+        HealthSnapshot snapshot = engine().snapshot(dbName);
+        return Stream.of(result(dbName, snapshot));
+    }
+
+    /**
+     * Get the health status of every database of the DBMS. The databases are probed in parallel, using the configured
+     * staleness limit and timeout.
+     *
+     * @return a row with the health status of every database
+     */
+    @Procedure(name = "health.all", mode = Mode.READ)
+    @Description("health.all() - returns the health status of every database")
+    public Stream<HealthResult> all() {
+        HealthProbeEngine engine = engine();
+        HealthSettings settings = engine.getSettings();
+        return engine.snapshots(engine.databases(), settings.getMaxStaleness(), settings.getTimeout())
+                .entrySet()
+                .stream()
+                .map(entry -> result(entry.getKey(), entry.getValue()));
+    }
+
+    private HealthProbeEngine engine() {
+        return HealthProbeEngine.of(db.getDependencyResolver().resolveDependency(DatabaseManagementService.class));
+    }
+
+    private static HealthResult result(final String dbName, final HealthSnapshot snapshot) {
+        Health health = snapshot.getHealth();
+        return new HealthResult(dbName, health.getStatus().getCode().name(), details(dbName, health),
+                snapshot.getAge());
+    }
+
+    private static Map<String, Object> details(final String dbName, final Health health) {
+        Converted converted = CONVERTED.get(dbName);
+        if (converted == null || converted.health != health) {
+            converted = new Converted(health,
+                    Collections.unmodifiableMap(MAPPER.convertValue(health.getDetails(), DETAILS)));
+            CONVERTED.put(dbName, converted);
+        }
+        return converted.details;
+    }
+
+}
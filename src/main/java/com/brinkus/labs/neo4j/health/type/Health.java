@@ -22,12 +22,20 @@ import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonUnwrapped;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Health information with the status code and details.
+ * <p>
+ * The details are stored in small parallel key and value arrays in insertion order, and exposed as an unmodifiable
+ * {@link Map} view only when requested.
  */
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 public final class Health {
@@ -37,16 +45,23 @@ public final class Health {
      */
     public static class Builder {
 
+        private static final int INITIAL_CAPACITY = 4;
+
         private HealthStatus status;
 
-        private Map<String, Object> details;
+        private String[] keys;
+
+        private Object[] values;
+
+        private int size;
 
         /**
          * Create new Builder instance.
          */
         public Builder() {
             this.status = HealthStatus.UNKNOWN;
-            this.details = new LinkedHashMap<>();
+            this.keys = new String[INITIAL_CAPACITY];
+            this.values = new Object[INITIAL_CAPACITY];
         }
 
         /**
@@ -72,7 +87,18 @@ public final class Health {
          * @return this {@link Builder} instance
          */
         public Builder withDetail(String key, Object data) {
-            this.details.put(key, data);
+            int index = indexOf(this.keys, this.size, key);
+            if (index >= 0) {
+                this.values[index] = data;
+                return this;
+            }
+            if (this.size == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.keys[this.size] = key;
+            this.values[this.size] = data;
+            this.size++;
             return this;
         }
 
@@ -94,6 +120,15 @@ public final class Health {
             return status(HealthStatus.UP);
         }
 
+        /**
+         * Set status to {@link HealthStatus#DEGRADED}.
+         *
+         * @return this {@link Builder} instance
+         */
+        public Builder degraded() {
+            return status(HealthStatus.DEGRADED);
+        }
+
         /**
          * Set status to {@link HealthStatus#DOWN}.
          *
@@ -121,7 +156,7 @@ public final class Health {
          * @return this {@link Builder} instance
          */
         public Builder status(HealthStatusCode statusCode) {
-            return status(new HealthStatus(statusCode));
+            return status(HealthStatus.valueOf(statusCode));
         }
 
         /**
@@ -148,9 +183,19 @@ public final class Health {
         }
     }
 
+    private static final String[] NO_KEYS = new String[0];
+
+    private static final Object[] NO_VALUES = new Object[0];
+
     private final HealthStatus status;
 
-    private final Map<String, Object> details;
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final int hashCode;
+
+    private Map<String, Object> details;
 
     /**
      * Create a new {@link Health} instance with the specified status and details.
@@ -160,7 +205,9 @@ public final class Health {
      */
     private Health(Builder builder) {
         this.status = builder.status;
-        this.details = Collections.unmodifiableMap(builder.details);
+        this.keys = builder.size == 0 ? NO_KEYS : Arrays.copyOf(builder.keys, builder.size);
+        this.values = builder.size == 0 ? NO_VALUES : Arrays.copyOf(builder.values, builder.size);
+        this.hashCode = 19 * this.status.hashCode() + detailsHashCode(this.keys, this.values);
     }
 
     /**
@@ -176,11 +223,49 @@ public final class Health {
     /**
      * Return the details of the health.
      *
-     * @return the details (or an empty map)
+     * @return the unmodifiable details (or an empty map)
      */
     @JsonAnyGetter
     public Map<String, Object> getDetails() {
-        return this.details;
+        Map<String, Object> view = this.details;
+        if (view == null) {
+            view = new DetailsView();
+            this.details = view;
+        }
+        return view;
+    }
+
+    /**
+     * Return the number of the details.
+     *
+     * @return the number of the details
+     */
+    int getDetailCount() {
+        return this.keys.length;
+    }
+
+    /**
+     * Return the key of a detail.
+     *
+     * @param index
+     *         the index of the detail in insertion order
+     *
+     * @return the key of the detail
+     */
+    String getDetailKey(int index) {
+        return this.keys[index];
+    }
+
+    /**
+     * Return the value of a detail.
+     *
+     * @param index
+     *         the index of the detail in insertion order
+     *
+     * @return the value of the detail
+     */
+    Object getDetailValue(int index) {
+        return this.values[index];
     }
 
     @Override
@@ -190,15 +275,24 @@ public final class Health {
         }
         if (obj != null && obj instanceof Health) {
             Health other = (Health) obj;
-            return this.status.equals(other.status) && this.details.equals(other.details);
+            if (this.hashCode != other.hashCode || !this.status.equals(other.status)
+                    || this.keys.length != other.keys.length) {
+                return false;
+            }
+            for (int i = 0; i < this.keys.length; i++) {
+                int index = indexOf(other.keys, other.keys.length, this.keys[i]);
+                if (index < 0 || !Objects.equals(this.values[i], other.values[index])) {
+                    return false;
+                }
+            }
+            return true;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        int hashCode = this.status.hashCode();
-        return 19 * hashCode + this.details.hashCode();
+        return this.hashCode;
     }
 
     @Override
@@ -206,4 +300,85 @@ public final class Health {
         return String.format("%s %s", getStatus(), getDetails());
     }
 
+    private static int indexOf(String[] keys, int size, String key) {
+        for (int i = 0; i < size; i++) {
+            if (Objects.equals(keys[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as {@link Map#hashCode()} of the details, so it is independent of the insertion order.
+     */
+    private static int detailsHashCode(String[] keys, Object[] values) {
+        int hashCode = 0;
+        for (int i = 0; i < keys.length; i++) {
+            hashCode += Objects.hashCode(keys[i]) ^ Objects.hashCode(values[i]);
+        }
+        return hashCode;
+    }
+
+    /**
+     * Unmodifiable {@link Map} view of the details.
+     */
+    private final class DetailsView extends AbstractMap<String, Object> {
+
+        private Set<Entry<String, Object>> entries;
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && indexOf(keys, keys.length, (String) key) >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = key instanceof String ? indexOf(keys, keys.length, (String) key) : -1;
+            return index >= 0 ? values[index] : null;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Set<Entry<String, Object>> set = this.entries;
+            if (set == null) {
+                set = new AbstractSet<Entry<String, Object>>() {
+                    @Override
+                    public Iterator<Entry<String, Object>> iterator() {
+                        return new Iterator<Entry<String, Object>>() {
+                            private int index;
+
+                            @Override
+                            public boolean hasNext() {
+                                return index < keys.length;
+                            }
+
+                            @Override
+                            public Entry<String, Object> next() {
+                                if (index >= keys.length) {
+                                    throw new NoSuchElementException();
+                                }
+                                Entry<String, Object> entry = new SimpleImmutableEntry<>(keys[index], values[index]);
+                                index++;
+                                return entry;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return keys.length;
+                    }
+                };
+                this.entries = set;
+            }
+            return set;
+        }
+    }
+
 }
@@ -0,0 +1,282 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.type;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Streaming JSON writer of the {@link Health} instances.
+ * <p>
+ * The output is the same as the Jackson serialization of the annotated {@link Health} class, but it is written
+ * directly to the stream without reflection or intermediate objects. The values of unsupported types are delegated to
+ * Jackson.
+ */
+public final class HealthJsonWriter {
+
+    private static final ObjectMapper FALLBACK = new ObjectMapper();
+
+    private static final byte[] STATUS = "{\"status\":".getBytes();
+
+    private static final byte[] NULL = "null".getBytes();
+
+    private static final byte[] TRUE = "true".getBytes();
+
+    private static final byte[] FALSE = "false".getBytes();
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private HealthJsonWriter() {
+    }
+
+    /**
+     * Serialize the given health.
+     *
+     * @param health
+     *         the health to serialize
+     *
+     * @return the serialized health
+     *
+     * @throws JsonProcessingException
+     *         if a detail value could not be serialized
+     */
+    public static byte[] toBytes(final Health health) throws JsonProcessingException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(128);
+        try {
+            write(health, stream);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Write the given health to the stream.
+     *
+     * @param health
+     *         the health to write
+     * @param stream
+     *         the output stream, it is neither flushed nor closed
+     *
+     * @throws IOException
+     *         if an error occurred during the write
+     */
+    public static void write(final Health health, final OutputStream stream) throws IOException {
+        stream.write(STATUS);
+        HealthStatusCode code = health.getStatus().getCode();
+        if (code != null) {
+            writeString(code.name(), stream);
+        } else {
+            stream.write(NULL);
+        }
+        for (int i = 0; i < health.getDetailCount(); i++) {
+            stream.write(',');
+            writeString(health.getDetailKey(i), stream);
+            stream.write(':');
+            writeValue(health.getDetailValue(i), stream);
+        }
+        stream.write('}');
+    }
+
+    private static void writeValue(final Object value, final OutputStream stream) throws IOException {
+        if (value == null) {
+            stream.write(NULL);
+        } else if (value instanceof String) {
+            writeString((String) value, stream);
+        } else if (value instanceof Boolean) {
+            stream.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue(), stream);
+        } else if (value instanceof Double || value instanceof Float) {
+            writeDouble((Number) value, stream);
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            writeAscii(value.toString(), stream);
+        } else if (value instanceof Health) {
+            write((Health) value, stream);
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value, stream);
+        } else if (value instanceof Iterable) {
+            writeIterable((Iterable<?>) value, stream);
+        } else if (value instanceof Object[]) {
+            writeArray((Object[]) value, stream);
+        } else if (value instanceof Enum) {
+            writeString(((Enum<?>) value).name(), stream);
+        } else {
+            stream.write(FALLBACK.writeValueAsBytes(value));
+        }
+    }
+
+    private static void writeMap(final Map<?, ?> map, final OutputStream stream) throws IOException {
+        stream.write('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                stream.write(',');
+            }
+            first = false;
+            Object key = entry.getKey();
+            writeString(key instanceof Enum ? ((Enum<?>) key).name() : String.valueOf(key), stream);
+            stream.write(':');
+            writeValue(entry.getValue(), stream);
+        }
+        stream.write('}');
+    }
+
+    private static void writeIterable(final Iterable<?> iterable, final OutputStream stream) throws IOException {
+        stream.write('[');
+        boolean first = true;
+        for (Object value : iterable) {
+            if (!first) {
+                stream.write(',');
+            }
+            first = false;
+            writeValue(value, stream);
+        }
+        stream.write(']');
+    }
+
+    private static void writeArray(final Object[] array, final OutputStream stream) throws IOException {
+        stream.write('[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                stream.write(',');
+            }
+            writeValue(array[i], stream);
+        }
+        stream.write(']');
+    }
+
+    private static void writeDouble(final Number value, final OutputStream stream) throws IOException {
+        double number = value.doubleValue();
+        String text = value instanceof Float ? Float.toString(value.floatValue()) : Double.toString(number);
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            // non-numeric numbers are quoted like by Jackson
+            stream.write('"');
+            writeAscii(text, stream);
+            stream.write('"');
+        } else {
+            writeAscii(text, stream);
+        }
+    }
+
+    private static void writeLong(final long value, final OutputStream stream) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            stream.write(MIN_LONG);
+            return;
+        }
+        long number = value;
+        if (number < 0) {
+            stream.write('-');
+            number = -number;
+        }
+        long divisor = 1L;
+        while (number / divisor >= 10L) {
+            divisor *= 10L;
+        }
+        while (divisor > 0L) {
+            stream.write((int) ('0' + number / divisor % 10L));
+            divisor /= 10L;
+        }
+    }
+
+    private static void writeAscii(final String text, final OutputStream stream) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            stream.write(text.charAt(i));
+        }
+    }
+
+    private static void writeString(final String text, final OutputStream stream) throws IOException {
+        stream.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                writeAsciiChar(c, stream);
+            } else if (c < 0x800) {
+                stream.write(0xC0 | (c >> 6));
+                stream.write(0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // surrogates are escaped like by Jackson instead of being encoded as a four byte sequence
+                writeEscape(c, stream);
+            } else {
+                stream.write(0xE0 | (c >> 12));
+                stream.write(0x80 | ((c >> 6) & 0x3F));
+                stream.write(0x80 | (c & 0x3F));
+            }
+        }
+        stream.write('"');
+    }
+
+    private static void writeAsciiChar(final char c, final OutputStream stream) throws IOException {
+        switch (c) {
+            case '"':
+            case '\\':
+                stream.write('\\');
+                stream.write(c);
+                break;
+            case '\n':
+                stream.write('\\');
+                stream.write('n');
+                break;
+            case '\r':
+                stream.write('\\');
+                stream.write('r');
+                break;
+            case '\t':
+                stream.write('\\');
+                stream.write('t');
+                break;
+            case '\b':
+                stream.write('\\');
+                stream.write('b');
+                break;
+            case '\f':
+                stream.write('\\');
+                stream.write('f');
+                break;
+            default:
+                if (c < 0x20) {
+                    writeEscape(c, stream);
+                } else {
+                    stream.write(c);
+                }
+        }
+    }
+
+    private static void writeEscape(final char c, final OutputStream stream) throws IOException {
+        stream.write('\\');
+        stream.write('u');
+        stream.write(HEX[c >> 12]);
+        stream.write(HEX[(c >> 8) & 0xF]);
+        stream.write(HEX[(c >> 4) & 0xF]);
+        stream.write(HEX[c & 0xF]);
+    }
+
+}
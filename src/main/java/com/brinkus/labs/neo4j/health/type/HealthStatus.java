@@ -35,6 +35,11 @@ public final class HealthStatus {
      */
     public static final HealthStatus UP = new HealthStatus(HealthStatusCode.UP);
 
+    /**
+     * Convenient constant value representing degraded state.
+     */
+    public static final HealthStatus DEGRADED = new HealthStatus(HealthStatusCode.DEGRADED);
+
     /**
      * Convenient constant value representing down state.
      */
@@ -45,6 +50,14 @@ public final class HealthStatus {
      */
     public static final HealthStatus OUT_OF_SERVICE = new HealthStatus(HealthStatusCode.OUT_OF_SERVICE);
 
+    private static final HealthStatus[] VALUES = new HealthStatus[HealthStatusCode.values().length];
+
+    static {
+        for (HealthStatus status : new HealthStatus[] {UP, DEGRADED, DOWN, OUT_OF_SERVICE, UNKNOWN}) {
+            VALUES[status.code.ordinal()] = status;
+        }
+    }
+
     /**
      * The status code of the server.
      */
@@ -61,6 +74,19 @@ public final class HealthStatus {
         this.code = code;
     }
 
+    /**
+     * Get the shared instance of the given status code.
+     *
+     * @param code
+     *         the status code
+     *
+     * @return the shared {@link HealthStatus} instance
+     */
+    public static HealthStatus valueOf(final HealthStatusCode code) {
+        HealthStatus status = code != null ? VALUES[code.ordinal()] : null;
+        return status != null ? status : new HealthStatus(code);
+    }
+
     /**
      * Get the status code.
      *
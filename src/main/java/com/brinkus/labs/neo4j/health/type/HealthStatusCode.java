@@ -28,6 +28,11 @@ public enum HealthStatusCode {
      */
     UP("UP"),
 
+    /**
+     * The server is up and running, but some of its internals exceeded their thresholds.
+     */
+    DEGRADED("DEGRADED"),
+
     /**
      * The server is down.
      */
@@ -0,0 +1,182 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.unmanaged;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthJsonWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the serialized {@link Health} entities.
+ * <p>
+ * The health of a database rarely changes between the polls, so every distinct {@link Health} value is serialized only
+ * once and served with a strong entity tag derived from its content.
+ */
+class HealthEntityCache {
+
+    /**
+     * Serialized health entity with its entity tag.
+     */
+    static final class Entry {
+
+        private final byte[] body;
+
+        private final String etag;
+
+        private volatile byte[] event;
+
+        private Entry(final byte[] body, final String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        /**
+         * Get the serialized entity. The returned array must not be modified.
+         *
+         * @return the serialized entity
+         */
+        byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Get the entity as a server-sent event. The returned array must not be modified.
+         *
+         * @return the serialized event
+         */
+        byte[] getEvent() {
+            byte[] result = event;
+            if (result == null) {
+                byte[] data = "data: ".getBytes(StandardCharsets.UTF_8);
+                result = new byte[EVENT.length + data.length + body.length + 2];
+                System.arraycopy(EVENT, 0, result, 0, EVENT.length);
+                System.arraycopy(data, 0, result, EVENT.length, data.length);
+                System.arraycopy(body, 0, result, EVENT.length + data.length, body.length);
+                result[result.length - 2] = '\n';
+                result[result.length - 1] = '\n';
+                event = result;
+            }
+            return result;
+        }
+
+        /**
+         * Get the quoted strong entity tag.
+         *
+         * @return the entity tag
+         */
+        String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Check whether the value of an {@code If-None-Match} header matches the entity tag. Weak comparison is
+         * used as required for {@code If-None-Match}.
+         *
+         * @param ifNoneMatch
+         *         the header value, can be {@code null}
+         *
+         * @return {@code true} if the client already has the entity
+         */
+        boolean matches(final String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String value = tag.trim();
+                if (value.equals("*")) {
+                    return true;
+                }
+                if (value.startsWith("W/")) {
+                    value = value.substring(2);
+                }
+                if (value.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final int MAX_ENTRIES = 256;
+
+    private static final byte[] EVENT = "event: health\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int ETAG_BYTES = 12;
+
+    private final ConcurrentMap<Health, Entry> entries;
+
+    /**
+     * Create a new instance of {@link HealthEntityCache}.
+     */
+    HealthEntityCache() {
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the serialized entity of the given health.
+     *
+     * @param health
+     *         the health to serialize
+     *
+     * @return the cached or the newly serialized entity
+     *
+     * @throws JsonProcessingException
+     *         if an error occurred during the entity serialization.
+     */
+    Entry get(final Health health) throws JsonProcessingException {
+        Entry entry = entries.get(health);
+        if (entry != null) {
+            return entry;
+        }
+        byte[] body = HealthJsonWriter.toBytes(health);
+        entry = new Entry(body, etag(body));
+        if (entries.size() >= MAX_ENTRIES) {
+            // the details of a failing database can change on every probe, keep the memory bounded
+            entries.clear();
+        }
+        Entry existing = entries.putIfAbsent(health, entry);
+        return existing != null ? existing : entry;
+    }
+
+    private static String etag(final byte[] body) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        char[] chars = new char[ETAG_BYTES * 2 + 2];
+        chars[0] = '"';
+        for (int i = 0; i < ETAG_BYTES; i++) {
+            chars[2 * i + 1] = HEX[(digest[i] >> 4) & 0xf];
+            chars[2 * i + 2] = HEX[digest[i] & 0xf];
+        }
+        chars[chars.length - 1] = '"';
+        return new String(chars);
+    }
+
+}
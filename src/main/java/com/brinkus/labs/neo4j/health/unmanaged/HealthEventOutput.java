@@ -0,0 +1,90 @@
+/*
+ * Health Check Plugin for Neo4j
+ * Copyright (C) 2016  Balazs Brinkus
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.brinkus.labs.neo4j.health.unmanaged;
+
+import com.brinkus.labs.neo4j.health.probe.HealthSnapshot;
+import com.brinkus.labs.neo4j.health.probe.HealthSubscriber;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server-sent event stream of the status changes of a database.
+ * <p>
+ * The events are written by the notifier threads of the probe engine, the stream does not hold a thread of its own
+ * while it is idle. The serialized events are cached by the {@link HealthEntityCache}, so every subscriber gets the
+ * same bytes.
+ */
+final class HealthEventOutput extends ChunkedOutput<byte[]> implements HealthSubscriber {
+
+    private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final HealthEntityCache entities;
+
+    /**
+     * Create a new instance of {@link HealthEventOutput}.
+     *
+     * @param entities
+     *         the cache of the serialized entities
+     */
+    HealthEventOutput(final HealthEntityCache entities) {
+        super(byte[].class);
+        this.entities = entities;
+    }
+
+    @Override
+    public boolean onHealth(final String dbName, final HealthSnapshot snapshot) {
+        try {
+            return send(entities.get(snapshot.getHealth()).getEvent());
+        } catch (IOException e) {
+            onClose();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean onHeartbeat() {
+        return send(HEARTBEAT);
+    }
+
+    @Override
+    public void onClose() {
+        try {
+            close();
+        } catch (IOException e) {
+            // the client is already gone
+        }
+    }
+
+    private boolean send(final byte[] chunk) {
+        if (isClosed()) {
+            return false;
+        }
+        try {
+            write(chunk);
+            return true;
+        } catch (IOException e) {
+            // the client disconnected
+            onClose();
+            return false;
+        }
+    }
+
+}
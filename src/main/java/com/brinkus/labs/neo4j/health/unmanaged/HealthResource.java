@@ -18,24 +18,38 @@
 
 package com.brinkus.labs.neo4j.health.unmanaged;
 
+import com.brinkus.labs.neo4j.health.metrics.DatabaseMetrics;
+import com.brinkus.labs.neo4j.health.metrics.PrometheusWriter;
+import com.brinkus.labs.neo4j.health.probe.AdmissionController;
+import com.brinkus.labs.neo4j.health.probe.HealthProbeEngine;
+import com.brinkus.labs.neo4j.health.probe.HealthSettings;
+import com.brinkus.labs.neo4j.health.probe.HealthSnapshot;
 import com.brinkus.labs.neo4j.health.type.Health;
 import com.brinkus.labs.neo4j.health.type.HealthStatus;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.neo4j.dbms.api.DatabaseManagementService;
-import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.Result;
-import org.neo4j.graphdb.ResultTransformer;
 
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * Un-managed REST endpoint to execute query and set health status of the instance.
@@ -43,22 +57,73 @@ import javax.ws.rs.core.Response;
 @Path("/health")
 public class HealthResource {
 
-    private static final long TIMEOUT = 1000L;
+    private static final String AGE_HEADER = "Age";
 
-    private static final String PING_CYPHER = "MATCH (n) RETURN count(*) as count";
+    private static final String SNAPSHOT_AGE_HEADER = "X-Health-Snapshot-Age";
 
-    private final ObjectMapper mapper;
+    private static final String NO_CACHE = "no-cache";
+
+    private static final String WARNING_HEADER = "Warning";
+
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    private static final long RETRY_AFTER = 1L;
+
+    private static final HealthEntityCache ENTITIES = new HealthEntityCache();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final byte[] LIVE = "{\"status\":\"UP\"}".getBytes(StandardCharsets.UTF_8);
 
     private final DatabaseManagementService dbms;
 
+    @Context
+    private HttpServletRequest request;
+
     public HealthResource(@Context DatabaseManagementService dbms) {
         assert(dbms != null);
         this.dbms = dbms;
-        this.mapper = new ObjectMapper();
+    }
+
+    /**
+     * Get the health status using the configured staleness limit.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the REST endpoint's response containing the {@link HealthStatus} entity.
+     *
+     * @throws JsonProcessingException
+     *         if an error occurred during the entity serialization.
+     */
+    public Response health(final String dbName) throws JsonProcessingException {
+        return health(dbName, null, null, null);
     }
 
     /**
      * REST endpoint to get the health status.
+     * <p>
+     * The status is served from the latest snapshot of the background probe, unless it is older than the
+     * {@code maxStaleness} limit. The health check never takes longer than the {@code timeout}, the database is
+     * reported as {@code UNKNOWN} with a {@code timedOut} detail if the probe does not finish in time. The probe runs
+     * with the configured timeout, so a shorter {@code timeout} does not change the result seen by the other callers. The response
+     * carries a strong entity tag, and {@code 304 Not Modified} is returned without a body if it matches the
+     * {@code If-None-Match} header of the request.
+     * <p>
+     * A request which has to probe the database is subject to admission control: there is a global limit on the
+     * requests probing at the same time, and a per-client rate limit keyed by the remote address. A rejected request
+     * gets the latest snapshot with a {@code Warning: 110} (stale) header instead of probing, or
+     * {@code 429 Too Many Requests} if the database was not probed yet.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param maxStaleness
+     *         the maximum age of the snapshot in milliseconds, the configured value is used if not specified
+     * @param timeout
+     *         the time to wait for the health check in milliseconds, at most the configured timeout, which is used if
+     *         not specified or not positive
+     * @param ifNoneMatch
+     *         the entity tags already known by the client
      *
      * @return the REST endpoint's response containing the {@link HealthStatus} entity.
      *
@@ -68,49 +133,344 @@ public class HealthResource {
     @GET
     @Path("/{dbName}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response health(@PathParam("dbName") final String dbName) throws JsonProcessingException {
-        Health health = healthCheck(dbms.database(dbName));
-        byte[] entity = mapper.writeValueAsBytes(health);
-        return Response.ok()
-                .type(MediaType.APPLICATION_JSON_TYPE)
-                .entity(entity)
+    public Response health(
+            @PathParam("dbName") final String dbName,
+            @QueryParam("maxStaleness") final Long maxStaleness,
+            @QueryParam("timeout") final Long timeout,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch
+    ) throws JsonProcessingException {
+        return single(dbName, maxStaleness, timeout, ifNoneMatch, false);
+    }
+
+    /**
+     * REST endpoint for readiness probes.
+     * <p>
+     * It executes the same health check as {@link #health(String, Long, Long, String)}, but responds with
+     * {@code 503 Service Unavailable} if the status is neither {@code UP} nor {@code DEGRADED}. The
+     * {@code If-None-Match} header is ignored for a {@code 503} response, so it always carries the body.
+     *
+     * @param dbName
+     *         the name of the database
+     * @param maxStaleness
+     *         the maximum age of the snapshot in milliseconds, the configured value is used if not specified
+     * @param timeout
+     *         the time to wait for the health check in milliseconds, at most the configured timeout, which is used if
+     *         not specified or not positive
+     * @param ifNoneMatch
+     *         the entity tags already known by the client
+     *
+     * @return the REST endpoint's response containing the {@link HealthStatus} entity.
+     *
+     * @throws JsonProcessingException
+     *         if an error occurred during the entity serialization.
+     */
+    @GET
+    @Path("/{dbName}/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response ready(
+            @PathParam("dbName") final String dbName,
+            @QueryParam("maxStaleness") final Long maxStaleness,
+            @QueryParam("timeout") final Long timeout,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch
+    ) throws JsonProcessingException {
+        return single(dbName, maxStaleness, timeout, ifNoneMatch, true);
+    }
+
+    /**
+     * REST endpoint for liveness probes.
+     * <p>
+     * The response is a pre-encoded constant, it does not touch the databases and does not allocate. The path starts
+     * with an underscore, which is not allowed in database names, so it does not hide a database.
+     *
+     * @return the serialized {@code UP} status
+     */
+    @GET
+    @Path("/_live")
+    @Produces(MediaType.APPLICATION_JSON)
+    public byte[] live() {
+        return LIVE;
+    }
+
+    /**
+     * REST endpoint to get the aggregated health status of multiple databases.
+     * <p>
+     * The databases are probed in parallel and the overall status is the most severe status of the databases, using
+     * the configured severity ordering. The
+     * request is subject to the same admission control as {@link #health(String, Long, Long, String)}.
+     *
+     * @param databases
+     *         the comma separated names of the databases, all databases of the DBMS are checked if not specified
+     * @param maxStaleness
+     *         the maximum age of the snapshots in milliseconds, the configured value is used if not specified
+     * @param timeout
+     *         the time to wait for the health check of every database in milliseconds, at most the configured
+     *         timeout, which is used if not specified or not positive
+     * @param ifNoneMatch
+     *         the entity tags already known by the client
+     *
+     * @return the REST endpoint's response containing the aggregated {@link HealthStatus} entity.
+     *
+     * @throws JsonProcessingException
+     *         if an error occurred during the entity serialization.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response aggregate(
+            @QueryParam("db") final String databases,
+            @QueryParam("maxStaleness") final Long maxStaleness,
+            @QueryParam("timeout") final Long timeout,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch
+    ) throws JsonProcessingException {
+        HealthProbeEngine engine = engine();
+        HealthSettings settings = engine.getSettings();
+        long staleness = maxStaleness != null ? maxStaleness : settings.getMaxStaleness();
+        long deadline = timeout != null ? timeout : settings.getTimeout();
+        List<String> dbNames = databases != null ? split(databases) : engine.databases();
+
+        Map<String, HealthSnapshot> snapshots = latest(engine, dbNames);
+        boolean stale = false;
+        if (snapshots == null || !fresh(snapshots, staleness)) {
+            AdmissionController admission = engine.getAdmission();
+            if (admit(admission)) {
+                try {
+                    snapshots = engine.snapshots(dbNames, staleness, deadline);
+                } finally {
+                    admission.release();
+                }
+            } else if (snapshots == null) {
+                return tooManyRequests();
+            } else {
+                stale = true;
+            }
+        }
+
+        long age = 0L;
+        List<HealthStatusCode> codes = new ArrayList<>(snapshots.size());
+        Map<String, Health> details = new LinkedHashMap<>();
+        for (Map.Entry<String, HealthSnapshot> entry : snapshots.entrySet()) {
+            Health health = entry.getValue().getHealth();
+            age = Math.max(age, entry.getValue().getAge());
+            codes.add(health.getStatus().getCode());
+            details.put(entry.getKey(), health);
+        }
+
+        Health health = new Health.Builder()
+                .status(engine.getAggregator().aggregate(codes))
+                .withDetail("databases", details)
+                .build();
+        return respond(Response.Status.OK, health, age, ifNoneMatch, stale);
+    }
+
+    /**
+     * REST endpoint to get the latencies and results of the health probes in the Prometheus text format.
+     *
+     * @return the REST endpoint's response streaming the metrics
+     */
+    @GET
+    @Path("/_metrics")
+    @Produces(PrometheusWriter.CONTENT_TYPE)
+    public Response metrics() {
+        StreamingOutput output = stream -> PrometheusWriter.write(engine().getMetrics(), stream);
+        return Response.ok(output, PrometheusWriter.CONTENT_TYPE)
+                .header(HttpHeaders.CACHE_CONTROL, NO_CACHE)
+                .build();
+    }
+
+    /**
+     * REST endpoint streaming the status changes of a database as server-sent events.
+     * <p>
+     * The current status is sent right away, then an event is sent only when the status changes, and a comment line
+     * is sent periodically as a heartbeat. The events are pushed by the background probes, so the number of the
+     * subscribers does not change the load on the database, and they are written by a fixed number of notifier threads.
+     * A database accepts at most {@code labs.health.events.max.subscribers} subscribers, the others get
+     * {@code 429 Too Many Requests}. A subscription which has to probe the database is subject to the same admission
+     * control as {@link #health(String, Long, Long, String)}: a rejected client gets the latest snapshot as its first
+     * event without probing, or {@code 429 Too Many Requests} if the database was not probed yet.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the REST endpoint's response streaming the {@code health} events, or {@code 429 Too Many Requests} if
+     *         the database has too many subscribers or the request is not admitted
+     */
+    @GET
+    @Path("/{dbName}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public Response events(@PathParam("dbName") final String dbName) {
+        HealthEventOutput output = new HealthEventOutput(ENTITIES);
+        HealthProbeEngine engine = engine();
+        HealthSnapshot snapshot = engine.latest(dbName);
+        boolean subscribed;
+        if (snapshot == null || snapshot.getAge() > engine.getSettings().getMaxStaleness()) {
+            AdmissionController admission = engine.getAdmission();
+            if (admit(admission)) {
+                try {
+                    subscribed = engine.subscribe(dbName, output);
+                } finally {
+                    admission.release();
+                }
+            } else if (snapshot == null) {
+                return tooManyRequests();
+            } else {
+                // the latest snapshot is sent without probing
+                subscribed = engine.subscribe(dbName, output, Long.MAX_VALUE);
+            }
+        } else {
+            subscribed = engine.subscribe(dbName, output, Long.MAX_VALUE);
+        }
+        if (!subscribed) {
+            return tooManyRequests();
+        }
+        return Response.ok(output, MediaType.SERVER_SENT_EVENTS_TYPE)
+                .header(HttpHeaders.CACHE_CONTROL, NO_CACHE)
+                .build();
+    }
+
+    /**
+     * REST endpoint to get the recent probe results of a database.
+     * <p>
+     * The response contains the kept results from the oldest to the newest, the percentage of the available results
+     * and the latency percentiles of the probes, calculated on every request.
+     *
+     * @param dbName
+     *         the name of the database
+     *
+     * @return the REST endpoint's response containing the history, or {@code 404 Not Found} if the database was not
+     *         probed yet
+     *
+     * @throws JsonProcessingException
+     *         if an error occurred during the entity serialization.
+     */
+    @GET
+    @Path("/{dbName}/history")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response history(@PathParam("dbName") final String dbName) throws JsonProcessingException {
+        DatabaseMetrics metrics = engine().getMetrics().find(dbName);
+        if (metrics == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(MAPPER.writeValueAsBytes(metrics.getHistory().window()), MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.CACHE_CONTROL, NO_CACHE)
                 .build();
     }
 
-    private Health healthCheck(GraphDatabaseService service) {
-        try {
-            assert(service != null);
+    /**
+     * Get the probe engine. It is resolved only by the routes using it, so the liveness route does not depend on it.
+     */
+    private HealthProbeEngine engine() {
+        return HealthProbeEngine.of(dbms);
+    }
 
-            if (!service.isAvailable(TIMEOUT)) {
-                return new Health.Builder().down()
-                        .withDetail("description", "Neo4j health check result was invalid!")
-                        .build();
+    private Response single(
+            final String dbName,
+            final Long maxStaleness,
+            final Long timeout,
+            final String ifNoneMatch,
+            final boolean readiness
+    ) throws JsonProcessingException {
+        HealthProbeEngine engine = engine();
+        HealthSettings settings = engine.getSettings();
+        long staleness = maxStaleness != null ? maxStaleness : settings.getMaxStaleness();
+        HealthSnapshot snapshot = engine.latest(dbName);
+        boolean stale = false;
+        if (snapshot == null || snapshot.getAge() > staleness) {
+            AdmissionController admission = engine.getAdmission();
+            if (admit(admission)) {
+                try {
+                    snapshot = engine.snapshot(dbName, staleness, timeout != null ? timeout : settings.getTimeout());
+                } finally {
+                    admission.release();
+                }
+            } else if (snapshot == null) {
+                return tooManyRequests();
+            } else {
+                stale = true;
             }
+        }
 
-            Long count = service.executeTransactionally(PING_CYPHER, Collections.emptyMap(), new CountResultTransformer());
-            assert(count != null);
+        Health health = snapshot.getHealth();
+        HealthStatusCode code = health.getStatus().getCode();
+        Response.Status status = !readiness || code == HealthStatusCode.UP || code == HealthStatusCode.DEGRADED
+                ? Response.Status.OK
+                : Response.Status.SERVICE_UNAVAILABLE;
+        return respond(status, health, snapshot.getAge(), ifNoneMatch, stale);
+    }
 
-            if (count == 0) {
-                return new Health.Builder().outOfService()
-                        .withDetail("description", "Neo4j has no available nodes!")
-                        .build();
+    /**
+     * Admit a probing request. The global slot is acquired first, so the token of the client is not spent on a request
+     * rejected by the global limit.
+     */
+    private boolean admit(final AdmissionController admission) {
+        if (!admission.tryAcquire()) {
+            return false;
+        }
+        if (!admission.admit(request != null ? request.getRemoteAddr() : null)) {
+            admission.release();
+            return false;
+        }
+        return true;
+    }
+
+    private static Map<String, HealthSnapshot> latest(final HealthProbeEngine engine, final List<String> dbNames) {
+        Map<String, HealthSnapshot> snapshots = new LinkedHashMap<>();
+        for (String dbName : dbNames) {
+            HealthSnapshot snapshot = engine.latest(dbName);
+            if (snapshot == null) {
+                return null;
             }
+            snapshots.put(dbName, snapshot);
+        }
+        return snapshots;
+    }
 
-            return new Health.Builder().up()
-                    .withDetail("description", "Neo4j health check was successful.")
-                    .build();
-        } catch (Exception e) {
-            return new Health.Builder().outOfService()
-                    .withDetail("description", "Neo4j health check failed!")
-                    .withException(e)
-                    .build();
+    private static boolean fresh(final Map<String, HealthSnapshot> snapshots, final long staleness) {
+        for (HealthSnapshot snapshot : snapshots.values()) {
+            if (snapshot.getAge() > staleness) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private static Response tooManyRequests() {
+        return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.CACHE_CONTROL, NO_CACHE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER)
+                .build();
     }
 
-    private static class CountResultTransformer implements ResultTransformer<Long> {
-        @Override
-        public Long apply(Result result) {
-            return (Long) result.next().get("count");
+    private Response respond(
+            final Response.Status status,
+            final Health health,
+            final long age,
+            final String ifNoneMatch,
+            final boolean stale
+    ) throws JsonProcessingException {
+        HealthEntityCache.Entry entity = ENTITIES.get(health);
+        // the tag identifies the entity only, so an error status is never turned into a cacheable 304
+        Response.ResponseBuilder builder = status == Response.Status.OK && entity.matches(ifNoneMatch)
+                ? Response.notModified()
+                : Response.status(status).type(MediaType.APPLICATION_JSON_TYPE).entity(entity.getBody());
+        if (stale) {
+            builder.header(WARNING_HEADER, STALE_WARNING);
         }
+        return builder
+                .header(HttpHeaders.ETAG, entity.getEtag())
+                .header(HttpHeaders.CACHE_CONTROL, NO_CACHE)
+                .header(AGE_HEADER, TimeUnit.MILLISECONDS.toSeconds(age))
+                .header(SNAPSHOT_AGE_HEADER, age)
+                .build();
+    }
+
+    private static List<String> split(final String databases) {
+        List<String> dbNames = new ArrayList<>();
+        for (String dbName : databases.split(",")) {
+            String trimmed = dbName.trim();
+            if (!trimmed.isEmpty() && !dbNames.contains(trimmed)) {
+                dbNames.add(trimmed);
+            }
+        }
+        return dbNames;
     }
+
 }
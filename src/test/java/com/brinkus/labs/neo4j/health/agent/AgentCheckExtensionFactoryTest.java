@@ -0,0 +1,112 @@
+package com.brinkus.labs.neo4j.health.agent;
+
+import com.brinkus.labs.neo4j.health.probe.HealthProbeEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseNotFoundException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.event.DatabaseEventContext;
+import org.neo4j.graphdb.event.DatabaseEventListener;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AgentCheckExtensionFactoryTest {
+
+    private int port;
+
+    private DatabaseManagementService dbms;
+
+    private GraphDatabaseService service;
+
+    private List<DatabaseEventListener> listeners;
+
+    @Before
+    public void before() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        System.setProperty("labs.health.agent.port", String.valueOf(port));
+        System.setProperty("labs.health.probe.interval", "50");
+        service = mock(GraphDatabaseService.class);
+        when(service.isAvailable(1000)).thenReturn(true);
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        listeners = new CopyOnWriteArrayList<>();
+        dbms = mock(DatabaseManagementService.class);
+        doAnswer(invocation -> listeners.add((DatabaseEventListener) invocation.getArguments()[0]))
+                .when(dbms).registerDatabaseEventListener(any());
+        when(dbms.database("neo4j")).thenReturn(service);
+        when(dbms.listDatabases()).thenReturn(Collections.singletonList("neo4j"));
+    }
+
+    @After
+    public void after() {
+        System.clearProperty("labs.health.agent.port");
+        System.clearProperty("labs.health.probe.interval");
+        HealthProbeEngine.of(dbms).close();
+    }
+
+    @Test
+    public void droppedDatabaseIsSubscribedAgainWhenCreated() throws Exception {
+        AgentCheckExtensionFactory.Dependencies dependencies = mock(AgentCheckExtensionFactory.Dependencies.class);
+        GraphDatabaseAPI system = mock(GraphDatabaseAPI.class);
+        when(system.databaseName()).thenReturn("system");
+        when(dependencies.databaseManagementService()).thenReturn(dbms);
+        when(dependencies.graphDatabaseAPI()).thenReturn(system);
+        Lifecycle lifecycle = new AgentCheckExtensionFactory().newInstance(null, dependencies);
+        lifecycle.start();
+        try {
+            assertThat(await("up 100%"), is("up 100%"));
+
+            // the engine forgets the dropped database on its next probe
+            when(dbms.database("neo4j")).thenThrow(new DatabaseNotFoundException("neo4j"));
+            when(dbms.listDatabases()).thenReturn(Collections.singletonList("system"));
+            assertThat(await("drain"), is("drain"));
+
+            doAnswer(invocation -> service).when(dbms).database("neo4j");
+            when(dbms.listDatabases()).thenReturn(Collections.singletonList("neo4j"));
+            DatabaseEventContext context = mock(DatabaseEventContext.class);
+            when(context.getDatabaseName()).thenReturn("neo4j");
+            listeners.forEach(listener -> listener.databaseStart(context));
+
+            assertThat(await("up 100%"), is("up 100%"));
+        } finally {
+            lifecycle.stop();
+        }
+    }
+
+    private String await(String expected) throws Exception {
+        String line = null;
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (System.currentTimeMillis() < deadline && !expected.equals(line)) {
+            Thread.sleep(20L);
+            try (Socket socket = new Socket("127.0.0.1", port);
+                 BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+                socket.setSoTimeout(5000);
+                line = reader.readLine();
+            }
+        }
+        return line;
+    }
+
+}
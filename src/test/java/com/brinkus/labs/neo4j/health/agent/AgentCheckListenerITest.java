@@ -0,0 +1,68 @@
+package com.brinkus.labs.neo4j.health.agent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.neo4j.test.rule.SuppressOutput;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AgentCheckListenerITest {
+
+    @Rule
+    public SuppressOutput suppressOutput = SuppressOutput.suppressAll();
+
+    @Test
+    public void agentCheck() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        System.setProperty("labs.health.timeout", "60000");
+        System.setProperty("labs.health.agent.port", String.valueOf(port));
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withFixture("CREATE (:Movie {title:'The Matrix', released:1999})")
+                .build()) {
+
+            String line = null;
+            long deadline = System.currentTimeMillis() + 60000L;
+            while (System.currentTimeMillis() < deadline && !"up 100%".equals(line)) {
+                line = read(port);
+                Thread.sleep(100L);
+            }
+
+            assertThat(line, is("up 100%"));
+        } finally {
+            System.clearProperty("labs.health.timeout");
+            System.clearProperty("labs.health.agent.port");
+        }
+
+        // the listener is stopped with the DBMS
+        try {
+            new Socket("127.0.0.1", port).close();
+            fail("The agent is still listening");
+        } catch (ConnectException e) {
+            // expected
+        }
+    }
+
+    private static String read(int port) throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", port);
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            socket.setSoTimeout(5000);
+            return reader.readLine();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.brinkus.labs.neo4j.health.agent;
+
+import com.brinkus.labs.neo4j.health.probe.HealthSnapshot;
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AgentCheckListenerTest {
+
+    private AgentCheckListener listener;
+
+    @Before
+    public void before() throws Exception {
+        listener = new AgentCheckListener(new InetSocketAddress("127.0.0.1", 0), 30);
+        listener.start();
+    }
+
+    @After
+    public void after() {
+        listener.close();
+    }
+
+    @Test
+    public void drainUntilTheFirstStatus() throws Exception {
+        assertThat(read(connect()), is("drain"));
+    }
+
+    @Test
+    public void statuses() throws Exception {
+        assertThat(check(HealthStatusCode.UP), is("up 100%"));
+        assertThat(check(HealthStatusCode.DEGRADED), is("up 30%"));
+        assertThat(check(HealthStatusCode.OUT_OF_SERVICE), is("drain"));
+        assertThat(check(HealthStatusCode.UNKNOWN), is("drain"));
+        assertThat(check(HealthStatusCode.DOWN), is("down"));
+    }
+
+    @Test
+    public void sentDataIsIgnored() throws Exception {
+        listener.onHealth("neo4j", snapshot(HealthStatusCode.UP));
+        try (Socket socket = connect()) {
+            OutputStream output = socket.getOutputStream();
+            output.write("hello\n".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+
+            assertThat(read(socket), is("up 100%"));
+        }
+    }
+
+    @Test
+    public void manyConnections() throws Exception {
+        listener.onHealth("neo4j", snapshot(HealthStatusCode.UP));
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                sockets.add(connect());
+            }
+            for (Socket socket : sockets) {
+                assertThat(read(socket), is("up 100%"));
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void weightIsBounded() {
+        assertThat(AgentCheckListener.line(HealthStatusCode.DEGRADED, 0), is("up 1%"));
+        assertThat(AgentCheckListener.line(HealthStatusCode.DEGRADED, 250), is("up 100%"));
+    }
+
+    @Test
+    public void closedListenerIsUnsubscribed() {
+        listener.close();
+
+        assertThat(listener.onHeartbeat(), is(false));
+    }
+
+    private String check(HealthStatusCode code) throws Exception {
+        listener.onHealth("neo4j", snapshot(code));
+        return read(connect());
+    }
+
+    private Socket connect() throws Exception {
+        Socket socket = new Socket("127.0.0.1", listener.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static String read(Socket socket) throws Exception {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            String line = reader.readLine();
+            assertThat(reader.read(), is(-1));
+            return line;
+        }
+    }
+
+    private static HealthSnapshot snapshot(HealthStatusCode code) {
+        return new HealthSnapshot(new Health.Builder().status(code).build());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.brinkus.labs.neo4j.health.metrics;
+
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HealthHistoryTest {
+
+    @Test
+    public void empty() {
+        HealthHistory.Window window = new HealthHistory(8).window();
+
+        assertThat(window.getSize(), is(0));
+        assertThat(window.getAvailability(), is(0.0));
+        assertThat(window.getLatency().get("p50"), is(0.0));
+    }
+
+    @Test
+    public void capacityIsRoundedUp() {
+        assertThat(new HealthHistory(100).getCapacity(), is(128));
+        assertThat(new HealthHistory(128).getCapacity(), is(128));
+    }
+
+    @Test
+    public void oldEntriesAreOverwritten() {
+        HealthHistory history = new HealthHistory(4);
+        for (int i = 0; i < 10; i++) {
+            history.record(i, HealthStatusCode.UP, i * 1000L);
+        }
+
+        HealthHistory.Window window = history.window();
+        assertThat(window.getSize(), is(4));
+        assertThat(window.getEntries().get(0).getTimestamp(), is(6L));
+        assertThat(window.getEntries().get(3).getTimestamp(), is(9L));
+        assertThat(window.getEntries().get(3).getLatency(), is(9.0));
+    }
+
+    @Test
+    public void summary() {
+        HealthHistory history = new HealthHistory(128);
+        for (int i = 1; i <= 100; i++) {
+            history.record(i, i % 4 == 0 ? HealthStatusCode.DOWN : HealthStatusCode.UP, i * 1000L);
+        }
+
+        HealthHistory.Window window = history.window();
+        assertThat(window.getAvailability(), is(75.0));
+        assertThat(window.getLatency().get("p50"), is(50.0));
+        assertThat(window.getLatency().get("p95"), is(95.0));
+        assertThat(window.getLatency().get("p99"), is(99.0));
+    }
+
+    @Test
+    public void concurrentWriters() throws Exception {
+        HealthHistory history = new HealthHistory(64);
+        AtomicInteger torn = new AtomicInteger();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    history.record(i, HealthStatusCode.UP, i);
+                    if (i % 100 == 0) {
+                        for (HealthHistory.Entry entry : history.window().getEntries()) {
+                            if (entry.getLatency() != entry.getTimestamp() / 1000.0) {
+                                torn.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertThat(torn.get(), is(0));
+        assertThat(history.window().getSize(), is(64));
+    }
+
+}
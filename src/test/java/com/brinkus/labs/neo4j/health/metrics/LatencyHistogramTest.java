@@ -0,0 +1,83 @@
+package com.brinkus.labs.neo4j.health.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getValueAtPercentile(99.0), is(0L));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 0; value < 20; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getCount(), is(20L));
+        assertThat(histogram.getSum(), is(190L));
+        assertThat(histogram.getValueAtPercentile(50.0), is(9L));
+        assertThat(histogram.getValueAtPercentile(100.0), is(19L));
+    }
+
+    @Test
+    public void percentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        long[] values = histogram.getValuesAtPercentiles(50.0, 99.0, 99.9, 100.0);
+        assertWithin(values[0], 50000L);
+        assertWithin(values[1], 99000L);
+        assertWithin(values[2], 99900L);
+        assertWithin(values[3], 100000L);
+    }
+
+    @Test
+    public void hugeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1L);
+
+        assertThat(histogram.getCount(), is(2L));
+        assertThat(histogram.getValueAtPercentile(0.0), is(0L));
+        assertThat(histogram.getValueAtPercentile(100.0), greaterThanOrEqualTo(1L << 40));
+    }
+
+    @Test
+    public void cumulativeCounts() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(5000000L);
+
+        long[] counts = histogram.getCumulativeCounts(10L, 100L, 1000L, 2000L);
+
+        // the buckets above the sub-bucket range are counted only if they are entirely within the limit
+        assertThat(counts[0], is(10L));
+        assertThat(counts[1], lessThanOrEqualTo(100L));
+        assertThat(counts[1], greaterThanOrEqualTo(100L - 100L / 16));
+        assertThat(counts[2], lessThanOrEqualTo(1000L));
+        assertThat(counts[2], greaterThanOrEqualTo(1000L - 1000L / 16));
+        assertThat(counts[3], is(1000L));
+        assertThat(counts[4], is(1001L));
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        assertThat(actual, greaterThanOrEqualTo(expected));
+        assertThat(actual, lessThanOrEqualTo(expected + expected / 16));
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AdmissionControllerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstIsAdmitted() {
+        AdmissionController admission = controller(10.0, 3, 100);
+
+        assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        assertThat(admission.admit("10.0.0.1", 0L), is(false));
+    }
+
+    @Test
+    public void tokensAreRefilledAtTheRate() {
+        AdmissionController admission = controller(10.0, 1, 100);
+
+        assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        assertThat(admission.admit("10.0.0.1", SECOND / 20), is(false));
+        assertThat(admission.admit("10.0.0.1", SECOND / 10), is(true));
+        assertThat(admission.admit("10.0.0.1", 5 * SECOND), is(true));
+        assertThat(admission.admit("10.0.0.1", 5 * SECOND), is(false));
+    }
+
+    @Test
+    public void clientsHaveTheirOwnBuckets() {
+        AdmissionController admission = controller(1.0, 1, 100);
+
+        assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        assertThat(admission.admit("10.0.0.1", 0L), is(false));
+        assertThat(admission.admit("10.0.0.2", 0L), is(true));
+    }
+
+    @Test
+    public void idleClientsAreEvicted() {
+        AdmissionController admission = controller(1.0, 1, 1);
+
+        assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        assertThat(admission.admit("10.0.0.2", 0L), is(true));
+        assertThat(admission.admit("10.0.0.2", 0L), is(true));
+
+        assertThat(admission.admit("10.0.0.2", 2 * SECOND), is(true));
+        assertThat(admission.admit("10.0.0.2", 2 * SECOND), is(false));
+    }
+
+    @Test
+    public void disabledRate() {
+        AdmissionController admission = controller(0.0, 1, 100);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(admission.admit("10.0.0.1", 0L), is(true));
+        }
+    }
+
+    @Test
+    public void concurrentLimit() {
+        AdmissionController admission = new AdmissionController(new HealthSettings.Builder()
+                .withAdmissionMaxConcurrent(2)
+                .build());
+
+        assertThat(admission.tryAcquire(), is(true));
+        assertThat(admission.tryAcquire(), is(true));
+        assertThat(admission.tryAcquire(), is(false));
+        assertThat(admission.getActive(), is(2));
+
+        admission.release();
+
+        assertThat(admission.tryAcquire(), is(true));
+    }
+
+    private static AdmissionController controller(double rate, int burst, int maxClients) {
+        return new AdmissionController(new HealthSettings.Builder()
+                .withAdmissionClientRate(rate)
+                .withAdmissionClientBurst(burst)
+                .withAdmissionMaxClients(maxClients)
+                .build());
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.common.DependencyResolver;
+import org.neo4j.configuration.Config;
+import org.neo4j.configuration.connectors.BoltConnector;
+import org.neo4j.configuration.connectors.ConnectorPortRegister;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BoltSamplerTest {
+
+    private ServerSocket server;
+
+    @Before
+    public void before() throws Exception {
+        server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void after() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void handshake() throws Exception {
+        serve(0x00000204);
+
+        Health health = sampler(1000L, 1000L).handshake(address());
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("version"), is("4.2"));
+        assertThat(health.getDetails().containsKey("connectLatency"), is(true));
+        assertThat(health.getDetails().containsKey("handshakeLatency"), is(true));
+    }
+
+    @Test
+    public void noAgreedVersionIsDegraded() throws Exception {
+        serve(0);
+
+        Health health = sampler(1000L, 1000L).handshake(address());
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getDetails().get("version"), is("0.0"));
+    }
+
+    @Test
+    public void silentConnectorIsDown() {
+        // the connection is completed by the backlog, but the handshake is never answered
+        Health health = sampler(50L, 1000L).handshake(address());
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(health.getDetails().get("description"), is("Bolt handshake did not complete in time!"));
+        assertThat(health.getDetails().get("timeout"), is(50L));
+    }
+
+    @Test
+    public void closedConnectorIsDown() throws Exception {
+        InetSocketAddress address = address();
+        server.close();
+
+        Health health = sampler(1000L, 1000L).handshake(address);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(health.getDetails().containsKey("error"), is(true));
+    }
+
+    @Test
+    public void databasesShareTheSample() throws Exception {
+        serve(0x00000104);
+        ConnectorPortRegister register = new ConnectorPortRegister();
+        register.register(BoltConnector.NAME, address());
+        GraphDatabaseAPI service = service(Config.defaults(BoltConnector.enabled, true), register);
+        BoltSampler sampler = sampler(1000L, 1000L);
+
+        Health health = sampler.sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("version"), is("4.1"));
+        assertThat(sampler.sample("system", service), sameInstance(health));
+    }
+
+    @Test
+    public void disabledConnector() {
+        GraphDatabaseAPI service = service(Config.defaults(BoltConnector.enabled, false), new ConnectorPortRegister());
+
+        Health health = sampler(1000L, 1000L).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    @Test
+    public void connectorRequiringTlsIsNotProbed() throws Exception {
+        ConnectorPortRegister register = new ConnectorPortRegister();
+        register.register(BoltConnector.NAME, address());
+        GraphDatabaseAPI service = service(Config.newBuilder()
+                .set(BoltConnector.enabled, true)
+                .set(BoltConnector.encryption_level, BoltConnector.EncryptionLevel.REQUIRED)
+                .build(), register);
+
+        Health health = sampler(1000L, 1000L).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        assertThat(health.getDetails().get("description"), is("Bolt connector requires TLS, the handshake is not probed!"));
+        assertThat(health.getDetails().get("encryptionLevel"), is("REQUIRED"));
+        // no connection was opened
+        server.setSoTimeout(50);
+        try (Socket socket = server.accept()) {
+            fail("The connector was probed");
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void notAvailable() {
+        Health health = sampler(1000L, 1000L).sample("neo4j", mock(GraphDatabaseService.class));
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    private InetSocketAddress address() {
+        return new InetSocketAddress(server.getInetAddress(), server.getLocalPort());
+    }
+
+    /**
+     * Answer the handshake of a single connection with the given version.
+     */
+    private void serve(int version) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                new DataInputStream(socket.getInputStream()).readFully(new byte[20]);
+                new DataOutputStream(socket.getOutputStream()).writeInt(version);
+                socket.getInputStream().read();
+            } catch (Exception e) {
+                // the test is failed by the sampler
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static GraphDatabaseAPI service(Config config, ConnectorPortRegister register) {
+        DependencyResolver resolver = mock(DependencyResolver.class);
+        when(resolver.resolveDependency(Config.class)).thenReturn(config);
+        when(resolver.containsDependency(ConnectorPortRegister.class)).thenReturn(true);
+        when(resolver.resolveDependency(ConnectorPortRegister.class)).thenReturn(register);
+        GraphDatabaseAPI service = mock(GraphDatabaseAPI.class);
+        when(service.getDependencyResolver()).thenReturn(resolver);
+        return service;
+    }
+
+    private static BoltSampler sampler(long timeout, long interval) {
+        return new BoltSampler(new HealthSettings.Builder()
+                .withBoltTimeout(timeout)
+                .withBoltInterval(interval)
+                .build());
+    }
+
+}
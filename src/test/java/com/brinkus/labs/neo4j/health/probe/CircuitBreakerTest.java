@@ -0,0 +1,140 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CircuitBreakerTest {
+
+    private static final Health UP = new Health.Builder().up().build();
+
+    private static final Health FAILED = new Health.Builder().outOfService()
+            .withDetail("description", "Neo4j health check failed!")
+            .build();
+
+    @Test
+    public void singleFailureDoesNotChangeTheStatus() {
+        CircuitBreaker breaker = breaker(3, 2, 2, 1000L);
+
+        breaker.record(UP);
+        Health health = breaker.record(FAILED);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(details(health).get("state"), is("CLOSED"));
+        assertThat(breaker.getConsecutiveFailures(), is(1));
+
+        health = breaker.record(FAILED);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(health.getDetails().get("description"), is("Neo4j health check failed!"));
+    }
+
+    @Test
+    public void reportedResultIsStableWhileTheStatusDoesNotChange() {
+        CircuitBreaker breaker = breaker(3, 2, 2, 1000L);
+
+        Health first = breaker.record(UP);
+        Health second = breaker.record(UP);
+        breaker.record(FAILED);
+
+        assertThat(second, is(first));
+        assertThat(breaker.record(UP), is(first));
+        assertThat(details(first).keySet().size(), is(1));
+        assertThat(breaker.getConsecutiveSuccesses(), is(1));
+    }
+
+    @Test
+    public void firstResultIsReported() {
+        CircuitBreaker breaker = breaker(3, 2, 2, 1000L);
+
+        assertThat(breaker.record(FAILED).getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+    }
+
+    @Test
+    public void recoveryNeedsConsecutiveSuccesses() {
+        CircuitBreaker breaker = breaker(10, 3, 1, 1000L);
+
+        breaker.record(FAILED);
+        breaker.record(UP);
+        breaker.record(UP);
+        breaker.record(FAILED);
+        breaker.record(UP);
+        breaker.record(UP);
+
+        assertThat(breaker.current().getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(breaker.record(UP).getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void consecutiveFailuresOpenTheBreaker() throws Exception {
+        CircuitBreaker breaker = breaker(2, 1, 1, 50L);
+
+        breaker.record(FAILED);
+        assertThat(breaker.allowProbe(), is(true));
+        Health health = breaker.record(FAILED);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(breaker.allowProbe(), is(false));
+        assertThat(details(health).get("backoff"), is(50L));
+
+        Thread.sleep(60L);
+
+        assertThat(breaker.allowProbe(), is(true));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    }
+
+    @Test
+    public void failedTrialDoublesTheBackoff() throws Exception {
+        CircuitBreaker breaker = breaker(1, 1, 1, 20L);
+
+        breaker.record(FAILED);
+        Thread.sleep(30L);
+        assertThat(breaker.allowProbe(), is(true));
+        Health health = breaker.record(FAILED);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(details(health).get("backoff"), is(40L));
+    }
+
+    @Test
+    public void successfulTrialClosesTheBreaker() throws Exception {
+        CircuitBreaker breaker = breaker(1, 1, 1, 20L);
+
+        breaker.record(FAILED);
+        Thread.sleep(30L);
+        assertThat(breaker.allowProbe(), is(true));
+        Health health = breaker.record(UP);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void degradedIsHealthy() {
+        CircuitBreaker breaker = breaker(1, 1, 1, 1000L);
+
+        breaker.record(new Health.Builder().degraded().build());
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    private static Map<?, ?> details(Health health) {
+        return (Map<?, ?>) health.getDetails().get("breaker");
+    }
+
+    private static CircuitBreaker breaker(int failures, int rise, int fall, long backoff) {
+        return new CircuitBreaker(new HealthSettings.Builder()
+                .withBreakerEnabled(true)
+                .withBreakerFailures(failures)
+                .withBreakerRise(rise)
+                .withBreakerFall(fall)
+                .withBreakerBackoff(backoff)
+                .build());
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class CountStoreSamplerTest {
+
+    private GraphDatabaseService service;
+
+    private Read read;
+
+    @Before
+    public void before() {
+        TokenRead tokens = mock(TokenRead.class);
+        when(tokens.nodeLabel("Movie")).thenReturn(1);
+        when(tokens.nodeLabel("Person")).thenReturn(2);
+        when(tokens.nodeLabel("Missing")).thenReturn(TokenRead.NO_TOKEN);
+        when(tokens.nodeLabel("HealthCanary")).thenReturn(4);
+        when(tokens.relationshipType("ACTED_IN")).thenReturn(3);
+        read = mock(Read.class);
+        KernelTransaction kernelTransaction = mock(KernelTransaction.class);
+        when(kernelTransaction.tokenRead()).thenReturn(tokens);
+        when(kernelTransaction.dataRead()).thenReturn(read);
+        InternalTransaction transaction = mock(InternalTransaction.class);
+        when(transaction.kernelTransaction()).thenReturn(kernelTransaction);
+        service = mock(GraphDatabaseService.class);
+        when(service.beginTx(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(transaction);
+    }
+
+    @Test
+    public void countsAreReadFromTheCountStoreOnly() {
+        when(read.countsForNode(1)).thenReturn(5_000_000L);
+        when(read.countsForRelationship(TokenRead.ANY_LABEL, 3, TokenRead.ANY_LABEL)).thenReturn(20_000_000L);
+        when(read.countsForRelationship(2, 3, TokenRead.ANY_LABEL)).thenReturn(10_000_000L);
+
+        Health health = sampler("(:Movie)>=1000, ()-[:ACTED_IN]->()>=1000, (:Person)-[:ACTED_IN]->()>=1")
+                .sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("(:Movie)"), is(5_000_000L));
+        assertThat(health.getDetails().get("()-[:ACTED_IN]->()"), is(20_000_000L));
+        assertThat(health.getDetails().get("(:Person)-[:ACTED_IN]->()"), is(10_000_000L));
+        // no scans or cursors, only the count store lookups
+        verify(read).countsForNode(1);
+        verify(read).countsForRelationship(TokenRead.ANY_LABEL, 3, TokenRead.ANY_LABEL);
+        verify(read).countsForRelationship(2, 3, TokenRead.ANY_LABEL);
+        verifyNoMoreInteractions(read);
+    }
+
+    @Test
+    public void countBelowTheMinimumIsOutOfService() {
+        when(read.countsForNode(1)).thenReturn(10L);
+
+        Health health = sampler("(:Movie)>=1000").sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(health.getDetails().get("(:Movie)"), is(10L));
+        assertThat(health.getDetails().get("failed"), is(Collections.singletonList("(:Movie)>=1000")));
+    }
+
+    @Test
+    public void missingLabelHasNoCount() {
+        Health health = sampler("(:Missing)>=1").sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(health.getDetails().get("(:Missing)"), is(0L));
+        verifyNoMoreInteractions(read);
+    }
+
+    @Test
+    public void canaryIsNotCountedAsData() {
+        when(read.countsForNode(TokenRead.ANY_LABEL)).thenReturn(1L);
+        when(read.countsForNode(4)).thenReturn(1L);
+
+        Health health = sampler("()>=1").sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(health.getDetails().get("()"), is(0L));
+    }
+
+    @Test
+    public void assertionsAreAppliedToTheirDatabase() {
+        CountStoreSampler sampler = sampler("movies:(:Movie)>=1");
+
+        assertThat(sampler.sample("neo4j", service).getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        assertThat(sampler("(:Movie)>=1").sample("system", service).getStatus().getCode(),
+                is(HealthStatusCode.UNKNOWN));
+        verify(service, never()).beginTx(anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void parse() {
+        List<CountAssertion> assertions = CountAssertion.parse(
+                "movies:( :Movie )>=1, ()-[]->()>=2, ()-[:ACTED_IN]->(:Movie) >= 3, ()>=4");
+
+        assertThat(assertions.size(), is(4));
+        assertThat(assertions.get(0).toString(), is("movies:(:Movie)>=1"));
+        assertThat(assertions.get(1).toString(), is("()-[]->()>=2"));
+        assertThat(assertions.get(2).toString(), is("()-[:ACTED_IN]->(:Movie)>=3"));
+        assertThat(assertions.get(3).toString(), is("()>=4"));
+        assertThat(CountAssertion.parse("").isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidAssertion() {
+        CountAssertion.parse("MATCH (n:Movie) RETURN count(n)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bothEndLabelsAreNotCounted() {
+        CountAssertion.parse("(:Person)-[:ACTED_IN]->(:Movie)>=1");
+    }
+
+    private static CountStoreSampler sampler(String assertions) {
+        return new CountStoreSampler(new HealthSettings.Builder()
+                .withCountAssertions(assertions)
+                .build());
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.io.layout.DatabaseLayout;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DiskSamplerTest {
+
+    private static final long GB = 1024L * 1024L * 1024L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileStore store;
+
+    @Before
+    public void before() throws Exception {
+        store = mock(FileStore.class);
+        when(store.getTotalSpace()).thenReturn(100 * GB);
+        when(store.getUsableSpace()).thenReturn(50 * GB);
+    }
+
+    @Test
+    public void volumeIsSampled() {
+        Health health = volume(10000L).sample(0L);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("usableSpace"), is(50 * GB));
+        assertThat(health.getDetails().get("freeRatio"), is(0.5));
+        assertThat(health.getDetails().containsKey("growthRate"), is(false));
+    }
+
+    @Test
+    public void timeToFullIsEstimatedFromTheGrowthRate() throws Exception {
+        DiskSampler.Volume volume = volume(0L);
+        volume.sample(0L);
+        when(store.getUsableSpace()).thenReturn(50 * GB - 100 * 1024 * 1024);
+
+        Health health = volume.sample(TimeUnit.SECONDS.toNanos(1L));
+
+        assertThat(health.getDetails().get("growthRate"), is(100L * 1024 * 1024));
+        assertThat(health.getDetails().get("timeToFull"), is(511000L));
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+    }
+
+    @Test
+    public void lowSpace() throws Exception {
+        DiskSampler.Volume volume = volume(0L);
+
+        when(store.getUsableSpace()).thenReturn(5 * GB);
+        assertThat(volume.sample(0L).getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+
+        when(store.getUsableSpace()).thenReturn(GB);
+        assertThat(volume.sample(1L).getStatus().getCode(), is(HealthStatusCode.DOWN));
+    }
+
+    @Test
+    public void sampleIsShared() throws Exception {
+        DiskSampler.Volume volume = volume(10000L);
+
+        Health first = volume.sample(0L);
+        Health second = volume.sample(TimeUnit.SECONDS.toNanos(1L));
+
+        assertThat(second, sameInstance(first));
+        verify(store, times(1)).getUsableSpace();
+    }
+
+    @Test
+    public void storeAndLogVolumes() throws Exception {
+        GraphDatabaseAPI service = mock(GraphDatabaseAPI.class);
+        when(service.databaseLayout()).thenReturn(DatabaseLayout.ofFlat(folder.getRoot().toPath()));
+        FileStore fileStore = Files.getFileStore(folder.getRoot().toPath());
+
+        Health health = new DiskSampler(new HealthSettings.Builder()
+                .withDiskDegradedFreeRatio(0.0)
+                .withDiskDownFreeRatio(0.0)
+                .build(), new StatusAggregator()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(((Health) health.getDetails().get("store")).getDetails().get("volume"), is(fileStore.toString()));
+        assertThat(health.getDetails().get("transactionLogs"), sameInstance(health.getDetails().get("store")));
+    }
+
+    @Test
+    public void notAvailable() {
+        Health health = new DiskSampler(new HealthSettings.Builder().build(), new StatusAggregator())
+                .sample("neo4j", mock(GraphDatabaseService.class));
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    private DiskSampler.Volume volume(long interval) {
+        return new DiskSampler.Volume(store, new HealthSettings.Builder().withDiskInterval(interval).build());
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.metrics.DatabaseMetrics;
+import com.brinkus.labs.neo4j.health.metrics.HealthMetrics;
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HealthEvaluatorTest {
+
+    private static class TestIndicator implements HealthIndicator {
+
+        private final String name;
+
+        private final Health health;
+
+        private final long latency;
+
+        private final long timeout;
+
+        private final long ttl;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        TestIndicator(String name, Health health, long latency, long timeout, long ttl) {
+            this.name = name;
+            this.health = health;
+            this.latency = latency;
+            this.timeout = timeout;
+            this.ttl = ttl;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getTimeout() {
+            return timeout;
+        }
+
+        @Override
+        public long getTtl() {
+            return ttl;
+        }
+
+        @Override
+        public Health check(GraphDatabaseService service, long timeout) {
+            calls.incrementAndGet();
+            if (latency > 0) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (health == null) {
+                throw new IllegalStateException("broken");
+            }
+            return health;
+        }
+
+    }
+
+    private static final Health UP = new Health.Builder().up()
+            .withDetail("description", "Neo4j health check was successful.")
+            .build();
+
+    private GraphDatabaseService service;
+
+    private HealthProbe probe;
+
+    private HealthEvaluator evaluator;
+
+    @Before
+    public void before() {
+        service = mock(GraphDatabaseService.class);
+        probe = mock(HealthProbe.class);
+        when(probe.check(eq(service), anyLong(), any(DatabaseMetrics.class))).thenReturn(UP);
+    }
+
+    @After
+    public void after() {
+        if (evaluator != null) {
+            evaluator.close();
+        }
+    }
+
+    @Test
+    public void probeOnly() {
+        evaluator = evaluator(Collections.emptyList(), StatusAggregator.DEFAULT_ORDER);
+
+        assertThat(check(1000L), is(UP));
+    }
+
+    @Test
+    public void resultsAreMerged() {
+        evaluator = evaluator(Arrays.asList(
+                new TestIndicator("replication", new Health.Builder().degraded().build(), 0L, 0L, 0L),
+                new TestIndicator("license", new Health.Builder().up().build(), 0L, 0L, 0L)),
+                StatusAggregator.DEFAULT_ORDER);
+
+        Health health = check(1000L);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getDetails().get("description"), is("Neo4j health check was successful."));
+        assertThat(((Health) health.getDetails().get("replication")).getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(((Health) health.getDetails().get("license")).getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void indicatorsRunInParallel() {
+        evaluator = evaluator(Arrays.asList(
+                new TestIndicator("first", UP, 200L, 0L, 0L),
+                new TestIndicator("second", UP, 200L, 0L, 0L),
+                new TestIndicator("third", UP, 200L, 0L, 0L)),
+                StatusAggregator.DEFAULT_ORDER);
+
+        long start = System.nanoTime();
+        Health health = check(5000L);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(elapsed < 500L, is(true));
+    }
+
+    @Test
+    public void slowIndicatorTimesOut() {
+        TestIndicator slow = new TestIndicator("slow", UP, 300L, 50L, 0L);
+        evaluator = evaluator(Collections.singletonList(slow), StatusAggregator.DEFAULT_ORDER);
+
+        Health health = check(5000L);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        Health detail = (Health) health.getDetails().get("slow");
+        assertThat(detail.getDetails().get("timedOut"), is(true));
+        assertThat(detail.getDetails().get("timeout"), is(50L));
+
+        // the running evaluation is awaited again instead of starting a new one
+        check(5000L);
+        assertThat(slow.calls.get(), is(1));
+    }
+
+    @Test
+    public void resultIsCachedForItsTtl() throws Exception {
+        TestIndicator cached = new TestIndicator("cached", UP, 0L, 0L, 100L);
+        TestIndicator uncached = new TestIndicator("uncached", UP, 0L, 0L, 0L);
+        evaluator = evaluator(Arrays.asList(cached, uncached), StatusAggregator.DEFAULT_ORDER);
+
+        check(1000L);
+        check(1000L);
+
+        assertThat(cached.calls.get(), is(1));
+        assertThat(uncached.calls.get(), is(2));
+
+        Thread.sleep(150L);
+        check(1000L);
+
+        assertThat(cached.calls.get(), is(2));
+    }
+
+    @Test
+    public void failingIndicatorIsOutOfService() {
+        evaluator = evaluator(Collections.singletonList(new TestIndicator("broken", null, 0L, 0L, 0L)),
+                StatusAggregator.DEFAULT_ORDER);
+
+        Health health = check(1000L);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(((Health) health.getDetails().get("broken")).getDetails().get("error"),
+                is("java.lang.IllegalStateException: broken"));
+    }
+
+    @Test
+    public void severityOrderIsConfigurable() {
+        evaluator = evaluator(Collections.singletonList(
+                new TestIndicator("optional", new Health.Builder().unknown().build(), 0L, 0L, 0L)),
+                StatusAggregator.parse("DOWN, OUT_OF_SERVICE, DEGRADED, UP"));
+
+        assertThat(check(1000L).getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSeverityOrder() {
+        StatusAggregator.parse("DOWN,BROKEN");
+    }
+
+    private Health check(long timeout) {
+        return evaluator.check("neo4j", service, timeout, new HealthMetrics(10).database("neo4j"));
+    }
+
+    private HealthEvaluator evaluator(List<? extends HealthIndicator> indicators, List<HealthStatusCode> order) {
+        return new HealthEvaluator(probe, Collections.unmodifiableList(indicators), new StatusAggregator(order));
+    }
+
+}
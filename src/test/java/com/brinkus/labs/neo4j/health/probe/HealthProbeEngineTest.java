@@ -0,0 +1,517 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseNotFoundException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.event.DatabaseEventContext;
+import org.neo4j.graphdb.event.DatabaseEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HealthProbeEngineTest {
+
+    private DatabaseManagementService dbms;
+
+    private GraphDatabaseService service;
+
+    private HealthProbe probe;
+
+    private HealthProbeEngine engine;
+
+    @Before
+    public void before() {
+        this.service = mock(GraphDatabaseService.class);
+        this.dbms = mock(DatabaseManagementService.class);
+        when(this.dbms.database("neo4j")).thenReturn(service);
+        when(this.dbms.database("missing")).thenThrow(new DatabaseNotFoundException("missing"));
+        this.probe = mock(HealthProbe.class);
+        when(this.probe.check(eq(service), anyLong(), any())).thenReturn(new Health.Builder().up().build());
+    }
+
+    @After
+    public void after() {
+        engine.close();
+    }
+
+    @Test
+    public void snapshotIsReused() {
+        engine = new HealthProbeEngine(dbms, settings(0L, 60000L), probe);
+
+        HealthSnapshot first = engine.snapshot("neo4j");
+        HealthSnapshot second = engine.snapshot("neo4j");
+
+        assertThat(second, sameInstance(first));
+        assertThat(second.getHealth().getStatus().getCode(), is(HealthStatusCode.UP));
+        verify(probe, times(1)).check(eq(service), anyLong(), any());
+    }
+
+    @Test
+    public void staleSnapshotIsRefreshed() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(0L, 60000L), probe);
+
+        HealthSnapshot first = engine.snapshot("neo4j");
+        Thread.sleep(5L);
+        HealthSnapshot second = engine.snapshot("neo4j", 0L, 5000L);
+
+        assertThat(second, not(sameInstance(first)));
+        verify(probe, times(2)).check(eq(service), anyLong(), any());
+    }
+
+    @Test
+    public void shortTimeoutOfACallerIsNotShared() throws Exception {
+        when(this.probe.check(eq(service), anyLong(), any())).thenAnswer(invocation -> {
+            Thread.sleep(100L);
+            return new Health.Builder().up().build();
+        });
+        engine = new HealthProbeEngine(dbms, settings(0L, 60000L), probe);
+
+        Health health = engine.snapshot("neo4j", 0L, 10L).getHealth();
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        assertThat(health.getDetails().get("timedOut"), is(true));
+        Thread.sleep(200L);
+        assertThat(engine.latest("neo4j").getHealth().getStatus().getCode(), is(HealthStatusCode.UP));
+        verify(probe).check(eq(service), eq(new HealthSettings.Builder().build().getTimeout()), any());
+
+        Thread.sleep(2L);
+        assertThat(engine.snapshot("neo4j", 0L, -1L).getHealth().getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void backgroundProbeUpdatesSnapshot() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(10L, 60000L), probe);
+
+        engine.snapshot("neo4j");
+        when(this.probe.check(eq(service), anyLong(), any())).thenReturn(new Health.Builder().down().build());
+        Thread.sleep(200L);
+
+        HealthSnapshot snapshot = engine.snapshot("neo4j");
+        assertThat(snapshot.getHealth().getStatus().getCode(), is(HealthStatusCode.DOWN));
+    }
+
+    @Test
+    public void concurrentProbesAreCoalesced() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        when(this.probe.check(eq(service), anyLong(), any())).thenAnswer(invocation -> {
+            executions.incrementAndGet();
+            Thread.sleep(100L);
+            return new Health.Builder().up().build();
+        });
+        engine = new HealthProbeEngine(dbms, settings(0L, 0L), probe);
+
+        int threads = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> callers = new ArrayList<>();
+        List<HealthSnapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread caller = new Thread(() -> {
+                try {
+                    start.await();
+                    HealthSnapshot snapshot = engine.snapshot("neo4j", 0L, 5000L);
+                    synchronized (snapshots) {
+                        snapshots.add(snapshot);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            caller.start();
+            callers.add(caller);
+        }
+        start.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        assertThat(snapshots.size(), is(threads));
+        assertThat(executions.get(), lessThanOrEqualTo(5));
+    }
+
+    @Test
+    public void aggregateWaitsOnlyForTheSlowestDatabase() {
+        GraphDatabaseService slow = mock(GraphDatabaseService.class);
+        when(this.dbms.database("slow")).thenReturn(slow);
+        when(this.probe.check(eq(slow), anyLong(), any())).thenAnswer(invocation -> {
+            Thread.sleep(1000L);
+            return new Health.Builder().up().build();
+        });
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder()
+                .withProbeInterval(0L)
+                .build(), probe);
+
+        long start = System.nanoTime();
+        Map<String, HealthSnapshot> snapshots = engine.snapshots(Arrays.asList("neo4j", "slow", "missing"), 0L, 200L);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        assertThat(elapsed < 800L, is(true));
+        assertThat(snapshots.get("neo4j").getHealth().getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(snapshots.get("slow").getHealth().getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        assertThat(snapshots.get("slow").getHealth().getDetails().get("timedOut"), is(true));
+        assertThat(snapshots.get("missing").getHealth().getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    @Test
+    public void samplesAreAddedToTheSnapshot() throws Exception {
+        HealthSampler sampler = mock(HealthSampler.class);
+        when(sampler.getName()).thenReturn("storage");
+        when(sampler.getInterval()).thenReturn(10L);
+        when(sampler.sample(eq("neo4j"), eq(service))).thenReturn(new Health.Builder().degraded().build());
+        engine = new HealthProbeEngine(dbms, settings(10L, 0L), probe, Collections.singletonList(sampler));
+
+        engine.snapshot("neo4j");
+        Thread.sleep(200L);
+
+        Health health = engine.snapshot("neo4j").getHealth();
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getDetails().get("storage"), is(new Health.Builder().degraded().build()));
+    }
+
+    @Test
+    public void unknownSampleDoesNotChangeTheStatus() throws Exception {
+        HealthSampler sampler = mock(HealthSampler.class);
+        when(sampler.getName()).thenReturn("storage");
+        when(sampler.getInterval()).thenReturn(10L);
+        when(sampler.sample(eq("neo4j"), eq(service))).thenThrow(new IllegalStateException("failed"));
+        engine = new HealthProbeEngine(dbms, settings(10L, 0L), probe, Collections.singletonList(sampler));
+
+        engine.snapshot("neo4j");
+        Thread.sleep(200L);
+
+        Health health = engine.snapshot("neo4j").getHealth();
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(((Health) health.getDetails().get("storage")).getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    @Test
+    public void blockedSamplerDoesNotDelayTheProbes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HealthSampler sampler = mock(HealthSampler.class);
+        when(sampler.getName()).thenReturn("canary");
+        when(sampler.getInterval()).thenReturn(10L);
+        when(sampler.sample(eq("neo4j"), eq(service))).thenAnswer(invocation -> {
+            release.await();
+            return new Health.Builder().up().build();
+        });
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder()
+                .withProbeInterval(10L)
+                .withMaxStaleness(60000L)
+                .withProbeThreads(1)
+                .withSamplerThreads(1)
+                .build(), probe, Collections.singletonList(sampler));
+
+        try {
+            engine.snapshot("neo4j");
+            Thread.sleep(200L);
+
+            verify(probe, atLeast(5)).check(eq(service), anyLong(), any());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void openBreakerSkipsTheProbes() throws Exception {
+        when(this.probe.check(eq(service), anyLong(), any())).thenReturn(new Health.Builder().down().build());
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder()
+                .withProbeInterval(0L)
+                .withMaxStaleness(0L)
+                .withBreakerEnabled(true)
+                .withBreakerFailures(2)
+                .withBreakerBackoff(60000L)
+                .build(), probe);
+
+        for (int i = 0; i < 10; i++) {
+            engine.snapshot("neo4j");
+            Thread.sleep(2L);
+        }
+
+        Health health = engine.snapshot("neo4j").getHealth();
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(((Map<?, ?>) health.getDetails().get("breaker")).get("state"), is("OPEN"));
+        verify(probe, times(2)).check(eq(service), anyLong(), any());
+        assertThat(engine.getMetrics().find("neo4j").getConsecutiveFailures(), is(2));
+    }
+
+    @Test
+    public void subscriberIsNotifiedOnStatusChange() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(10L, 60000L), probe);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        engine.subscribe("neo4j", subscriber);
+        Thread.sleep(100L);
+        when(this.probe.check(eq(service), anyLong(), any())).thenReturn(new Health.Builder().down().build());
+        Thread.sleep(100L);
+
+        assertThat(subscriber.codes, is(Arrays.asList(HealthStatusCode.UP, HealthStatusCode.DOWN)));
+        engine.close();
+        Thread.sleep(50L);
+        assertThat(subscriber.closed, is(true));
+    }
+
+    @Test
+    public void subscriberReceivesHeartbeats() throws Exception {
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder()
+                .withProbeInterval(0L)
+                .withHeartbeatInterval(10L)
+                .build(), probe);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        engine.subscribe("neo4j", subscriber);
+        Thread.sleep(100L);
+
+        assertThat(subscriber.heartbeats.get() > 1, is(true));
+        engine.unsubscribe("neo4j", subscriber);
+        int heartbeats = subscriber.heartbeats.get();
+        Thread.sleep(50L);
+        assertThat(subscriber.heartbeats.get(), is(heartbeats));
+    }
+
+    @Test
+    public void failedSubscriberIsRemoved() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(10L, 60000L), probe);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.connected = false;
+
+        engine.subscribe("neo4j", subscriber);
+        when(this.probe.check(eq(service), anyLong(), any())).thenReturn(new Health.Builder().down().build());
+        Thread.sleep(100L);
+
+        assertThat(subscriber.codes.size(), is(1));
+    }
+
+    @Test
+    public void slowSubscriberDoesNotBlockTheProbe() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(0L, 0L), probe);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.blocked = new CountDownLatch(1);
+
+        try {
+            engine.subscribe("neo4j", subscriber);
+            when(this.probe.check(eq(service), anyLong(), any())).thenReturn(new Health.Builder().down().build());
+            Thread.sleep(2L);
+            Health health = engine.snapshot("neo4j", 0L, 1000L).getHealth();
+
+            assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        } finally {
+            subscriber.blocked.countDown();
+        }
+    }
+
+    @Test
+    public void overflowingSubscriberIsDropped() throws Exception {
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder()
+                .withProbeInterval(0L)
+                .withMaxStaleness(0L)
+                .withEventQueueSize(2)
+                .build(), probe);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscriber.blocked = new CountDownLatch(1);
+
+        engine.subscribe("neo4j", subscriber);
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(2L);
+            when(this.probe.check(eq(service), anyLong(), any())).thenReturn(i % 2 == 0
+                    ? new Health.Builder().down().build()
+                    : new Health.Builder().up().build());
+            engine.snapshot("neo4j", 0L, 1000L);
+        }
+        subscriber.blocked.countDown();
+        Thread.sleep(50L);
+
+        assertThat(subscriber.closed, is(true));
+        assertThat(subscriber.codes.size(), lessThanOrEqualTo(3));
+    }
+
+    @Test
+    public void subscribersAreLimited() throws Exception {
+        engine = new HealthProbeEngine(dbms, new HealthSettings.Builder()
+                .withProbeInterval(0L)
+                .withNotifierThreads(1)
+                .withMaxSubscribers(2)
+                .build(), probe);
+        RecordingSubscriber first = new RecordingSubscriber();
+        RecordingSubscriber second = new RecordingSubscriber();
+
+        assertThat(engine.subscribe("neo4j", first), is(true));
+        assertThat(engine.subscribe("neo4j", second), is(true));
+        assertThat(engine.subscribe("neo4j", new RecordingSubscriber()), is(false));
+        assertThat(engine.subscribe("neo4j", first), is(true));
+        Thread.sleep(50L);
+
+        assertThat(first.codes.get(0), is(HealthStatusCode.UP));
+        assertThat(second.codes, is(Collections.singletonList(HealthStatusCode.UP)));
+
+        engine.unsubscribe("neo4j", second);
+        assertThat(engine.subscribe("neo4j", new RecordingSubscriber()), is(true));
+    }
+
+    @Test
+    public void stoppedDatabaseIsNotProbed() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(0L, 0L), probe);
+        DatabaseEventListener listener = listener();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        engine.subscribe("neo4j", subscriber);
+
+        listener.databaseShutdown(context("neo4j"));
+        Health health = engine.snapshot("neo4j").getHealth();
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+        assertThat(health.getDetails().get("description"), is("Neo4j database is stopped!"));
+        verify(probe, times(1)).check(eq(service), anyLong(), any());
+        Thread.sleep(50L);
+        assertThat(subscriber.codes, is(Arrays.asList(HealthStatusCode.UP, HealthStatusCode.OUT_OF_SERVICE)));
+
+        listener.databaseStart(context("neo4j"));
+        Thread.sleep(50L);
+
+        assertThat(subscriber.codes,
+                is(Arrays.asList(HealthStatusCode.UP, HealthStatusCode.OUT_OF_SERVICE, HealthStatusCode.UP)));
+        assertThat(engine.snapshot("neo4j", 60000L, 5000L).getHealth().getStatus().getCode(), is(HealthStatusCode.UP));
+        verify(probe, times(2)).check(eq(service), anyLong(), any());
+    }
+
+    @Test
+    public void panickedDatabaseStaysPanickedWhenStopped() {
+        engine = new HealthProbeEngine(dbms, settings(0L, 0L), probe);
+        DatabaseEventListener listener = listener();
+
+        listener.databasePanic(context("neo4j"));
+        listener.databaseShutdown(context("neo4j"));
+
+        assertThat(engine.snapshot("neo4j").getHealth().getStatus().getCode(), is(HealthStatusCode.DOWN));
+        verify(probe, never()).check(any(), anyLong(), any());
+    }
+
+    @Test
+    public void shutdownOfTheDbmsClosesTheEngine() throws Exception {
+        engine = new HealthProbeEngine(dbms, settings(10L, 60000L), probe);
+        DatabaseEventListener listener = listener();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        engine.subscribe("neo4j", subscriber);
+
+        listener.databaseShutdown(context("system"));
+        Thread.sleep(50L);
+
+        assertThat(subscriber.closed, is(true));
+        verify(dbms).unregisterDatabaseEventListener(listener);
+    }
+
+    @Test
+    public void panicOfTheSystemDatabaseIsDown() throws Exception {
+        when(dbms.database("system")).thenReturn(service);
+        engine = new HealthProbeEngine(dbms, settings(10L, 60000L), probe);
+        DatabaseEventListener listener = listener();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        engine.subscribe("system", subscriber);
+
+        listener.databasePanic(context("system"));
+        Thread.sleep(50L);
+
+        assertThat(subscriber.closed, is(false));
+        assertThat(engine.isClosed(), is(false));
+        assertThat(subscriber.codes, is(Arrays.asList(HealthStatusCode.UP, HealthStatusCode.DOWN)));
+        assertThat(engine.snapshot("system").getHealth().getDetails().get("description"),
+                is("Neo4j database panicked!"));
+
+        listener.databaseShutdown(context("system"));
+        Thread.sleep(50L);
+
+        assertThat(subscriber.closed, is(true));
+        assertThat(engine.isClosed(), is(true));
+    }
+
+    @Test(expected = DatabaseNotFoundException.class)
+    public void missingDatabase() {
+        engine = new HealthProbeEngine(dbms, settings(10L, 60000L), probe);
+
+        try {
+            engine.snapshot("missing");
+        } finally {
+            verify(probe, never()).check(any(), anyLong(), any());
+        }
+    }
+
+    private DatabaseEventListener listener() {
+        ArgumentCaptor<DatabaseEventListener> captor = ArgumentCaptor.forClass(DatabaseEventListener.class);
+        verify(dbms).registerDatabaseEventListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private static DatabaseEventContext context(String dbName) {
+        return () -> dbName;
+    }
+
+    private static HealthSettings settings(long probeInterval, long maxStaleness) {
+        return new HealthSettings.Builder()
+                .withProbeInterval(probeInterval)
+                .withMaxStaleness(maxStaleness)
+                .build();
+    }
+
+    private static final class RecordingSubscriber implements HealthSubscriber {
+
+        private final List<HealthStatusCode> codes = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger heartbeats = new AtomicInteger();
+
+        private volatile boolean connected = true;
+
+        private volatile boolean closed;
+
+        private volatile CountDownLatch blocked;
+
+        @Override
+        public boolean onHealth(String dbName, HealthSnapshot snapshot) {
+            codes.add(snapshot.getHealth().getStatus().getCode());
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return connected;
+        }
+
+        @Override
+        public boolean onHeartbeat() {
+            heartbeats.incrementAndGet();
+            return connected;
+        }
+
+        @Override
+        public void onClose() {
+            closed = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HealthSettingsTest {
+
+    private static final String[] PROPERTIES = {
+            "probe.threads", "fanout.threads", "storage.probe", "counts", "jvm.max.gc.time.ratio", "severity.order",
+            "probe.interval", "timeout", "storage.interval", "storage.min.hit.ratio", "sampler.threads",
+            "canary.interval", "breaker.failures", "history.size", "events.heartbeat", "notifier.threads",
+            "events.max.subscribers", "counts.interval", "slo.interval", "jvm.interval", "disk.interval",
+            "transactions.interval", "admission.max.concurrent", "agent.port", "bolt.interval", "slo.queries",
+            "slo.broken.query", "slo.broken.parameters", "slo.valid.query"
+    };
+
+    @After
+    public void after() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(HealthSettings.PREFIX + property);
+        }
+    }
+
+    @Test
+    public void defaults() {
+        HealthSettings settings = HealthSettings.fromSystemProperties();
+        HealthSettings defaults = new HealthSettings.Builder().build();
+
+        assertThat(settings.getProbeThreads(), is(defaults.getProbeThreads()));
+        assertThat(settings.getSeverityOrder(), is(defaults.getSeverityOrder()));
+    }
+
+    @Test
+    public void validValues() {
+        set("probe.threads", " 4 ");
+        set("fanout.threads", "16");
+        set("storage.probe", "TRUE");
+        set("counts", "(:Movie)>=1");
+        set("jvm.max.gc.time.ratio", "0.5");
+        set("severity.order", "DOWN,DEGRADED,UNKNOWN,UP");
+
+        HealthSettings settings = HealthSettings.fromSystemProperties();
+
+        assertThat(settings.getProbeThreads(), is(4));
+        assertThat(settings.getFanoutThreads(), is(16));
+        assertThat(settings.isStorageProbe(), is(true));
+        assertThat(settings.getCountAssertions(), is("(:Movie)>=1"));
+        assertThat(settings.getMaxGcTimeRatio(), is(0.5));
+        assertThat(settings.getSeverityOrder(), is("DOWN,DEGRADED,UNKNOWN,UP"));
+    }
+
+    @Test
+    public void invalidValuesFallBackToTheDefaults() {
+        HealthSettings defaults = new HealthSettings.Builder().build();
+        set("probe.threads", "0");
+        set("probe.interval", "1s");
+        set("timeout", "1s");
+        set("fanout.threads", "0");
+        set("storage.interval", "-1");
+        set("storage.probe", "yes");
+        set("storage.min.hit.ratio", "NaN");
+        set("sampler.threads", "0");
+        set("canary.interval", "0");
+        set("breaker.failures", "many");
+        set("history.size", "large");
+        set("events.heartbeat", "15s");
+        set("notifier.threads", "0");
+        set("events.max.subscribers", "0");
+        set("counts", "(:Movie)>=");
+        set("counts.interval", "0");
+        set("slo.interval", "0");
+        set("jvm.max.gc.time.ratio", "ten percent");
+        set("jvm.interval", "0");
+        set("disk.interval", "0");
+        set("transactions.interval", "0");
+        set("admission.max.concurrent", "all");
+        set("severity.order", "DOWN,BROKEN");
+        set("agent.port", "http");
+        set("bolt.interval", "0");
+
+        HealthSettings settings = HealthSettings.fromSystemProperties();
+
+        assertThat(settings.getProbeThreads(), is(defaults.getProbeThreads()));
+        assertThat(settings.getProbeInterval(), is(defaults.getProbeInterval()));
+        assertThat(settings.getTimeout(), is(defaults.getTimeout()));
+        assertThat(settings.getFanoutThreads(), is(defaults.getFanoutThreads()));
+        assertThat(settings.getStorageInterval(), is(defaults.getStorageInterval()));
+        assertThat(settings.isStorageProbe(), is(defaults.isStorageProbe()));
+        assertThat(settings.getMinHitRatio(), is(defaults.getMinHitRatio()));
+        assertThat(settings.getSamplerThreads(), is(defaults.getSamplerThreads()));
+        assertThat(settings.getCanaryInterval(), is(defaults.getCanaryInterval()));
+        assertThat(settings.getBreakerFailures(), is(defaults.getBreakerFailures()));
+        assertThat(settings.getHistorySize(), is(defaults.getHistorySize()));
+        assertThat(settings.getHeartbeatInterval(), is(defaults.getHeartbeatInterval()));
+        assertThat(settings.getNotifierThreads(), is(defaults.getNotifierThreads()));
+        assertThat(settings.getMaxSubscribers(), is(defaults.getMaxSubscribers()));
+        assertThat(settings.getCountAssertions(), is(defaults.getCountAssertions()));
+        assertThat(settings.getCountInterval(), is(defaults.getCountInterval()));
+        assertThat(settings.getSloInterval(), is(defaults.getSloInterval()));
+        assertThat(settings.getMaxGcTimeRatio(), is(defaults.getMaxGcTimeRatio()));
+        assertThat(settings.getJvmInterval(), is(defaults.getJvmInterval()));
+        assertThat(settings.getDiskInterval(), is(defaults.getDiskInterval()));
+        assertThat(settings.getTransactionInterval(), is(defaults.getTransactionInterval()));
+        assertThat(settings.getAdmissionMaxConcurrent(), is(defaults.getAdmissionMaxConcurrent()));
+        assertThat(settings.getSeverityOrder(), is(defaults.getSeverityOrder()));
+        assertThat(settings.getAgentPort(), is(defaults.getAgentPort()));
+        assertThat(settings.getBoltInterval(), is(defaults.getBoltInterval()));
+    }
+
+    @Test
+    public void invalidSloQueryIsIgnored() {
+        set("slo.queries", "broken,valid");
+        set("slo.broken.query", "RETURN $x");
+        set("slo.broken.parameters", "{x:");
+        set("slo.valid.query", "RETURN 1");
+
+        HealthSettings settings = HealthSettings.fromSystemProperties();
+
+        assertThat(settings.getSloQueries().size(), is(1));
+        assertThat(settings.getSloQueries().get(0).getName(), is("valid"));
+    }
+
+    private static void set(String property, String value) {
+        System.setProperty(HealthSettings.PREFIX + property, value);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Test;
+
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JvmPressureSamplerTest {
+
+    private static final long NOW = 1_600_000_000_000L;
+
+    @Test
+    public void pausesAreAggregatedOverTheWindow() {
+        JvmPressureMonitor monitor = new JvmPressureMonitor(60000L, pools());
+
+        monitor.record(NOW - 120000L, 900L, Collections.emptyMap());
+        monitor.record(NOW - 30000L, 200L, Collections.emptyMap());
+        monitor.record(NOW - 29000L, 50L, Collections.emptyMap());
+        monitor.record(NOW, 10L, Collections.emptyMap());
+
+        assertThat(monitor.getMaxPause(NOW), is(200L));
+        assertThat(monitor.getPauseTime(NOW), is(260L));
+        assertThat(monitor.getMaxPause(NOW + 45000L), is(10L));
+    }
+
+    @Test
+    public void occupancyAfterCollection() {
+        JvmPressureMonitor monitor = new JvmPressureMonitor(60000L, pools());
+        Map<String, MemoryUsage> usage = new HashMap<>();
+        usage.put("G1 Eden Space", new MemoryUsage(0L, 0L, 100L, -1L));
+        usage.put("G1 Old Gen", new MemoryUsage(0L, 950L, 1000L, 1000L));
+
+        monitor.record(NOW, 0L, usage);
+
+        assertThat(monitor.getOldGenRatio(), is(0.95));
+        assertThat(monitor.getHeapRatio(), is(950.0 / Runtime.getRuntime().maxMemory()));
+
+        monitor.record(NOW, 0L, Collections.emptyMap());
+
+        assertThat(monitor.getOldGenRatio(), is(0.95));
+    }
+
+    @Test
+    public void healthy() {
+        JvmPressureMonitor monitor = new JvmPressureMonitor(60000L, pools());
+        monitor.record(System.currentTimeMillis(), 10L, Collections.emptyMap());
+
+        Health health = sampler(monitor).sample("neo4j", null);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("maxGcPause"), is(10L));
+    }
+
+    @Test
+    public void pressureIsDegraded() {
+        JvmPressureMonitor monitor = new JvmPressureMonitor(60000L, pools());
+        monitor.record(System.currentTimeMillis(), 7000L, Collections.singletonMap("G1 Old Gen",
+                new MemoryUsage(0L, 990L, 1000L, 1000L)));
+
+        Health health = sampler(monitor).sample("neo4j", null);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getDetails().get("degraded"), is(Arrays.asList(
+                "Garbage collection pause is above 1000 ms",
+                "Garbage collection time ratio is above 0.1",
+                "Old generation occupancy after collection is above 0.9")));
+    }
+
+    @Test
+    public void notificationsAreReceived() throws Exception {
+        try (JvmPressureMonitor monitor = new JvmPressureMonitor(60000L)) {
+            monitor.start();
+            System.gc();
+            for (int i = 0; i < 50 && monitor.getHeapRatio() == 0.0; i++) {
+                Thread.sleep(20L);
+            }
+
+            assertThat(monitor.getHeapRatio() > 0.0, is(true));
+        }
+    }
+
+    private static JvmPressureSampler sampler(JvmPressureMonitor monitor) {
+        return new JvmPressureSampler(new HealthSettings.Builder().build(), monitor);
+    }
+
+    private static List<MemoryPoolMXBean> pools() {
+        return Arrays.asList(pool("G1 Eden Space", MemoryType.HEAP), pool("G1 Old Gen", MemoryType.HEAP),
+                pool("Metaspace", MemoryType.NON_HEAP));
+    }
+
+    private static MemoryPoolMXBean pool(String name, MemoryType type) {
+        MemoryPoolMXBean pool = mock(MemoryPoolMXBean.class);
+        when(pool.getName()).thenReturn(name);
+        when(pool.getType()).thenReturn(type);
+        return pool;
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.QueryExecutionType;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionTerminatedException;
+import org.neo4j.kernel.api.exceptions.Status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryLatencySamplerTest {
+
+    private static final Map<String, Object> PARAMETERS = Collections.singletonMap("title", "The Matrix");
+
+    private GraphDatabaseService service;
+
+    private Transaction transaction;
+
+    @Before
+    public void before() {
+        transaction = mock(Transaction.class);
+        Result result = result(QueryExecutionType.QueryType.READ_ONLY);
+        when(transaction.execute(anyString(), anyMap())).thenReturn(result);
+        service = mock(GraphDatabaseService.class);
+        when(service.beginTx(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(transaction);
+    }
+
+    @Test
+    public void firstExecutionIsWarmUp() {
+        QueryLatencySampler sampler = sampler(query("movie", 1000L, null));
+
+        Health first = query(sampler.sample("neo4j", service), "movie");
+        Health second = query(sampler.sample("neo4j", service), "movie");
+
+        assertThat(first.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(first.getDetails().containsKey("warmupLatency"), is(true));
+        assertThat(first.getDetails().containsKey("latency"), is(true));
+        assertThat(second.getDetails().containsKey("warmupLatency"), is(false));
+        assertThat(second.getDetails().get("limit"), is(1000L));
+        verify(transaction, times(3)).execute("MATCH (m:Movie {title: $title}) RETURN m", PARAMETERS);
+    }
+
+    @Test
+    public void restartedDatabaseIsWarmedUpAgain() {
+        QueryLatencySampler sampler = sampler(query("movie", 1000L, null));
+
+        sampler.sample("neo4j", service);
+        sampler.forget("neo4j");
+
+        assertThat(query(sampler.sample("neo4j", service), "movie").getDetails().containsKey("warmupLatency"), is(true));
+    }
+
+    @Test
+    public void slowQueryIsDegraded() {
+        doAnswer(invocation -> {
+            Thread.sleep(20L);
+            return result(QueryExecutionType.QueryType.READ_ONLY);
+        }).when(transaction).execute(anyString(), anyMap());
+
+        Health health = sampler(query("movie", 10L, null), query("fast", 1000L, null)).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(query(health, "movie").getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(query(health, "fast").getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void queriesAreAggregatedWithTheConfiguredOrder() {
+        doAnswer(invocation -> {
+            Thread.sleep(20L);
+            return result(QueryExecutionType.QueryType.READ_ONLY);
+        }).when(transaction).execute(anyString(), anyMap());
+        StatusAggregator aggregator = new StatusAggregator(
+                StatusAggregator.parse("DOWN,OUT_OF_SERVICE,UNKNOWN,UP,DEGRADED"));
+
+        Health health = new QueryLatencySampler(new HealthSettings.Builder()
+                .withSloQueries(Arrays.asList(query("movie", 10L, null), query("fast", 1000L, null)))
+                .build(), aggregator).sample("neo4j", service);
+
+        assertThat(query(health, "movie").getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void timedOutQueryIsDegraded() {
+        when(transaction.execute(anyString(), anyMap()))
+                .thenThrow(new TransactionTerminatedException(Status.Transaction.TransactionTimedOut));
+
+        Health health = sampler(query("movie", 1000L, null)).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(query(health, "movie").getDetails().get("timedOut"), is(true));
+    }
+
+    @Test
+    public void failedQueryIsDown() {
+        when(transaction.execute(anyString(), anyMap())).thenThrow(new QueryExecutionException("Invalid input", null,
+                "Neo.ClientError.Statement.SyntaxError"));
+
+        Health health = sampler(query("movie", 1000L, null)).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(query(health, "movie").getDetails().get("description"), is("Neo4j query failed!"));
+    }
+
+    @Test
+    public void writeQueryIsNotExecuted() {
+        Result result = result(QueryExecutionType.QueryType.READ_WRITE);
+        when(transaction.execute(anyString(), anyMap())).thenReturn(result);
+
+        Health health = query(sampler(query("movie", 1000L, null)).sample("neo4j", service), "movie");
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(health.getDetails().get("description"), is("Neo4j query is not read-only!"));
+        assertThat(health.getDetails().get("queryType"), is("READ_WRITE"));
+        verify(transaction).execute("EXPLAIN MATCH (m:Movie {title: $title}) RETURN m", PARAMETERS);
+        verify(transaction, never()).execute("MATCH (m:Movie {title: $title}) RETURN m", PARAMETERS);
+        verify(transaction, never()).commit();
+    }
+
+    @Test
+    public void queriesAreExecutedOnTheirDatabase() {
+        QueryLatencySampler sampler = sampler(query("movie", 1000L, "movies"));
+
+        assertThat(sampler.sample("neo4j", service).getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        assertThat(sampler(query("movie", 1000L, null)).sample("system", service).getStatus().getCode(),
+                is(HealthStatusCode.UNKNOWN));
+        verify(service, never()).beginTx(anyLong(), eq(TimeUnit.MILLISECONDS));
+        assertThat(sampler.sample("movies", service).getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    private static Result result(QueryExecutionType.QueryType type) {
+        Result result = mock(Result.class);
+        when(result.getQueryExecutionType()).thenReturn(QueryExecutionType.explained(type));
+        return result;
+    }
+
+    private static Health query(Health health, String name) {
+        return (Health) health.getDetails().get(name);
+    }
+
+    private static SloQuery query(String name, long degradedLatency, String database) {
+        return new SloQuery.Builder()
+                .withName(name)
+                .withQuery("MATCH (m:Movie {title: $title}) RETURN m")
+                .withParameters(PARAMETERS)
+                .withDegradedLatency(degradedLatency)
+                .withDatabase(database)
+                .build();
+    }
+
+    private static QueryLatencySampler sampler(SloQuery... queries) {
+        return new QueryLatencySampler(new HealthSettings.Builder()
+                .withSloQueries(Arrays.asList(queries))
+                .build(), new StatusAggregator());
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.common.DependencyResolver;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.io.pagecache.monitoring.PageCacheCounters;
+import org.neo4j.kernel.impl.transaction.log.checkpoint.CheckPointer;
+import org.neo4j.kernel.impl.transaction.log.files.LogFile;
+import org.neo4j.kernel.impl.transaction.log.files.LogFiles;
+import org.neo4j.kernel.impl.transaction.log.files.checkpoint.CheckpointFile;
+import org.neo4j.kernel.impl.transaction.stats.CheckpointCounters;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.storageengine.api.TransactionIdStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StorageSamplerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseAPI service;
+
+    private PageCacheCounters pageCache;
+
+    private TransactionIdStore transactionIdStore;
+
+    private CheckPointer checkPointer;
+
+    private CheckpointCounters checkpointCounters;
+
+    private LogFile logFile;
+
+    @Before
+    public void before() throws Exception {
+        Path log = folder.newFile("neostore.transaction.db.0").toPath();
+        Files.write(log, new byte[1024]);
+
+        pageCache = mock(PageCacheCounters.class);
+        transactionIdStore = mock(TransactionIdStore.class);
+        checkPointer = mock(CheckPointer.class);
+        checkpointCounters = mock(CheckpointCounters.class);
+        logFile = mock(LogFile.class);
+        CheckpointFile checkpointFile = mock(CheckpointFile.class);
+        when(checkpointFile.findLatestCheckpoint()).thenReturn(Optional.empty());
+        LogFiles logFiles = mock(LogFiles.class);
+        when(logFiles.logFiles()).thenReturn(new Path[] { log });
+        when(logFiles.getLogFile()).thenReturn(logFile);
+        when(logFiles.getCheckpointFile()).thenReturn(checkpointFile);
+
+        DependencyResolver resolver = mock(DependencyResolver.class);
+        when(resolver.resolveDependency(PageCacheCounters.class)).thenReturn(pageCache);
+        when(resolver.resolveDependency(TransactionIdStore.class)).thenReturn(transactionIdStore);
+        when(resolver.resolveDependency(CheckPointer.class)).thenReturn(checkPointer);
+        when(resolver.resolveDependency(CheckpointCounters.class)).thenReturn(checkpointCounters);
+        when(resolver.resolveDependency(LogFiles.class)).thenReturn(logFiles);
+        service = mock(GraphDatabaseAPI.class);
+        when(service.getDependencyResolver()).thenReturn(resolver);
+    }
+
+    @Test
+    public void healthy() {
+        when(pageCache.hits()).thenReturn(990L);
+        when(pageCache.faults()).thenReturn(10L);
+        when(transactionIdStore.getLastCommittedTransactionId()).thenReturn(42L);
+        when(checkPointer.lastCheckPointedTransactionId()).thenReturn(40L);
+        when(logFile.getLowestLogVersion()).thenReturn(0L);
+        when(logFile.getHighestLogVersion()).thenReturn(2L);
+
+        Health health = sampler(new HealthSettings.Builder().build()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("pageCacheHitRatio"), is(0.99));
+        assertThat(health.getDetails().get("lastCommittedTxId"), is(42L));
+        assertThat(health.getDetails().get("lastCheckpointedTxId"), is(40L));
+        assertThat(health.getDetails().get("logSize"), is(1024L));
+        assertThat(health.getDetails().get("logFiles"), is(3L));
+        assertThat(health.getDetails().get("pruningLag"), is(0L));
+    }
+
+    @Test
+    public void hitRatioIsCalculatedOverTheInterval() {
+        StorageSampler sampler = sampler(new HealthSettings.Builder().build());
+        when(pageCache.hits()).thenReturn(1000L);
+        sampler.sample("neo4j", service);
+
+        when(pageCache.faults()).thenReturn(500L);
+        when(pageCache.evictions()).thenReturn(300L);
+        Health health = sampler.sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getDetails().get("pageCacheHitRatio"), is(0.0));
+        assertThat(health.getDetails().get("pageCacheEvictions"), is(300L));
+    }
+
+    @Test
+    public void fewPageCacheAccessesAreIgnored() {
+        when(pageCache.hits()).thenReturn(5L);
+        when(pageCache.faults()).thenReturn(5L);
+
+        Health health = sampler(new HealthSettings.Builder().build()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void missingCheckpoint() throws Exception {
+        StorageSampler sampler = sampler(new HealthSettings.Builder().withMaxCheckpointAge(10L).build());
+        when(transactionIdStore.getLastCommittedTransactionId()).thenReturn(42L);
+        when(checkPointer.lastCheckPointedTransactionId()).thenReturn(40L);
+        sampler.sample("neo4j", service);
+        Thread.sleep(20L);
+
+        assertThat(sampler.sample("neo4j", service).getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+
+        when(checkpointCounters.numberOfCheckPoints()).thenReturn(1L);
+
+        assertThat(sampler.sample("neo4j", service).getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void logSize() {
+        Health health = sampler(new HealthSettings.Builder().withMaxLogSize(1000L).build()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+    }
+
+    @Test
+    public void notAvailable() {
+        Health health = sampler(new HealthSettings.Builder().build()).sample("neo4j", mock(GraphDatabaseService.class));
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    private static StorageSampler sampler(HealthSettings settings) {
+        return new StorageSampler(settings);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.common.DependencyResolver;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.api.KernelTransactionHandle;
+import org.neo4j.kernel.api.query.ExecutingQuery;
+import org.neo4j.kernel.impl.api.KernelTransactions;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TransactionSamplerTest {
+
+    private GraphDatabaseAPI service;
+
+    private Set<KernelTransactionHandle> handles;
+
+    @Before
+    public void before() {
+        handles = new HashSet<>();
+        KernelTransactions transactions = mock(KernelTransactions.class);
+        when(transactions.activeTransactions()).thenReturn(handles);
+        DependencyResolver resolver = mock(DependencyResolver.class);
+        when(resolver.resolveDependency(KernelTransactions.class)).thenReturn(transactions);
+        service = mock(GraphDatabaseAPI.class);
+        when(service.getDependencyResolver()).thenReturn(resolver);
+    }
+
+    @Test
+    public void noTransactions() {
+        Health health = sampler(new HealthSettings.Builder().build()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("active"), is(0));
+        assertThat(health.getDetails().get("oldestAge"), is(0L));
+    }
+
+    @Test
+    public void oldestTransactionsAreReported() {
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 10; i++) {
+            handles.add(handle(i, now - i * 1000L, false));
+        }
+
+        Health health = sampler(new HealthSettings.Builder().withTransactionTop(3).build()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().get("active"), is(10));
+        assertThat((Long) health.getDetails().get("oldestAge") >= 10000L, is(true));
+        List<?> oldest = (List<?>) health.getDetails().get("oldest");
+        assertThat(oldest.size(), is(3));
+        assertThat(((Map<?, ?>) oldest.get(0)).get("id"), is("neo4j-transaction-10"));
+        assertThat(((Map<?, ?>) oldest.get(2)).get("id"), is("neo4j-transaction-8"));
+    }
+
+    @Test
+    public void oldTransactionIsDegraded() {
+        handles.add(handle(1, System.currentTimeMillis() - 60000L, false));
+
+        Health health = sampler(new HealthSettings.Builder().withMaxTransactionAge(30000L).build())
+                .sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+    }
+
+    @Test
+    public void lockWaitsAreCounted() {
+        long now = System.currentTimeMillis();
+        handles.add(handle(1, now, true));
+        handles.add(handle(2, now, true));
+        handles.add(handle(3, now, false));
+
+        Health health = sampler(new HealthSettings.Builder().withMaxLockWaiting(1).build()).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat(health.getDetails().get("waitingOnLocks"), is(2));
+    }
+
+    @Test
+    public void closedTransactionsAreIgnored() {
+        KernelTransactionHandle handle = handle(1, System.currentTimeMillis() - 60000L, false);
+        when(handle.isClosing()).thenReturn(true);
+        handles.add(handle);
+
+        Health health = sampler(new HealthSettings.Builder().build()).sample("neo4j", service);
+
+        assertThat(health.getDetails().get("active"), is(0));
+    }
+
+    @Test
+    public void notAvailable() {
+        Health health = sampler(new HealthSettings.Builder().build()).sample("neo4j", mock(GraphDatabaseService.class));
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+    }
+
+    private static KernelTransactionHandle handle(long id, long startTime, boolean waiting) {
+        ExecutingQuery query = mock(ExecutingQuery.class);
+        when(query.id()).thenReturn("query-" + id);
+        when(query.reportedWaitingTimeNanos()).thenReturn(100L);
+        when(query.totalWaitingTimeNanos(anyLong())).thenReturn(waiting ? 200L : 100L);
+        KernelTransactionHandle handle = mock(KernelTransactionHandle.class);
+        when(handle.isOpen()).thenReturn(true);
+        when(handle.startTime()).thenReturn(startTime);
+        when(handle.getUserTransactionName()).thenReturn("neo4j-transaction-" + id);
+        when(handle.executingQuery()).thenReturn(Optional.of(query));
+        return handle;
+    }
+
+    private static TransactionSampler sampler(HealthSettings settings) {
+        return new TransactionSampler(settings);
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.brinkus.labs.neo4j.health.probe;
+
+import com.brinkus.labs.neo4j.health.type.Health;
+import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionFailureException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteCanarySamplerTest {
+
+    private GraphDatabaseService service;
+
+    private Transaction transaction;
+
+    @Before
+    public void before() {
+        transaction = mock(Transaction.class);
+        when(transaction.execute(anyString(), anyMap())).thenReturn(mock(Result.class));
+        service = mock(GraphDatabaseService.class);
+        when(service.beginTx(anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(transaction);
+    }
+
+    @Test
+    public void up() {
+        Health health = sampler(1000L, 2000L).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+        assertThat(health.getDetails().containsKey("commitLatency"), is(true));
+        verify(transaction).commit();
+    }
+
+    @Test
+    public void slowCommitIsDegraded() {
+        doAnswer(invocation -> {
+            Thread.sleep(50L);
+            return null;
+        }).when(transaction).commit();
+
+        Health health = sampler(10L, 2000L).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DEGRADED));
+        assertThat((Long) health.getDetails().get("commitLatency") >= 50L, is(true));
+        assertThat(health.getDetails().get("limit"), is(10L));
+    }
+
+    @Test
+    public void verySlowCommitIsDown() {
+        doAnswer(invocation -> {
+            Thread.sleep(50L);
+            return null;
+        }).when(transaction).commit();
+
+        Health health = sampler(10L, 20L).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(health.getDetails().get("limit"), is(20L));
+    }
+
+    @Test
+    public void failedCommitIsDown() {
+        doThrow(new TransactionFailureException("No space left on device")).when(transaction).commit();
+
+        Health health = sampler(1000L, 2000L).sample("neo4j", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+        assertThat(health.getDetails().get("error"),
+                is("org.neo4j.graphdb.TransactionFailureException: No space left on device"));
+    }
+
+    @Test
+    public void systemDatabaseIsNotWritten() {
+        Health health = sampler(1000L, 2000L).sample("system", service);
+
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UNKNOWN));
+        verify(service, never()).beginTx(anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    private static WriteCanarySampler sampler(long degradedLatency, long downLatency) {
+        return new WriteCanarySampler(new HealthSettings.Builder()
+                .withCanaryDegradedLatency(degradedLatency)
+                .withCanaryDownLatency(downLatency)
+                .build());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.brinkus.labs.neo4j.health.procedure;
+
+import com.brinkus.labs.neo4j.health.unmanaged.HealthResource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.neo4j.test.rule.SuppressOutput;
+import org.neo4j.test.server.HTTP;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HealthProceduresITest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        // the first query of an embedded database can be slow to plan
+        System.setProperty("labs.health.timeout", "60000");
+        // only the requests probe the databases
+        System.setProperty("labs.health.probe.interval", "0");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty("labs.health.timeout");
+        System.clearProperty("labs.health.probe.interval");
+    }
+
+    @Rule
+    public SuppressOutput suppressOutput = SuppressOutput.suppressAll();
+
+    @Test
+    public void checkReturnsTheSameAsTheEndpoint() throws Exception {
+        try (Neo4j server = server()) {
+            HTTP.Response response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j").toString());
+            assertThat(response.status(), is(200));
+
+            Map<String, Object> row = server.defaultDatabaseService().executeTransactionally(
+                    "CALL health.check('neo4j')", Collections.emptyMap(), result -> result.next());
+
+            assertThat(row.get("database"), is("neo4j"));
+            assertThat(row.get("status"), is(response.stringFromContent("status")));
+            assertThat(((Map<?, ?>) row.get("details")).get("description"),
+                    is(response.stringFromContent("description")));
+        }
+    }
+
+    @Test
+    public void checkIsServedFromTheSnapshot() throws Exception {
+        try (Neo4j server = server()) {
+            GraphDatabaseService db = server.defaultDatabaseService();
+            for (int i = 0; i < 10; i++) {
+                String status = db.executeTransactionally("CALL health.check('neo4j') YIELD status RETURN status",
+                        Collections.emptyMap(), result -> (String) result.next().get("status"));
+                assertThat(status, is("UP"));
+            }
+
+            HTTP.Response metrics = HTTP.GET(server.httpURI().resolve("labs/health/_metrics").toString());
+
+            assertThat(metrics.rawContent().contains(
+                    "neo4j_health_probe_latency_seconds_count{database=\"neo4j\",phase=\"query\"} 1\n"), is(true));
+        }
+    }
+
+    @Test
+    public void all() throws Exception {
+        try (Neo4j server = server()) {
+            List<Map<String, Object>> rows = server.defaultDatabaseService().executeTransactionally(
+                    "CALL health.all()", Collections.emptyMap(),
+                    result -> result.stream().map(HashMap::new).collect(Collectors.toList()));
+
+            Map<Object, Object> statuses = rows.stream()
+                    .collect(Collectors.toMap(row -> row.get("database"), row -> row.get("status")));
+
+            assertThat(statuses.get("neo4j"), is("UP"));
+            assertThat(statuses.get("system"), is("UP"));
+        }
+    }
+
+    private static Neo4j server() {
+        return Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .withProcedure(HealthProcedures.class)
+                .withConfig(GraphDatabaseSettings.procedure_unrestricted, Collections.singletonList("health.*"))
+                .withFixture("CREATE (:Movie {title:'The Matrix', released:1999})")
+                .build();
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.brinkus.labs.neo4j.health.type;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HealthJsonWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void empty() throws Exception {
+        assertSameAsJackson(new Health.Builder().build());
+    }
+
+    @Test
+    public void statuses() throws Exception {
+        for (HealthStatusCode code : HealthStatusCode.values()) {
+            assertSameAsJackson(new Health.Builder().status(code).withDetail("description", code.name()).build());
+        }
+    }
+
+    @Test
+    public void exception() throws Exception {
+        assertSameAsJackson(new Health.Builder().down()
+                .withDetail("description", "Neo4j health check failed!")
+                .withException(new NullPointerException("null"))
+                .build());
+    }
+
+    @Test
+    public void strings() throws Exception {
+        assertSameAsJackson(new Health.Builder().up()
+                .withDetail("quote", "\"quoted\" \\ /slash/")
+                .withDetail("control", "\n\r\t\b\f\u0000\u0001\u001f\u007f")
+                .withDetail("unicode", "árvíztűrő € 😀 \uD800")
+                .withDetail("ke\"y\n", "")
+                .build());
+    }
+
+    @Test
+    public void numbers() throws Exception {
+        assertSameAsJackson(new Health.Builder().up()
+                .withDetail("int", 42)
+                .withDetail("long", Long.MIN_VALUE)
+                .withDetail("max", Long.MAX_VALUE)
+                .withDetail("negative", -7L)
+                .withDetail("zero", 0)
+                .withDetail("short", (short) 3)
+                .withDetail("byte", (byte) -1)
+                .withDetail("double", 1.0)
+                .withDetail("small", 1.0E-10)
+                .withDetail("float", 1.5f)
+                .withDetail("nan", Double.NaN)
+                .withDetail("infinity", Double.NEGATIVE_INFINITY)
+                .withDetail("decimal", new BigDecimal("1E+3"))
+                .withDetail("integer", new BigInteger("123456789012345678901234567890"))
+                .withDetail("boolean", true)
+                .withDetail("false", false)
+                .build());
+    }
+
+    @Test
+    public void nested() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", null);
+        map.put("c", Collections.emptyMap());
+        assertSameAsJackson(new Health.Builder().up()
+                .withDetail("null", null)
+                .withDetail("map", map)
+                .withDetail("list", Arrays.asList(1, null, "x"))
+                .withDetail("empty", Collections.emptyList())
+                .withDetail("array", new Object[] { "a", 2 })
+                .withDetail("longs", new long[] { 1, 2 })
+                .withDetail("enum", TimeUnit.SECONDS)
+                .withDetail("health", new Health.Builder().down().withDetail("error", "x").build())
+                .build());
+    }
+
+    @Test
+    public void detailIsReplaced() throws Exception {
+        Health health = new Health.Builder().up()
+                .withDetail("description", "first")
+                .withDetail("description", "second")
+                .build();
+
+        assertThat(health.getDetails().size(), is(1));
+        assertSameAsJackson(health);
+    }
+
+    @Test
+    public void builderIsNotShared() {
+        Health.Builder builder = new Health.Builder().up().withDetail("a", 1);
+        Health first = builder.build();
+        Health second = builder.withDetail("b", 2).build();
+
+        assertThat(first.getDetails().size(), is(1));
+        assertThat(first, not(second));
+    }
+
+    @Test
+    public void equalityIgnoresDetailOrder() {
+        Health first = new Health.Builder().up().withDetail("a", 1).withDetail("b", 2).build();
+        Health second = new Health.Builder().up().withDetail("b", 2).withDetail("a", 1).build();
+
+        assertThat(first, is(second));
+        assertThat(first.hashCode(), is(second.hashCode()));
+    }
+
+    private void assertSameAsJackson(Health health) throws Exception {
+        assertThat(HealthJsonWriter.toBytes(health), is(mapper.writeValueAsBytes(health)));
+    }
+
+}
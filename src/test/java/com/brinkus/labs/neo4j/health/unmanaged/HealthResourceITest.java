@@ -1,17 +1,39 @@
 package com.brinkus.labs.neo4j.health.unmanaged;
 
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 import org.neo4j.test.rule.SuppressOutput;
 import org.neo4j.test.server.HTTP;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertThat;
 
 public class HealthResourceITest {
 
+    @BeforeClass
+    public static void beforeClass() {
+        // the first query of an embedded database can be slow to plan
+        System.setProperty("labs.health.timeout", "60000");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        System.clearProperty("labs.health.timeout");
+    }
+
     @Rule
     public SuppressOutput suppressOutput = SuppressOutput.suppressAll();
 
@@ -45,6 +67,214 @@ public class HealthResourceITest {
             assertThat(response.status(), is(200));
             assertThat(response.stringFromContent("status"), is("OUT_OF_SERVICE"));
             assertThat(response.stringFromContent("description"), is("Neo4j has no available nodes!"));
+
+            HTTP.Response ready = HTTP.GET(server.httpURI().resolve("labs/health/neo4j/ready").toString());
+
+            assertThat(ready.status(), is(503));
+            assertThat(ready.stringFromContent("status"), is("OUT_OF_SERVICE"));
+
+            HTTP.Response live = HTTP.GET(server.httpURI().resolve("labs/health/_live").toString());
+
+            assertThat(live.status(), is(200));
+            assertThat(live.stringFromContent("status"), is("UP"));
+
+            // the name without the underscore is a database name, and no such database exists
+            HTTP.Response database = HTTP.GET(server.httpURI().resolve("labs/health/live").toString());
+
+            assertThat(database.status(), is(500));
+        }
+    }
+
+    @Test
+    public void canaryIsNotData() throws Exception {
+        System.setProperty("labs.health.canary.probe", "true");
+        System.setProperty("labs.health.canary.degraded.latency", "60000");
+        System.setProperty("labs.health.canary.down.latency", "60000");
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .build()) {
+
+            HTTP.Response response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j").toString());
+            for (int i = 0; i < 50 && response.get("canary") == null; i++) {
+                Thread.sleep(100L);
+                response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j?maxStaleness=0").toString());
+            }
+            response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j?maxStaleness=0").toString());
+
+            assertThat(response.get("canary").get("status").asText(), is("UP"));
+            assertThat(server.defaultDatabaseService().executeTransactionally(
+                    "MATCH (n:HealthCanary) RETURN count(n) AS count", Collections.emptyMap(),
+                    result -> result.next().get("count")), is(1L));
+            assertThat(response.stringFromContent("status"), is("OUT_OF_SERVICE"));
+            assertThat(response.stringFromContent("description"), is("Neo4j has no available nodes!"));
+        } finally {
+            System.clearProperty("labs.health.canary.probe");
+            System.clearProperty("labs.health.canary.degraded.latency");
+            System.clearProperty("labs.health.canary.down.latency");
+        }
+    }
+
+    @Test
+    public void aggregate() throws Exception {
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .build()) {
+
+            HTTP.Response response = HTTP.GET(server.httpURI().resolve("labs/health?db=neo4j,system").toString());
+
+            assertThat(response.status(), is(200));
+            assertThat(response.stringFromContent("status"), is("OUT_OF_SERVICE"));
+            assertThat(response.get("databases").get("neo4j").get("status").asText(), is("OUT_OF_SERVICE"));
+            assertThat(response.get("databases").get("system").get("status").asText(), is("UP"));
+
+            HTTP.Response metrics = HTTP.GET(server.httpURI().resolve("labs/health/_metrics").toString());
+
+            assertThat(metrics.status(), is(200));
+            assertThat(metrics.rawContent().contains("neo4j_health_probe_results_total{database=\"system\",status=\"UP\"} 1"), is(true));
+        }
+    }
+
+    @Test
+    public void samplers() throws Exception {
+        System.setProperty("labs.health.storage.probe", "true");
+        System.setProperty("labs.health.canary.probe", "true");
+        System.setProperty("labs.health.canary.degraded.latency", "60000");
+        System.setProperty("labs.health.canary.down.latency", "60000");
+        System.setProperty("labs.health.counts", "(:Movie)>=1,(:Person)-[:ACTED_IN]->()>=1");
+        System.setProperty("labs.health.slo.queries", "movie");
+        System.setProperty("labs.health.slo.movie.query", "MATCH (m:Movie {title: $title}) RETURN m.title");
+        System.setProperty("labs.health.slo.movie.parameters", "{\"title\":\"The Matrix\"}");
+        System.setProperty("labs.health.slo.movie.degraded.latency", "60000");
+        System.setProperty("labs.health.disk.probe", "true");
+        System.setProperty("labs.health.disk.degraded.free.ratio", "0");
+        System.setProperty("labs.health.disk.down.free.ratio", "0");
+        System.setProperty("labs.health.disk.degraded.time.to.full", "0");
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .withFixture("CREATE (:Person {name:'Keanu Reeves'})-[:ACTED_IN]->(:Movie {title:'The Matrix'})")
+                .build()) {
+
+            HTTP.Response response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j").toString());
+            for (int i = 0; i < 50 && (response.get("storage") == null || response.get("canary") == null
+                    || response.get("counts") == null || response.get("slo") == null
+                    || response.get("disk") == null); i++) {
+                Thread.sleep(100L);
+                response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j?maxStaleness=0").toString());
+            }
+
+            assertThat(response.status(), is(200));
+            assertThat(response.stringFromContent("status"), is("UP"));
+            assertThat(response.get("storage").get("status").asText(), is("UP"));
+            assertThat(response.get("storage").get("lastCommittedTxId").asLong() > 0, is(true));
+            assertThat(response.get("storage").get("logSize").asLong() > 0, is(true));
+            assertThat(response.get("canary").get("status").asText(), is("UP"));
+            assertThat(response.get("counts").get("status").asText(), is("UP"));
+            assertThat(response.get("counts").get("(:Movie)").asLong(), is(1L));
+            assertThat(response.get("counts").get("(:Person)-[:ACTED_IN]->()").asLong(), is(1L));
+            assertThat(response.get("slo").get("status").asText(), is("UP"));
+            assertThat(response.get("slo").get("movie").get("limit").asLong(), is(60000L));
+            assertThat(response.get("disk").get("store").get("usableSpace").asLong() > 0, is(true));
+            assertThat(response.get("disk").get("transactionLogs").get("totalSpace").asLong() > 0, is(true));
+        } finally {
+            System.clearProperty("labs.health.storage.probe");
+            System.clearProperty("labs.health.canary.probe");
+            System.clearProperty("labs.health.canary.degraded.latency");
+            System.clearProperty("labs.health.canary.down.latency");
+            System.clearProperty("labs.health.counts");
+            System.clearProperty("labs.health.slo.queries");
+            System.clearProperty("labs.health.slo.movie.query");
+            System.clearProperty("labs.health.slo.movie.parameters");
+            System.clearProperty("labs.health.slo.movie.degraded.latency");
+            System.clearProperty("labs.health.disk.probe");
+            System.clearProperty("labs.health.disk.degraded.free.ratio");
+            System.clearProperty("labs.health.disk.down.free.ratio");
+            System.clearProperty("labs.health.disk.degraded.time.to.full");
+        }
+    }
+
+    @Test
+    public void events() throws Exception {
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .build()) {
+
+            HttpURLConnection connection = (HttpURLConnection) server.httpURI().resolve("labs/health/neo4j/events")
+                    .toURL().openConnection();
+            connection.setReadTimeout(60000);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+
+                assertThat(connection.getResponseCode(), is(200));
+                assertThat(connection.getContentType(), startsWith("text/event-stream"));
+                assertThat(reader.readLine(), is("event: health"));
+                assertThat(reader.readLine(), startsWith("data: {\"status\":"));
+                assertThat(reader.readLine(), is(""));
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Test
+    public void transactions() throws Exception {
+        System.setProperty("labs.health.transactions.probe", "true");
+        System.setProperty("labs.health.transactions.interval", "100");
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .withFixture("CREATE (:Movie {title:'The Matrix'})")
+                .build()) {
+
+            GraphDatabaseService database = server.defaultDatabaseService();
+            Transaction holder = database.beginTx();
+            holder.execute("MATCH (m:Movie) SET m.released = 1999").close();
+            Thread waiter = new Thread(() -> database.executeTransactionally("MATCH (m:Movie) SET m.released = 2000"));
+            waiter.start();
+            try {
+                HTTP.Response response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j").toString());
+                for (int i = 0; i < 50 && (response.get("transactions") == null
+                        || response.get("transactions").get("waitingOnLocks").asInt() == 0); i++) {
+                    Thread.sleep(100L);
+                    response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j?maxStaleness=0").toString());
+                }
+
+                assertThat(response.get("transactions").get("active").asInt() >= 2, is(true));
+                assertThat(response.get("transactions").get("waitingOnLocks").asInt(), is(1));
+                assertThat(response.get("transactions").get("oldest").get(0).get("id").asText(),
+                        startsWith("neo4j-transaction-"));
+            } finally {
+                holder.rollback();
+                holder.close();
+                waiter.join();
+            }
+        } finally {
+            System.clearProperty("labs.health.transactions.probe");
+            System.clearProperty("labs.health.transactions.interval");
+        }
+    }
+
+    @Test
+    public void bolt() throws Exception {
+        System.setProperty("labs.health.bolt.probe", "true");
+        System.setProperty("labs.health.bolt.interval", "100");
+        System.setProperty("labs.health.bolt.degraded.latency", "0");
+        try (Neo4j server = Neo4jBuilders.newInProcessBuilder()
+                .withUnmanagedExtension("/labs", HealthResource.class)
+                .build()) {
+
+            HTTP.Response response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j").toString());
+            for (int i = 0; i < 50 && response.get("bolt") == null; i++) {
+                Thread.sleep(100L);
+                response = HTTP.GET(server.httpURI().resolve("labs/health/neo4j?maxStaleness=0").toString());
+            }
+
+            assertThat(response.get("bolt").get("status").asText(), is("UP"));
+            assertThat(response.get("bolt").get("version").asText(), is("4.2"));
+            assertThat(response.get("bolt").get("address").asText(), is(server.boltURI().getHost() + ":"
+                    + server.boltURI().getPort()));
+        } finally {
+            System.clearProperty("labs.health.bolt.probe");
+            System.clearProperty("labs.health.bolt.interval");
+            System.clearProperty("labs.health.bolt.degraded.latency");
         }
     }
 
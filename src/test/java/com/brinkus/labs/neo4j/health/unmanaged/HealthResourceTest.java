@@ -1,5 +1,7 @@
 package com.brinkus.labs.neo4j.health.unmanaged;
 
+import com.brinkus.labs.neo4j.health.probe.AdmissionController;
+import com.brinkus.labs.neo4j.health.probe.HealthProbeEngine;
 import com.brinkus.labs.neo4j.health.type.Health;
 import com.brinkus.labs.neo4j.health.type.HealthStatusCode;
 import com.fasterxml.jackson.core.JsonParser;
@@ -14,17 +16,32 @@ import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionTerminatedException;
+import org.neo4j.kernel.api.exceptions.Status;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class HealthResourceTest {
@@ -82,7 +99,7 @@ public class HealthResourceTest {
 
     @Test
     public void serviceUp() throws Exception {
-        when(service.executeTransactionally(anyString(), anyMap(), any())).thenReturn(1L);
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
         when(service.isAvailable(1000)).thenReturn(true);
 
         Response response = healthCheckResource.health("neo4j");
@@ -95,7 +112,7 @@ public class HealthResourceTest {
 
     @Test
     public void outOfService() throws Exception {
-        when(service.executeTransactionally(anyString(), anyMap(), any())).thenReturn(0L);
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(0L);
         when(service.isAvailable(1000)).thenReturn(true);
 
         Response response = healthCheckResource.health("neo4j");
@@ -134,4 +151,268 @@ public class HealthResourceTest {
         assertThat(health.getDetails().get("error"), is("java.lang.NullPointerException: null"));
     }
 
+    @Test
+    public void notModified() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+
+        Response response = healthCheckResource.health("neo4j");
+        String etag = response.getHeaderString(HttpHeaders.ETAG);
+        assertThat(etag, not(nullValue()));
+
+        Response cached = healthCheckResource.health("neo4j", null, null, etag);
+        assertThat(cached.getStatus(), is(304));
+        assertThat(cached.getEntity(), nullValue());
+        assertThat(cached.getHeaderString(HttpHeaders.ETAG), is(etag));
+
+        Response weak = healthCheckResource.health("neo4j", null, null, "\"other\", W/" + etag);
+        assertThat(weak.getStatus(), is(304));
+
+        verify(service, times(1)).isAvailable(1000);
+    }
+
+    @Test
+    public void modified() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+
+        String etag = healthCheckResource.health("neo4j").getHeaderString(HttpHeaders.ETAG);
+        Thread.sleep(2L);
+
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(0L);
+        Response response = healthCheckResource.health("neo4j", 0L, null, etag);
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getHeaderString(HttpHeaders.ETAG), not(etag));
+        Health health = mapper.readValue(((byte[]) response.getEntity()), Health.class);
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.OUT_OF_SERVICE));
+    }
+
+    @Test
+    public void overloaded() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+        healthCheckResource.health("neo4j");
+
+        AdmissionController admission = HealthProbeEngine.of(dbms).getAdmission();
+        while (admission.tryAcquire()) {
+            // take every permit
+        }
+        Thread.sleep(2L);
+
+        Response stale = healthCheckResource.health("neo4j", 0L, null, null);
+        assertThat(stale.getStatus(), is(200));
+        assertThat(stale.getHeaderString("Warning"), is("110 - \"Response is Stale\""));
+        Health health = mapper.readValue(((byte[]) stale.getEntity()), Health.class);
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+
+        Response fresh = healthCheckResource.health("neo4j");
+        assertThat(fresh.getStatus(), is(200));
+        assertThat(fresh.getHeaderString("Warning"), nullValue());
+
+        Response rejected = healthCheckResource.health("other", null, null, null);
+        assertThat(rejected.getStatus(), is(429));
+        assertThat(rejected.getHeaderString(HttpHeaders.RETRY_AFTER), is("1"));
+
+        verify(service, times(1)).isAvailable(1000);
+        verify(dbms, never()).database("other");
+    }
+
+    @Test
+    public void eventsAreAdmitted() throws Exception {
+        System.setProperty("labs.health.max.staleness", "0");
+        try {
+            when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+            when(service.isAvailable(1000)).thenReturn(true);
+            AdmissionController admission = HealthProbeEngine.of(dbms).getAdmission();
+            while (admission.tryAcquire()) {
+                // take every permit
+            }
+
+            Response rejected = healthCheckResource.events("neo4j");
+            assertThat(rejected.getStatus(), is(429));
+            verify(service, never()).isAvailable(1000);
+
+            admission.release();
+            healthCheckResource.health("neo4j");
+            assertThat(admission.tryAcquire(), is(true));
+            Thread.sleep(2L);
+
+            // the stale snapshot is sent without probing
+            Response accepted = healthCheckResource.events("neo4j");
+            assertThat(accepted.getStatus(), is(200));
+            verify(service, times(1)).isAvailable(1000);
+            ((HealthEventOutput) accepted.getEntity()).close();
+        } finally {
+            System.clearProperty("labs.health.max.staleness");
+        }
+    }
+
+    @Test
+    public void aggregate() throws Exception {
+        GraphDatabaseService system = mock(GraphDatabaseService.class);
+        when(dbms.listDatabases()).thenReturn(Arrays.asList("neo4j", "system"));
+        when(dbms.database("system")).thenReturn(system);
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+        when(system.isAvailable(1000)).thenReturn(false);
+
+        Response response = healthCheckResource.aggregate(null, null, null, null);
+        assertThat(response.getStatus(), is(200));
+        Map<?, ?> health = new ObjectMapper().readValue(((byte[]) response.getEntity()), Map.class);
+
+        assertThat(health.get("status"), is("DOWN"));
+        Map<?, ?> databases = (Map<?, ?>) health.get("databases");
+        assertThat(databases.size(), is(2));
+        assertThat(((Map<?, ?>) databases.get("neo4j")).get("status"), is("UP"));
+        assertThat(((Map<?, ?>) databases.get("system")).get("status"), is("DOWN"));
+    }
+
+    @Test
+    public void aggregateSelected() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+
+        Response response = healthCheckResource.aggregate("neo4j, neo4j,", null, null, null);
+        assertThat(response.getStatus(), is(200));
+        Map<?, ?> health = new ObjectMapper().readValue(((byte[]) response.getEntity()), Map.class);
+
+        assertThat(health.get("status"), is("UP"));
+        assertThat(((Map<?, ?>) health.get("databases")).keySet().size(), is(1));
+    }
+
+    @Test
+    public void timedOut() throws Exception {
+        when(service.isAvailable(anyLong())).thenReturn(true);
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(2000L);
+            return 1L;
+        });
+
+        long start = System.nanoTime();
+        Response response = healthCheckResource.health("neo4j", null, 100L, null);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        assertThat(response.getStatus(), is(200));
+        assertThat(elapsed < 1000L, is(true));
+        Map<?, ?> health = new ObjectMapper().readValue(((byte[]) response.getEntity()), Map.class);
+
+        assertThat(health.get("status"), is("UNKNOWN"));
+        assertThat(health.get("timedOut"), is(true));
+        assertThat(health.get("timeout"), is(100));
+    }
+
+    @Test
+    public void transactionTimedOut() throws Exception {
+        when(service.isAvailable(1000)).thenReturn(true);
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any()))
+                .thenThrow(new TransactionTerminatedException(Status.Transaction.TransactionTimedOut));
+
+        Response response = healthCheckResource.health("neo4j");
+        Map<?, ?> health = new ObjectMapper().readValue(((byte[]) response.getEntity()), Map.class);
+
+        assertThat(health.get("status"), is("UNKNOWN"));
+        assertThat(health.get("timedOut"), is(true));
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+        healthCheckResource.health("neo4j");
+
+        Response response = healthCheckResource.metrics();
+        assertThat(response.getStatus(), is(200));
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(stream);
+        String metrics = stream.toString("UTF-8");
+
+        assertThat(metrics.contains("# TYPE neo4j_health_probe_latency_seconds histogram\n"), is(true));
+        assertThat(metrics.contains("neo4j_health_probe_latency_seconds_bucket{database=\"neo4j\",phase=\"query\",le=\"0.0001\"} "), is(true));
+        assertThat(metrics.contains("neo4j_health_probe_latency_seconds_bucket{database=\"neo4j\",phase=\"query\",le=\"30\"} 1\n"), is(true));
+        assertThat(metrics.contains("neo4j_health_probe_latency_seconds_bucket{database=\"neo4j\",phase=\"query\",le=\"+Inf\"} 1\n"), is(true));
+        assertThat(metrics.contains("neo4j_health_probe_latency_seconds_count{database=\"neo4j\",phase=\"query\"} 1\n"), is(true));
+        assertThat(metrics.contains("neo4j_health_probe_results_total{database=\"neo4j\",status=\"UP\"} 1\n"), is(true));
+        assertThat(metrics.contains("neo4j_health_probe_results_total{database=\"neo4j\",status=\"DOWN\"} 0\n"), is(true));
+        // the breaker is not enabled
+        assertThat(metrics.contains("neo4j_health_breaker_consecutive_probes{"), is(false));
+    }
+
+    @Test
+    public void ready() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+
+        Response response = healthCheckResource.ready("neo4j", null, null, null);
+        assertThat(response.getStatus(), is(200));
+        Health health = mapper.readValue(((byte[]) response.getEntity()), Health.class);
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.UP));
+    }
+
+    @Test
+    public void notReady() throws Exception {
+        when(service.isAvailable(1000)).thenReturn(false);
+
+        Response response = healthCheckResource.ready("neo4j", null, null, null);
+        assertThat(response.getStatus(), is(503));
+        Health health = mapper.readValue(((byte[]) response.getEntity()), Health.class);
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+    }
+
+    @Test
+    public void notReadyIsNeverNotModified() throws Exception {
+        when(service.isAvailable(1000)).thenReturn(false);
+
+        String etag = healthCheckResource.health("neo4j").getHeaderString(HttpHeaders.ETAG);
+        Response response = healthCheckResource.ready("neo4j", null, null, etag);
+
+        assertThat(response.getStatus(), is(503));
+        Health health = mapper.readValue(((byte[]) response.getEntity()), Health.class);
+        assertThat(health.getStatus().getCode(), is(HealthStatusCode.DOWN));
+    }
+
+    @Test
+    public void history() throws Exception {
+        when(service.executeTransactionally(anyString(), anyMap(), any(), any())).thenReturn(1L);
+        when(service.isAvailable(1000)).thenReturn(true);
+        healthCheckResource.health("neo4j");
+        Thread.sleep(2L);
+        healthCheckResource.health("neo4j", 0L, null, null);
+
+        Response response = healthCheckResource.history("neo4j");
+        assertThat(response.getStatus(), is(200));
+        JsonNode history = new ObjectMapper().readTree((byte[]) response.getEntity());
+
+        assertThat(history.get("size").asInt(), is(2));
+        assertThat(history.get("availability").asDouble(), is(100.0));
+        assertThat(history.get("latency").has("p99"), is(true));
+        assertThat(history.get("entries").get(1).get("status").asText(), is("UP"));
+        assertThat(history.get("entries").get(1).has("timestamp"), is(true));
+    }
+
+    @Test
+    public void historyOfUnknownDatabase() throws Exception {
+        Response response = healthCheckResource.history("neo4j");
+
+        assertThat(response.getStatus(), is(404));
+        verify(dbms, never()).database(anyString());
+    }
+
+    @Test
+    public void live() throws Exception {
+        byte[] entity = healthCheckResource.live();
+
+        assertThat(new String(entity, "UTF-8"), is("{\"status\":\"UP\"}"));
+        assertThat(healthCheckResource.live(), sameInstance(entity));
+        verify(dbms, never()).database(anyString());
+    }
+
+    @Test
+    public void liveDoesNotNeedTheEngine() throws Exception {
+        DatabaseManagementService broken = mock(DatabaseManagementService.class);
+        doThrow(new IllegalStateException("broken")).when(broken).registerDatabaseEventListener(any());
+
+        byte[] entity = new HealthResource(broken).live();
+
+        assertThat(new String(entity, "UTF-8"), is("{\"status\":\"UP\"}"));
+    }
+
 }